@@ -131,33 +131,19 @@ public class EventServiceImpl implements EventService {
         });
     }
 
-    // Получение статистики по списку событий и обогащение views
-    private void enrichEventsWithViews(List<EventDtoFull> events, EventFilterAdmin eventFilter) {
+    // Получение статистики по списку событий и обогащение views: как и для одного события,
+    // просмотры считаются с момента создания каждого события, одним запросом на страницу
+    private void enrichEventsWithViews(List<EventDtoFull> events) {
         if (events.isEmpty()) {
             return;
         }
-        List<Long> eventIds = events.stream()
-                .map(EventDtoFull::getId)
-                .toList();
-
-        List<String> uris = eventIds.stream()
-                .map(id -> "/events/" + id)
-                .collect(Collectors.toList());
+        Map<Long, LocalDateTime> startsByEventId = events.stream()
+                .collect(Collectors.toMap(EventDtoFull::getId, event -> event.getCreatedOn().minusMinutes(1)));
 
-        LocalDateTime start = eventFilter.getRangeStart() != null ? eventFilter.getRangeStart() : LocalDateTime.now().minusDays(1);
-        LocalDateTime end = eventFilter.getRangeEnd() != null ? eventFilter.getRangeEnd() : LocalDateTime.now().plusDays(1);
-
-        List<ViewStatsDto> stats = clientRestStat.getStat(start, end, uris, true);
-
-        Map<String, Long> viewsByUri = stats.stream()
-                .collect(Collectors.toMap(
-                        ViewStatsDto::getUri,
-                        ViewStatsDto::getHits
-                ));
+        Map<Long, Long> viewsByEventId = clientRestStat.getViewsSinceByEventIds(startsByEventId, LocalDateTime.now().plusMinutes(1), true);
 
         events.forEach(event -> {
-            String eventUri = "/events/" + event.getId();
-            Long views = viewsByUri.getOrDefault(eventUri, 0L);
+            Long views = viewsByEventId.getOrDefault(event.getId(), 0L);
             event.setViews(views);
         });
     }
@@ -177,7 +163,7 @@ public class EventServiceImpl implements EventService {
         final List<EventDtoFull> events = getDtoFullList(pageEvents);
 
         enrichEventsWithConfirmedRequests(events);
-        enrichEventsWithViews(events, eventFilter);
+        enrichEventsWithViews(events);
 
         log.info("Main-service. findEventsByUsers success: size = {}", events.size());
 
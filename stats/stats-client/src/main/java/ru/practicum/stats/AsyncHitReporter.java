@@ -0,0 +1,202 @@
+package ru.practicum.stats;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Неблокирующая отправка хитов: вызывающий поток только кладёт хит в ограниченную очередь,
+ * фоновый поток отправляет накопленное пачками через POST /hits.
+ * <p>
+ * При aggregationWindow > 0 одинаковые (app, uri, ip) внутри пачки, чьё время попадает в одно окно,
+ * уходят одной записью с count; время записи - время первого из них.
+ */
+public class AsyncHitReporter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncHitReporter.class);
+
+    private final Consumer<List<EndpointHitDto>> sender;
+    private final AsyncReportingProperties properties;
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final Thread senderThread;
+
+    private final Counter droppedCounter;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter aggregatedCounter;
+    private final Timer flushTimer;
+
+    private volatile boolean running = true;
+
+    public AsyncHitReporter(Consumer<List<EndpointHitDto>> sender,
+                            AsyncReportingProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.sender = sender;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+
+        Gauge.builder("stats.client.hits.queue.size", queue, BlockingQueue::size)
+                .description("Hits waiting to be sent to stats-server")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.client.hits.dropped")
+                .description("Hits dropped because the queue was full")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("stats.client.hits.sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("stats.client.hits.failed")
+                .description("Hits lost because stats-server rejected or did not answer a batch")
+                .register(meterRegistry);
+        this.aggregatedCounter = Counter.builder("stats.client.hits.aggregated")
+                .description("Hits merged into another hit of the same batch by count")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.client.hits.flush")
+                .description("Latency of one batch send to stats-server")
+                .register(meterRegistry);
+
+        this.senderThread = new Thread(this::sendLoop, "stats-hit-reporter");
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+    }
+
+    /**
+     * @return false, если хит не поместился в очередь и был отброшен
+     */
+    public boolean submit(EndpointHitDto dto) {
+        if (queue.offer(dto)) {
+            return true;
+        }
+        if (properties.overflowPolicy() == ReportOverflowPolicy.DROP_OLDEST) {
+            // гонка с другими писателями допустима: в худшем случае отбросим и новый хит
+            if (queue.poll() != null) {
+                droppedCounter.increment();
+            }
+            if (queue.offer(dto)) {
+                return true;
+            }
+        }
+        droppedCounter.increment();
+        return false;
+    }
+
+    // поток отправки не прерываем: прерывание посреди POST /hits теряет пачку и ломает досылку остатка.
+    // Он сам замечает running = false не позже чем через flushInterval и дочищает очередь
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        senderThread.join(properties.shutdownTimeout().toMillis());
+        if (senderThread.isAlive()) {
+            log.warn("Stats-client. Hit reporter did not finish in {}, {} hits left unsent",
+                    properties.shutdownTimeout(), queue.size());
+        }
+    }
+
+    private void sendLoop() {
+        List<EndpointHitDto> batch = new ArrayList<>(properties.batchSize());
+        boolean interrupted = false;
+        try {
+            while (running) {
+                EndpointHitDto first = queue.poll(properties.flushInterval().toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                flush(batch);
+            }
+        } catch (InterruptedException e) {
+            // чужое прерывание: флаг вернём после досылки, иначе он оборвёт её HTTP-вызовы
+            interrupted = true;
+        }
+        // остановка: отправляем то, что осталось
+        flush(batch);
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, properties.batchSize());
+            flush(batch);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // даём пачке набраться до batchSize, но не дольше flushInterval
+    private void collectBatch(List<EndpointHitDto> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + properties.flushInterval().toNanos();
+        while (batch.size() < properties.batchSize()) {
+            if (queue.drainTo(batch, properties.batchSize() - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            EndpointHitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<EndpointHitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            List<EndpointHitDto> payload = aggregate(batch);
+            aggregatedCounter.increment(batch.size() - payload.size());
+            sender.accept(payload);
+            sentCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.warn("Stats-client. Failed to send {} hits to stats-server: {}", batch.size(), e.getMessage());
+        } finally {
+            flushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+
+    private List<EndpointHitDto> aggregate(List<EndpointHitDto> batch) {
+        long windowMicros = properties.aggregationWindow().toNanos() / 1_000;
+        if (windowMicros <= 0 || batch.size() < 2) {
+            return batch;
+        }
+        Map<AggregationKey, EndpointHitDto> merged = new LinkedHashMap<>();
+        for (EndpointHitDto hit : batch) {
+            // без времени хит получит его на stats-server при приёме, окном служит сама пачка
+            Long window = hit.getTimestamp() != null
+                    ? Math.floorDiv(toMicros(hit.getTimestamp()), windowMicros)
+                    : null;
+            merged.merge(new AggregationKey(hit.getApp(), hit.getUri(), hit.getIp(), window), hit,
+                    (first, next) -> first.toBuilder()
+                            .count(countOf(first) + countOf(next))
+                            .build());
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static int countOf(EndpointHitDto hit) {
+        return hit.getCount() != null ? hit.getCount() : 1;
+    }
+
+    private static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private record AggregationKey(String app, String uri, String ip, Long window) {
+    }
+}
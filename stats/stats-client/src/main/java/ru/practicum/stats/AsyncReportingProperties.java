@@ -0,0 +1,11 @@
+package ru.practicum.stats;
+
+import java.time.Duration;
+
+public record AsyncReportingProperties(int queueCapacity,
+                                       int batchSize,
+                                       Duration flushInterval,
+                                       ReportOverflowPolicy overflowPolicy,
+                                       Duration shutdownTimeout,
+                                       Duration aggregationWindow) {
+}
@@ -1,10 +1,37 @@
 package ru.practicum.stats;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ClientRestStat {
     Boolean addStat(EndpointHitDto dto);
 
+    // отправка пачки хитов одним запросом, возвращает количество принятых сервером
+    Integer addStats(List<EndpointHitDto> dtos);
+
     List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    // approximate = true: уникальные посетители по HyperLogLog-скетчам stats-server (ошибка ~1.6%)
+    List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate);
+
+    // POST /stats/query: просмотры по uri (или по id, если в запросе задан uriTemplate), сумма по всем app
+    Map<String, Long> getViewCounts(ViewStatsQueryDto query);
+
+    // просмотры /events/{id} по id событий; для событий без просмотров - 0
+    Map<Long, Long> getViewsByEventIds(LocalDateTime start, LocalDateTime end, Collection<Long> eventIds, boolean unique);
+
+    // POST /stats/query/since: у каждого uri (или id) своё начало периода, конец общий
+    Map<String, Long> getViewCountsSince(ViewsSinceQueryDto query);
+
+    // просмотры /events/{id} с индивидуального начала для каждого события (например, createdOn) до end
+    Map<Long, Long> getViewsSinceByEventIds(Map<Long, LocalDateTime> startsByEventId, LocalDateTime end, boolean unique);
+
+    // granularity: MINUTE | HOUR | DAY
+    ViewStatsSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris, String granularity, boolean unique);
+
+    // потоковый вариант getStat для больших выборок: строки передаются в consumer по мере получения
+    void streamStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, Consumer<ViewStatsDto> consumer);
 }
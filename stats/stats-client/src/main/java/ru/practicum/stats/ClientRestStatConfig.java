@@ -1,16 +1,63 @@
 package ru.practicum.stats;
 
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+
 @Configuration
 public class ClientRestStatConfig {
 
+    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
     @Value("${stats-server.url:http://localhost:9090}")
     private String statsServerUrl;
 
+    @Value("${stats-client.wire-format:JSON}")
+    private WireFormat wireFormat;
+
+    @Value("${stats-client.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${stats-client.async.queue-capacity:10000}")
+    private int asyncQueueCapacity;
+
+    @Value("${stats-client.async.batch-size:500}")
+    private int asyncBatchSize;
+
+    @Value("${stats-client.async.flush-interval:1s}")
+    private Duration asyncFlushInterval;
+
+    @Value("${stats-client.async.overflow-policy:DROP_NEWEST}")
+    private ReportOverflowPolicy asyncOverflowPolicy;
+
+    @Value("${stats-client.async.shutdown-timeout:10s}")
+    private Duration asyncShutdownTimeout;
+
+    @Value("${stats-client.async.aggregation-window:0s}")
+    private Duration asyncAggregationWindow;
+
+    @Value("${stats-client.views-cache.enabled:false}")
+    private boolean viewsCacheEnabled;
+
+    @Value("${stats-client.views-cache.ttl:5s}")
+    private Duration viewsCacheTtl;
+
+    @Value("${stats-client.views-cache.max-size:10000}")
+    private int viewsCacheMaxSize;
+
     @Bean
     public RestClient.Builder restClientBuilder() {
         return RestClient.builder();
@@ -18,13 +65,42 @@ public class ClientRestStatConfig {
 
     @Bean
     public RestClient statsRestClient(RestClient.Builder restClientBuilder) {
+        if (wireFormat == WireFormat.SMILE) {
+            restClientBuilder.messageConverters(converters -> converters.add(0, smileConverter()));
+        }
         return restClientBuilder
                 .baseUrl(statsServerUrl)
                 .build();
     }
 
     @Bean
-    public ClientRestStat clientRestStat(RestClient statsRestClient) {
-        return new ClientRestStatImpl(statsRestClient);
+    public ClientRestStat clientRestStat(RestClient statsRestClient, ObjectProvider<MeterRegistry> meterRegistry) {
+        AsyncReportingProperties asyncProperties = asyncEnabled
+                ? new AsyncReportingProperties(
+                        asyncQueueCapacity,
+                        asyncBatchSize,
+                        asyncFlushInterval,
+                        asyncOverflowPolicy,
+                        asyncShutdownTimeout,
+                        asyncAggregationWindow)
+                : null;
+        ViewsCacheProperties viewsCacheProperties = viewsCacheEnabled
+                ? new ViewsCacheProperties(viewsCacheTtl, viewsCacheMaxSize)
+                : null;
+        return new ClientRestStatImpl(statsRestClient, wireFormat, asyncProperties, viewsCacheProperties,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    // даты в формате stats-server в обе стороны, повторяющиеся app/uri кодируются ссылками
+    static MappingJackson2SmileHttpMessageConverter smileConverter() {
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_TIME_PATTERN);
+        return new MappingJackson2SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.smile()
+                .factory(smileFactory)
+                .serializers(new LocalDateTimeSerializer(formatter))
+                .deserializers(new LocalDateTimeDeserializer(formatter))
+                .build());
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,12 @@
 package ru.practicum.stats;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.http.ResponseEntity;
-import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -9,49 +14,212 @@ import java.net.URI;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
-@Component
-public class ClientRestStatImpl implements ClientRestStat {
+public class ClientRestStatImpl implements ClientRestStat, AutoCloseable {
 
     private final RestClient restClient;
+    private final MediaType wireType;
+    private final AsyncHitReporter hitReporter;
+    private final ViewsCache viewsCache;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String EVENT_URI_TEMPLATE = "/events/{id}";
+    private static final ParameterizedTypeReference<Map<String, Long>> VIEW_COUNTS_TYPE = new ParameterizedTypeReference<>() {
+    };
+    private static final ObjectReader VIEW_STATS_READER = new ObjectMapper().readerFor(ViewStatsDto.class);
 
     public ClientRestStatImpl(RestClient restClient) {
         this.restClient = restClient;
+        this.wireType = WireFormat.JSON.mediaType();
+        this.hitReporter = null;
+        this.viewsCache = null;
+    }
+
+    // asyncProperties != null - addStat не ждёт stats-server, хиты уходят пачками через addStats;
+    // viewsCacheProperties != null - одинаковые getStat объединяются и кэшируются
+    public ClientRestStatImpl(RestClient restClient,
+                              WireFormat wireFormat,
+                              AsyncReportingProperties asyncProperties,
+                              ViewsCacheProperties viewsCacheProperties,
+                              MeterRegistry meterRegistry) {
+        this.restClient = restClient;
+        this.wireType = wireFormat.mediaType();
+        this.hitReporter = asyncProperties != null
+                ? new AsyncHitReporter(this::addStats, asyncProperties, meterRegistry)
+                : null;
+        this.viewsCache = viewsCacheProperties != null
+                ? new ViewsCache(viewsCacheProperties, meterRegistry)
+                : null;
     }
 
     @Override
     public Boolean addStat(EndpointHitDto dto) {
+        if (hitReporter != null) {
+            return hitReporter.submit(dto);
+        }
         return restClient.post()
                 .uri("/hit")
+                .contentType(wireType)
+                .accept(wireType)
                 .body(dto)
                 .retrieve()
                 .body(Boolean.class);
     }
 
+    @Override
+    public Integer addStats(List<EndpointHitDto> dtos) {
+        if (dtos.isEmpty()) {
+            return 0;
+        }
+        return restClient.post()
+                .uri("/hits")
+                .contentType(wireType)
+                .accept(wireType)
+                .body(dtos)
+                .retrieve()
+                .body(Integer.class);
+    }
+
     @Override
     public List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        URI uri = buildStatsUri(start, end, uris, unique);
+        return getStat(start, end, uris, unique, false);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+        if (viewsCache != null) {
+            return viewsCache.get(new ViewsCache.Query(start, end, uris, unique, approximate),
+                    () -> fetchStat(start, end, uris, unique, approximate));
+        }
+        return fetchStat(start, end, uris, unique, approximate);
+    }
+
+    private List<ViewStatsDto> fetchStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+        URI uri = buildStatsUri("/stats", start, end, uris, unique, approximate);
 
         ResponseEntity<ViewStatsDto[]> responseEntity = restClient.get()
                 .uri(uri)
+                .accept(wireType)
                 .retrieve()
                 .toEntity(ViewStatsDto[].class);
 
         return responseEntity.getBody() != null ? Arrays.asList(responseEntity.getBody()) : Collections.emptyList();
     }
 
-    private URI buildStatsUri(LocalDateTime start,
+    @Override
+    public Map<String, Long> getViewCounts(ViewStatsQueryDto query) {
+        Map<String, Long> counts = restClient.post()
+                .uri("/stats/query")
+                .contentType(wireType)
+                .accept(wireType)
+                .body(query)
+                .retrieve()
+                .body(VIEW_COUNTS_TYPE);
+        return counts != null ? counts : Collections.emptyMap();
+    }
+
+    @Override
+    public Map<Long, Long> getViewsByEventIds(LocalDateTime start, LocalDateTime end, Collection<Long> eventIds, boolean unique) {
+        if (eventIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        ViewStatsQueryDto query = ViewStatsQueryDto.builder()
+                .start(start)
+                .end(end)
+                .uriTemplate(EVENT_URI_TEMPLATE)
+                .ids(List.copyOf(eventIds))
+                .unique(unique)
+                .build();
+        Map<Long, Long> views = new HashMap<>();
+        getViewCounts(query).forEach((id, count) -> views.put(Long.valueOf(id), count));
+        return views;
+    }
+
+    @Override
+    public Map<String, Long> getViewCountsSince(ViewsSinceQueryDto query) {
+        Map<String, Long> counts = restClient.post()
+                .uri("/stats/query/since")
+                .contentType(wireType)
+                .accept(wireType)
+                .body(query)
+                .retrieve()
+                .body(VIEW_COUNTS_TYPE);
+        return counts != null ? counts : Collections.emptyMap();
+    }
+
+    @Override
+    public Map<Long, Long> getViewsSinceByEventIds(Map<Long, LocalDateTime> startsByEventId, LocalDateTime end, boolean unique) {
+        if (startsByEventId.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<UriStartDto> items = startsByEventId.entrySet().stream()
+                .map(entry -> UriStartDto.builder().id(entry.getKey()).start(entry.getValue()).build())
+                .toList();
+        ViewsSinceQueryDto query = ViewsSinceQueryDto.builder()
+                .end(end)
+                .uriTemplate(EVENT_URI_TEMPLATE)
+                .items(items)
+                .unique(unique)
+                .build();
+        Map<Long, Long> views = new HashMap<>();
+        getViewCountsSince(query).forEach((id, count) -> views.put(Long.valueOf(id), count));
+        return views;
+    }
+
+    @Override
+    public ViewStatsSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris, String granularity, boolean unique) {
+        URI uri = UriComponentsBuilder.fromUri(buildStatsUri("/stats/timeseries", start, end, uris, unique, false))
+                .queryParam("granularity", granularity)
+                .build()
+                .toUri();
+
+        return restClient.get()
+                .uri(uri)
+                .accept(wireType)
+                .retrieve()
+                .body(ViewStatsSeriesDto.class);
+    }
+
+    @Override
+    public void streamStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, Consumer<ViewStatsDto> consumer) {
+        URI uri = buildStatsUri("/stats/stream", start, end, uris, unique, false);
+
+        restClient.get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange((request, response) -> {
+                    if (response.getStatusCode().isError()) {
+                        throw new IllegalStateException("Stats-client. streamStat failed with status " + response.getStatusCode());
+                    }
+                    try (MappingIterator<ViewStatsDto> iterator = VIEW_STATS_READER.readValues(response.getBody())) {
+                        while (iterator.hasNextValue()) {
+                            consumer.accept(iterator.nextValue());
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    private URI buildStatsUri(String path,
+                              LocalDateTime start,
                               LocalDateTime end,
                               List<String> uris,
-                              boolean unique) {
-        UriComponentsBuilder builder = UriComponentsBuilder.fromPath("/stats")
+                              boolean unique,
+                              boolean approximate) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromPath(path)
                 .queryParam("start", formatDateTime(start))
                 .queryParam("end", formatDateTime(end))
                 .queryParam("unique", unique);
 
+        if (approximate) {
+            builder.queryParam("approximate", true);
+        }
+
         if (uris != null && !uris.isEmpty()) {
             for (String uri : uris) {
                 builder.queryParam("uris", uri);
@@ -63,4 +231,11 @@ public class ClientRestStatImpl implements ClientRestStat {
     private String formatDateTime(LocalDateTime dateTime) {
         return dateTime.format(FORMATTER);
     }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (hitReporter != null) {
+            hitReporter.close();
+        }
+    }
 }
\ No newline at end of file
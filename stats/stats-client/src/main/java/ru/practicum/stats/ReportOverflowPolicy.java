@@ -0,0 +1,12 @@
+package ru.practicum.stats;
+
+/**
+ * Что делать с хитом, когда очередь асинхронной отправки заполнена.
+ * Вызывающий поток не блокируется ни в одном из вариантов.
+ */
+public enum ReportOverflowPolicy {
+    // отбросить новый хит
+    DROP_NEWEST,
+    // вытеснить самый старый хит из очереди
+    DROP_OLDEST
+}
@@ -0,0 +1,102 @@
+package ru.practicum.stats;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Кэш ответов GET /stats на стороне клиента. Одновременные одинаковые запросы объединяются
+ * в один HTTP-вызов, ответ хранится ttl. Границы периода в ключе округляются вниз до ttl,
+ * поэтому запросы вида [createdOn - 1 мин, now + 1 мин] делят одну запись, а устаревание
+ * ответа не превышает ttl. При нулевом ttl остаётся только объединение запросов.
+ * <p>
+ * Записи - future ответа в Caffeine: пока запрос выполняется, future не истекает и отдаётся всем
+ * одинаковым запросам, неуспешные future Caffeine удаляет сам. Лишнее вытесняется по max-size.
+ */
+public class ViewsCache {
+
+    private final long ttlNanos;
+    private final AsyncCache<Query, List<ViewStatsDto>> cache;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter coalescedCounter;
+
+    public record Query(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+    }
+
+    public ViewsCache(ViewsCacheProperties properties, MeterRegistry meterRegistry) {
+        Duration ttl = properties.ttl().isNegative() ? Duration.ZERO : properties.ttl();
+        this.ttlNanos = ttl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(ttl)
+                .buildAsync();
+        this.hitCounter = Counter.builder("stats.client.views.cache.hits")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("stats.client.views.cache.misses")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("stats.client.views.coalesced")
+                .description("getStat calls answered by an identical request already in flight")
+                .register(meterRegistry);
+    }
+
+    public List<ViewStatsDto> get(Query query, Supplier<List<ViewStatsDto>> loader) {
+        Query key = normalize(query);
+        CompletableFuture<List<ViewStatsDto>> own = new CompletableFuture<>();
+        // атомарно: либо берём чужой future, либо наш становится общим для всех следующих запросов
+        CompletableFuture<List<ViewStatsDto>> existing = cache.asMap().putIfAbsent(key, own);
+        if (existing != null) {
+            if (existing.isDone() && !existing.isCompletedExceptionally()) {
+                hitCounter.increment();
+            } else {
+                missCounter.increment();
+                coalescedCounter.increment();
+            }
+            return await(existing);
+        }
+        missCounter.increment();
+        try {
+            List<ViewStatsDto> views = List.copyOf(loader.get());
+            own.complete(views);
+            return views;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            cache.asMap().remove(key, own);
+            throw e;
+        }
+    }
+
+    private Query normalize(Query query) {
+        List<String> uris = query.uris() == null ? List.of() : query.uris().stream().distinct().sorted().toList();
+        return new Query(floor(query.start()), floor(query.end()), uris, query.unique(), query.approximate());
+    }
+
+    private LocalDateTime floor(LocalDateTime dateTime) {
+        if (ttlNanos <= 0) {
+            return dateTime;
+        }
+        long epochNanos = dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+        return dateTime.minusNanos(Math.floorMod(epochNanos, ttlNanos));
+    }
+
+    private static List<ViewStatsDto> await(CompletableFuture<List<ViewStatsDto>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.stats;
+
+import java.time.Duration;
+
+public record ViewsCacheProperties(Duration ttl,
+                                   int maxSize) {
+}
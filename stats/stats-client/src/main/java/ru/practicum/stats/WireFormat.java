@@ -0,0 +1,22 @@
+package ru.practicum.stats;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Формат тел запросов и ответов между stats-client и stats-server.
+ */
+public enum WireFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    // бинарный JSON: без текстовых чисел, повторяющиеся строки передаются ссылками
+    SMILE(new MediaType("application", "x-jackson-smile"));
+
+    private final MediaType mediaType;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,265 @@
+package ru.practicum.stats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class AsyncHitReporterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<List<EndpointHitDto>> batches = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch firstSendEntered = new CountDownLatch(1);
+    private final CountDownLatch firstSendReleased = new CountDownLatch(1);
+    private AsyncHitReporter reporter;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        firstSendReleased.countDown();
+        if (reporter != null) {
+            reporter.close();
+        }
+    }
+
+    @Test
+    void sendsFullBatchesWithoutWaitingForFlushInterval() throws Exception {
+        reporter = reporter(recordingSender(), 1_000, 10, Duration.ofSeconds(5), ReportOverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 20; i++) {
+            reporter.submit(hit("/events/" + i));
+        }
+
+        awaitSent(20, Duration.ofSeconds(3));
+
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeBetween(1, 10));
+        assertThat(meterRegistry.get("stats.client.hits.sent").counter().count()).isEqualTo(20.0);
+    }
+
+    @Test
+    void sendsPartialBatchAfterFlushInterval() throws Exception {
+        reporter = reporter(recordingSender(), 1_000, 100, Duration.ofMillis(50), ReportOverflowPolicy.DROP_NEWEST);
+
+        reporter.submit(hit("/events/1"));
+
+        awaitSent(1, Duration.ofSeconds(3));
+        assertThat(batches).singleElement().asList().hasSize(1);
+    }
+
+    @Test
+    void dropNewestKeepsQueuedHitsWhenQueueIsFull() throws Exception {
+        reporter = reporter(blockingFirstSender(), 5, 1, Duration.ofMillis(10), ReportOverflowPolicy.DROP_NEWEST);
+        reporter.submit(hit("/events/first"));
+        assertThat(firstSendEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (reporter.submit(hit("/events/" + i))) {
+                accepted++;
+            }
+        }
+        firstSendReleased.countDown();
+        reporter.close();
+
+        assertThat(accepted).isEqualTo(5);
+        assertThat(meterRegistry.get("stats.client.hits.dropped").counter().count()).isEqualTo(5.0);
+        assertThat(sentUris()).containsExactly(
+                "/events/first", "/events/0", "/events/1", "/events/2", "/events/3", "/events/4");
+    }
+
+    @Test
+    void dropOldestEvictsQueuedHitsWhenQueueIsFull() throws Exception {
+        reporter = reporter(blockingFirstSender(), 5, 1, Duration.ofMillis(10), ReportOverflowPolicy.DROP_OLDEST);
+        reporter.submit(hit("/events/first"));
+        assertThat(firstSendEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(reporter.submit(hit("/events/" + i))).isTrue();
+        }
+        assertThat(meterRegistry.get("stats.client.hits.queue.size").gauge().value()).isEqualTo(5.0);
+        firstSendReleased.countDown();
+        reporter.close();
+
+        assertThat(meterRegistry.get("stats.client.hits.dropped").counter().count()).isEqualTo(5.0);
+        assertThat(sentUris()).containsExactly(
+                "/events/first", "/events/5", "/events/6", "/events/7", "/events/8", "/events/9");
+    }
+
+    @Test
+    void closeWaitsForInFlightSendAndDrainsQueue() throws Exception {
+        reporter = reporter(blockingFirstSender(), 1_000, 10, Duration.ofMillis(10), ReportOverflowPolicy.DROP_NEWEST);
+        reporter.submit(hit("/events/first"));
+        assertThat(firstSendEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 25; i++) {
+            reporter.submit(hit("/events/" + i));
+        }
+
+        // close приходит, пока первая пачка ещё в отправке
+        CompletableFuture<Void> closed = CompletableFuture.runAsync(() -> {
+            try {
+                reporter.close();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        firstSendReleased.countDown();
+        closed.get(5, TimeUnit.SECONDS);
+
+        assertThat(sentUris()).hasSize(26);
+        assertThat(meterRegistry.get("stats.client.hits.failed").counter().count()).isZero();
+        assertThat(meterRegistry.get("stats.client.hits.sent").counter().count()).isEqualTo(26.0);
+    }
+
+    @Test
+    void failedBatchIsCountedAndReporterKeepsSending() throws Exception {
+        Consumer<List<EndpointHitDto>> sender = batch -> {
+            if (batch.get(0).getUri().equals("/events/bad")) {
+                throw new IllegalStateException("stats-server is down");
+            }
+            batches.add(List.copyOf(batch));
+        };
+        reporter = reporter(sender, 1_000, 1, Duration.ofMillis(10), ReportOverflowPolicy.DROP_NEWEST);
+
+        reporter.submit(hit("/events/bad"));
+        reporter.submit(hit("/events/1"));
+        reporter.close();
+
+        assertThat(sentUris()).containsExactly("/events/1");
+        assertThat(meterRegistry.get("stats.client.hits.failed").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("stats.client.hits.sent").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void aggregatesSameVisitorWithinWindowByCount() throws Exception {
+        LocalDateTime t0 = LocalDateTime.of(2026, 5, 1, 12, 0);
+        reporter = reporter(blockingFirstSender(), 1_000, 100, Duration.ofMillis(10), ReportOverflowPolicy.DROP_NEWEST,
+                Duration.ofMinutes(1));
+        reporter.submit(hit("/events/first"));
+        assertThat(firstSendEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // пока первая пачка в отправке, следующая набирается целиком
+        List<EndpointHitDto> hits = List.of(
+                hit("/events/1", "10.0.0.1", t0.plusSeconds(10), null),
+                hit("/events/1", "10.0.0.2", t0.plusSeconds(20), null),
+                hit("/events/1", "10.0.0.1", t0.plusSeconds(59), 5),
+                // следующее окно
+                hit("/events/1", "10.0.0.1", t0.plusSeconds(60), null),
+                hit("/events/2", "10.0.0.1", t0.plusSeconds(30), null),
+                hit("/events/1", "10.0.0.1", t0.plusSeconds(40), null),
+                // без времени: окном служит сама пачка
+                hit("/events/3", "10.0.0.1", null, null),
+                hit("/events/3", "10.0.0.1", null, 2));
+        hits.forEach(reporter::submit);
+        firstSendReleased.countDown();
+        reporter.close();
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches).last().asList()
+                .extracting("uri", "ip", "timestamp", "count")
+                .containsExactly(
+                        tuple("/events/1", "10.0.0.1", t0.plusSeconds(10), 7),
+                        tuple("/events/1", "10.0.0.2", t0.plusSeconds(20), null),
+                        tuple("/events/1", "10.0.0.1", t0.plusSeconds(60), null),
+                        tuple("/events/2", "10.0.0.1", t0.plusSeconds(30), null),
+                        tuple("/events/3", "10.0.0.1", null, 3));
+        assertThat(meterRegistry.get("stats.client.hits.aggregated").counter().count()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("stats.client.hits.sent").counter().count()).isEqualTo(9.0);
+    }
+
+    @Test
+    void zeroWindowSendsBatchAsIs() throws Exception {
+        reporter = reporter(blockingFirstSender(), 1_000, 100, Duration.ofMillis(10), ReportOverflowPolicy.DROP_NEWEST);
+        reporter.submit(hit("/events/first"));
+        assertThat(firstSendEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 3; i++) {
+            reporter.submit(hit("/events/1"));
+        }
+        firstSendReleased.countDown();
+        reporter.close();
+
+        assertThat(sentUris()).containsExactly("/events/first", "/events/1", "/events/1", "/events/1");
+        assertThat(meterRegistry.get("stats.client.hits.aggregated").counter().count()).isZero();
+    }
+
+    // пачку копируем: после отправки репортёр очищает и переиспользует список
+    private Consumer<List<EndpointHitDto>> recordingSender() {
+        return batch -> batches.add(List.copyOf(batch));
+    }
+
+    // первая отправка висит, как долгий POST /hits; прерывание посреди неё теряет пачку
+    private Consumer<List<EndpointHitDto>> blockingFirstSender() {
+        return batch -> {
+            if (firstSendEntered.getCount() > 0) {
+                firstSendEntered.countDown();
+                try {
+                    firstSendReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Send interrupted", e);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Send interrupted");
+            }
+            batches.add(List.copyOf(batch));
+        };
+    }
+
+    private void awaitSent(int hits, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (sentUris().size() < hits && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sentUris()).hasSize(hits);
+    }
+
+    private List<String> sentUris() {
+        return batches.stream()
+                .flatMap(List::stream)
+                .map(EndpointHitDto::getUri)
+                .toList();
+    }
+
+    private AsyncHitReporter reporter(Consumer<List<EndpointHitDto>> sender, int capacity, int batchSize,
+                                      Duration flushInterval, ReportOverflowPolicy policy) {
+        return reporter(sender, capacity, batchSize, flushInterval, policy, Duration.ZERO);
+    }
+
+    private AsyncHitReporter reporter(Consumer<List<EndpointHitDto>> sender, int capacity, int batchSize,
+                                      Duration flushInterval, ReportOverflowPolicy policy, Duration aggregationWindow) {
+        return new AsyncHitReporter(sender,
+                new AsyncReportingProperties(capacity, batchSize, flushInterval, policy,
+                        Duration.ofSeconds(10), aggregationWindow),
+                meterRegistry);
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .build();
+    }
+
+    private static EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp, Integer count) {
+        return EndpointHitDto.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+}
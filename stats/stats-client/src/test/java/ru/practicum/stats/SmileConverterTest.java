@@ -0,0 +1,50 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmileConverterTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 7, 1, 10, 15, 30);
+
+    private final ObjectMapper smile = ClientRestStatConfig.smileConverter().getObjectMapper();
+
+    @Test
+    void writesTimestampsInServerFormat() throws Exception {
+        byte[] bytes = smile.writeValueAsBytes(hit());
+
+        assertThat(new String(bytes, StandardCharsets.ISO_8859_1)).contains("2026-07-01 10:15:30");
+    }
+
+    @Test
+    void readsTimestampsInServerFormat() throws Exception {
+        byte[] bytes = smile.writeValueAsBytes(List.of(hit(), hit()));
+
+        EndpointHitDto[] hits = smile.readValue(bytes, EndpointHitDto[].class);
+
+        assertThat(hits).hasSize(2);
+        assertThat(hits[0].getTimestamp()).isEqualTo(TIMESTAMP);
+        assertThat(hits[1].getUri()).isEqualTo("/events/1");
+    }
+
+    @Test
+    void readsSeriesResponse() throws Exception {
+        ViewStatsSeriesDto series = new ViewStatsSeriesDto("HOUR", TIMESTAMP.withMinute(0).withSecond(0), 2,
+                List.of(new UriSeriesDto("ewm", "/events/1", new long[]{3, 4})));
+
+        ViewStatsSeriesDto read = smile.readValue(smile.writeValueAsBytes(series), ViewStatsSeriesDto.class);
+
+        assertThat(read.getStart()).isEqualTo(LocalDateTime.of(2026, 7, 1, 10, 0));
+        assertThat(read.getSeries().get(0).getHits()).containsExactly(3, 4);
+    }
+
+    private static EndpointHitDto hit() {
+        return new EndpointHitDto(1L, "ewm", "/events/1", "10.0.0.1", TIMESTAMP, 2);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.practicum.stats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ViewsCacheTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 7, 1, 10, 0);
+    private static final List<ViewStatsDto> VIEWS = List.of(new ViewStatsDto("ewm", "/events/1", 7L));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalQueriesLoadOnce() throws Exception {
+        ViewsCache cache = cache(Duration.ofSeconds(5), 100);
+        assertSingleFlight(cache);
+    }
+
+    @Test
+    void zeroTtlStillCoalescesInFlightQueries() throws Exception {
+        ViewsCache cache = cache(Duration.ZERO, 100);
+        assertSingleFlight(cache);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(query("/events/1"), () -> load(loads));
+        cache.get(query("/events/1"), () -> load(loads));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void cachedAnswerIsReusedWithinTtl() {
+        ViewsCache cache = cache(Duration.ofMinutes(1), 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(query("/events/1", "/events/2"), () -> load(loads));
+        List<ViewStatsDto> second = cache.get(query("/events/2", "/events/1", "/events/1"), () -> load(loads));
+
+        assertThat(second).isEqualTo(VIEWS);
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.counter("stats.client.views.cache.hits").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        ViewsCache cache = cache(Duration.ofMinutes(1), 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThatThrownBy(() -> cache.get(query("/events/1"), () -> {
+            loads.incrementAndGet();
+            throw new IllegalStateException("stats-server is down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(query("/events/1"), () -> load(loads))).isEqualTo(VIEWS);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void sizeIsBounded() {
+        ViewsCache cache = cache(Duration.ofMinutes(1), 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.get(query("/events/" + i), () -> load(loads));
+        }
+        loads.set(0);
+        for (int i = 0; i < 1_000; i++) {
+            cache.get(query("/events/" + i), () -> load(loads));
+        }
+
+        // вытесненные записи загружаются заново; в кэше не больше max-size
+        assertThat(loads.get()).isGreaterThanOrEqualTo(990);
+    }
+
+    private void assertSingleFlight(ViewsCache cache) throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<List<ViewStatsDto>> leader = executor.submit(() -> cache.get(query("/events/1"), () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return VIEWS;
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Future<List<ViewStatsDto>>> followers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            followers.add(executor.submit(() -> cache.get(query("/events/1"), () -> load(loads))));
+        }
+        // ведомые успевают встать на ожидание общего future
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(VIEWS);
+        for (Future<List<ViewStatsDto>> follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(VIEWS);
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    private ViewsCache cache(Duration ttl, int maxSize) {
+        return new ViewsCache(new ViewsCacheProperties(ttl, maxSize), meterRegistry);
+    }
+
+    private static ViewsCache.Query query(String... uris) {
+        return new ViewsCache.Query(START, START.plusDays(1), List.of(uris), false, false);
+    }
+
+    private static List<ViewStatsDto> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return VIEWS;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
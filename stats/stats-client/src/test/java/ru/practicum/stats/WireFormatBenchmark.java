@@ -0,0 +1,98 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Размер и время кодирования JSON и Smile для типичных сообщений клиента:
+ * ответ /stats на 1000 uri и пачка /hits из 500 хитов.
+ * Запуск: mvn -pl stats/stats-client -am test -Dtest=WireFormatBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WireFormatBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 5_000;
+
+    @Test
+    void compareJsonAndSmile() throws Exception {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json()
+                .serializers(new LocalDateTimeSerializer(formatter))
+                .deserializers(new LocalDateTimeDeserializer(formatter))
+                .build();
+        ObjectMapper smile = ClientRestStatConfig.smileConverter().getObjectMapper();
+
+        List<ViewStatsDto> stats = stats();
+        List<EndpointHitDto> hits = hits();
+        JavaType statsType = json.getTypeFactory().constructCollectionType(List.class, ViewStatsDto.class);
+        JavaType hitsType = json.getTypeFactory().constructCollectionType(List.class, EndpointHitDto.class);
+
+        report("GET /stats, 1000 uris", json, smile, stats, statsType);
+        report("POST /hits, 500 hits", json, smile, hits, hitsType);
+    }
+
+    private static void report(String name, ObjectMapper json, ObjectMapper smile, Object value, JavaType type)
+            throws Exception {
+        byte[] jsonBytes = json.writeValueAsBytes(value);
+        byte[] smileBytes = smile.writeValueAsBytes(value);
+        System.out.printf("%s: JSON %d B, Smile %d B (%.0f%%)%n", name, jsonBytes.length, smileBytes.length,
+                100.0 * smileBytes.length / jsonBytes.length);
+        System.out.printf("%s: JSON encode %.1f us, decode %.1f us; Smile encode %.1f us, decode %.1f us%n", name,
+                encodeMicros(json, value), decodeMicros(json, jsonBytes, type),
+                encodeMicros(smile, value), decodeMicros(smile, smileBytes, type));
+    }
+
+    private static double encodeMicros(ObjectMapper mapper, Object value) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            mapper.writeValueAsBytes(value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            mapper.writeValueAsBytes(value);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / MEASURED_ROUNDS;
+    }
+
+    private static double decodeMicros(ObjectMapper mapper, byte[] bytes, JavaType type) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            mapper.readValue(bytes, type);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            mapper.readValue(bytes, type);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / MEASURED_ROUNDS;
+    }
+
+    private static List<ViewStatsDto> stats() {
+        Random random = new Random(1);
+        List<ViewStatsDto> stats = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            stats.add(new ViewStatsDto("ewm-main-service", "/events/" + (100_000 + i), (long) random.nextInt(100_000)));
+        }
+        return stats;
+    }
+
+    private static List<EndpointHitDto> hits() {
+        Random random = new Random(2);
+        LocalDateTime now = LocalDateTime.of(2026, 7, 1, 10, 0);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            hits.add(new EndpointHitDto(null, "ewm-main-service", "/events/" + (100_000 + random.nextInt(50)),
+                    "10.0." + random.nextInt(256) + "." + random.nextInt(256), now.plusSeconds(i), 1));
+        }
+        return hits;
+    }
+}
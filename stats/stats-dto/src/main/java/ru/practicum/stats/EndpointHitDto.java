@@ -3,6 +3,7 @@ package ru.practicum.stats;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PastOrPresent;
+import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -34,4 +35,8 @@ public class EndpointHitDto {
 
     @PastOrPresent
     private LocalDateTime timestamp;
+
+    // кратность: сколько одинаковых хитов (app, uri, ip) представляет запись; null - один хит
+    @Positive
+    private Integer count;
 }
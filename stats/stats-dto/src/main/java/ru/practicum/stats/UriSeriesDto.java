@@ -0,0 +1,18 @@
+package ru.practicum.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UriSeriesDto {
+    private String app;
+    private String uri;
+    private long[] hits;
+}
@@ -0,0 +1,46 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запрос POST /stats/query: либо список uris, либо ids и шаблон uriTemplate с подстановкой {id},
+ * например "/events/{id}". Ответ - число просмотров по каждому uri или id.
+ * Диапазон idFrom..idTo (включительно) допустим, только если uriTemplate совпадает с шаблоном
+ * resource id stats-server; тогда в ответе только id, у которых есть просмотры. Обе границы
+ * обязательны, а id в диапазоне не больше, чем ключей в запросе (stats-server.query.max-keys).
+ */
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewStatsQueryDto {
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+
+    private List<String> uris;
+
+    private String uriTemplate;
+
+    private List<Long> ids;
+
+    private Long idFrom;
+
+    private Long idTo;
+
+    private Boolean unique;
+}
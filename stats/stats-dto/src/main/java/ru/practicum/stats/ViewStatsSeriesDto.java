@@ -0,0 +1,30 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ряды по бакетам: i-й элемент hits в каждой серии относится к бакету start + i * granularity.
+ */
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewStatsSeriesDto {
+    private String granularity;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    private Integer buckets;
+
+    private List<UriSeriesDto> series;
+}
@@ -0,0 +1,35 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запрос POST /stats/query/since: у каждого uri своё начало периода, конец общий.
+ */
+@Builder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewsSinceQueryDto {
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+
+    private String uriTemplate;
+
+    @NotEmpty
+    private List<@Valid UriStartDto> items;
+
+    private Boolean unique;
+}
@@ -0,0 +1,60 @@
+package ru.practicum.stats.controller;
+
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.config.CommonDateTimeConst;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Построчная запись хитов в CSV (RFC 4180): заголовок, затем строка на хит.
+ */
+class HitCsvWriter implements Closeable {
+
+    private static final String HEADER = "id,app,uri,ip,timestamp,count";
+
+    private final Writer writer;
+
+    HitCsvWriter(OutputStream outputStream) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write("\r\n");
+    }
+
+    void write(EndpointHitDto hit) {
+        try {
+            writer.write(hit.getId() != null ? hit.getId().toString() : "");
+            writer.write(',');
+            writer.write(escape(hit.getApp()));
+            writer.write(',');
+            writer.write(escape(hit.getUri()));
+            writer.write(',');
+            writer.write(hit.getIp());
+            writer.write(',');
+            writer.write(CommonDateTimeConst.DATE_TIME_FORMATTER.format(hit.getTimestamp()));
+            writer.write(',');
+            writer.write(hit.getCount() != null ? hit.getCount().toString() : "1");
+            writer.write("\r\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.stats.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.model.HitImportResult;
+import ru.practicum.stats.service.HitImportService;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequiredArgsConstructor
+public class HitImportController {
+
+    private final HitImportService hitImportService;
+
+    // тело - CSV с заголовком (например, выгрузка /stats/export), читается потоком без загрузки в память
+    @PostMapping(value = "/admin/hits/import", consumes = "text/csv")
+    public HitImportResult importHits(HttpServletRequest request) throws IOException, IncorrectRequestParameterException {
+        return hitImportService.importCsv(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+    }
+}
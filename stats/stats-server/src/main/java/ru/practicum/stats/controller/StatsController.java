@@ -1,45 +1,285 @@
 package ru.practicum.stats.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.UriStartDto;
 import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.ViewStatsQueryDto;
+import ru.practicum.stats.ViewsSinceQueryDto;
+import ru.practicum.stats.ViewStatsSeriesDto;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+import ru.practicum.stats.exception.PartialIngestionException;
+import ru.practicum.stats.exception.QueryOverloadedException;
 import ru.practicum.stats.exception.StartDateIsAfterEndDateException;
+import ru.practicum.stats.model.ExportFormat;
+import ru.practicum.stats.model.QueryClass;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.service.QueryAdmission;
 import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.service.TimeRanges;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequiredArgsConstructor
 @Slf4j
 public class StatsController {
 
+    private static final String SMILE_VALUE = "application/x-jackson-smile";
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final StatsService service;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final QueryAdmission admission;
+
+    @Value("${stats-server.ingest.batch-size:1000}")
+    private int batchSize;
 
     @GetMapping("/stats")
     public List<ViewStatsDto> getStats(@RequestParam LocalDateTime start,
                                        @RequestParam LocalDateTime end,
                                        @RequestParam(required = false, defaultValue = "") List<String> uris,
-                                       @RequestParam(required = false, defaultValue = "false") Boolean unique) throws StartDateIsAfterEndDateException {
-        if (uris == null) {
-            uris = Collections.emptyList();
+                                       @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                       @RequestParam(required = false, defaultValue = "false") Boolean approximate)
+            throws StartDateIsAfterEndDateException, QueryOverloadedException {
+        List<String> requestedUris = uris == null ? Collections.emptyList() : uris;
+        try (QueryAdmission.Permit permit = admission.begin(admission.classify(requestedUris, start, end))) {
+            return service.getStat(start, end, requestedUris, unique, approximate);
+        }
+    }
+
+    // много uri в теле вместо query-параметров; ответ - компактная карта uri (или id) -> просмотры
+    @PostMapping("/stats/query")
+    public Map<String, Long> queryStats(@Valid @RequestBody ViewStatsQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException, QueryOverloadedException {
+        QueryClass queryClass = admission.classify(keyCount(query), query.getStart(), query.getEnd());
+        try (QueryAdmission.Permit permit = admission.begin(queryClass)) {
+            return service.getViewCounts(query);
+        }
+    }
+
+    // диапазон idFrom..idTo считается как его длина; неверный диапазон отклонит сервис
+    private static int keyCount(ViewStatsQueryDto query) {
+        if (query.getIds() != null && !query.getIds().isEmpty()) {
+            return query.getIds().size();
+        }
+        if (query.getIdFrom() != null && query.getIdTo() != null && query.getIdFrom() <= query.getIdTo()) {
+            long span = query.getIdTo() - query.getIdFrom();
+            return span < 0 || span >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) span + 1;
+        }
+        return query.getUris() == null ? 0 : query.getUris().size();
+    }
+
+    // у каждого uri своё начало периода, например просмотры событий с момента их создания
+    @PostMapping("/stats/query/since")
+    public Map<String, Long> querySince(@Valid @RequestBody ViewsSinceQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException, QueryOverloadedException {
+        LocalDateTime earliest = query.getItems().stream()
+                .map(UriStartDto::getStart)
+                .min(Comparator.naturalOrder())
+                .orElse(query.getEnd());
+        QueryClass queryClass = admission.classify(query.getItems(), earliest, query.getEnd());
+        try (QueryAdmission.Permit permit = admission.begin(queryClass)) {
+            return service.getViewCountsSince(query);
+        }
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStatsDto> getTop(@RequestParam LocalDateTime start,
+                                     @RequestParam LocalDateTime end,
+                                     @RequestParam(required = false, defaultValue = "10") Integer limit,
+                                     @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                     @RequestParam(required = false) String prefix)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException, QueryOverloadedException {
+        try (QueryAdmission.Permit permit = admission.begin(QueryClass.EXPENSIVE)) {
+            return service.getTop(start, end, limit, unique, prefix);
+        }
+    }
+
+    // ряды для графиков за один проход вместо серии запросов /stats со сдвигом окна
+    @GetMapping("/stats/timeseries")
+    public ViewStatsSeriesDto getTimeSeries(@RequestParam LocalDateTime start,
+                                            @RequestParam LocalDateTime end,
+                                            @RequestParam(required = false, defaultValue = "") List<String> uris,
+                                            @RequestParam(required = false, defaultValue = "HOUR") TimeBucket granularity,
+                                            @RequestParam(required = false, defaultValue = "false") Boolean unique)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException, QueryOverloadedException {
+        List<String> requestedUris = uris == null ? Collections.emptyList() : uris;
+        try (QueryAdmission.Permit permit = admission.begin(admission.classify(requestedUris, start, end))) {
+            return service.getTimeSeries(start, end, requestedUris, granularity, unique);
         }
-        return service.getStat(start, end, uris, unique);
+    }
+
+    // NDJSON, строка на uri: результат не собирается в память ни на сервере, ни у клиента
+    @GetMapping(value = "/stats/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam LocalDateTime start,
+                                                             @RequestParam LocalDateTime end,
+                                                             @RequestParam(required = false, defaultValue = "") List<String> uris,
+                                                             @RequestParam(required = false, defaultValue = "false") Boolean unique)
+            throws StartDateIsAfterEndDateException {
+        // проверяем до начала ответа: после первой строки статус уже не поменять
+        TimeRanges.requireOrdered(start, end);
+        List<String> requestedUris = uris == null ? Collections.emptyList() : uris;
+        StreamingResponseBody body = outputStream -> {
+            try (QueryAdmission.Permit permit = admitExport();
+                 SequenceWriter writer = objectMapper.writerFor(ViewStatsDto.class)
+                         .withRootValueSeparator("\n")
+                         .writeValues(outputStream)) {
+                service.streamStat(start, end, requestedUris, unique, stat -> {
+                    try {
+                        writer.write(stat);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (StartDateIsAfterEndDateException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // сырые хиты по возрастанию id; оборванную выгрузку можно продолжить с afterId = последний полученный id
+    @GetMapping("/stats/export")
+    public ResponseEntity<StreamingResponseBody> exportHits(@RequestParam LocalDateTime start,
+                                                            @RequestParam LocalDateTime end,
+                                                            @RequestParam(required = false, defaultValue = "") List<String> uris,
+                                                            @RequestParam(required = false) Long afterId,
+                                                            @RequestParam(required = false, defaultValue = "NDJSON") ExportFormat format)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        service.validateExport(start, end, afterId);
+        List<String> requestedUris = uris == null ? Collections.emptyList() : uris;
+        StreamingResponseBody body = format == ExportFormat.CSV
+                ? outputStream -> {
+                    try (QueryAdmission.Permit permit = admitExport();
+                         HitCsvWriter writer = new HitCsvWriter(outputStream)) {
+                        service.exportHits(start, end, requestedUris, afterId, writer::write);
+                    } catch (StartDateIsAfterEndDateException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                : outputStream -> {
+                    try (QueryAdmission.Permit permit = admitExport();
+                         SequenceWriter writer = objectMapper.writerFor(EndpointHitDto.class)
+                                 .withRootValueSeparator("\n")
+                                 .writeValues(outputStream)) {
+                        service.exportHits(start, end, requestedUris, afterId, hit -> {
+                            try {
+                                writer.write(hit);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    } catch (StartDateIsAfterEndDateException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+        return ResponseEntity.ok()
+                .contentType(format == ExportFormat.CSV ? TEXT_CSV : MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
-    public boolean saveHit(@Valid @RequestBody EndpointHitDto endpointHitDto) {
+    public boolean saveHit(@Valid @RequestBody EndpointHitDto endpointHitDto) throws IngestionOverloadedException {
         return service.addStat(endpointHitDto);
     }
+
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, SMILE_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public int saveHits(@RequestBody List<EndpointHitDto> endpointHitDtos) throws IngestionOverloadedException {
+        endpointHitDtos.forEach(this::validate);
+        return service.addStats(endpointHitDtos);
+    }
+
+    // NDJSON читается потоково: в памяти держим не больше одной пачки, пачки пишутся по мере чтения.
+    // На ошибочной записи сохраняем всё, что было до неё, и отвечаем 400 с номером записи и числом принятых,
+    // чтобы клиент мог продолжить отправку с неё
+    @PostMapping(value = "/hits", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public int saveHitsStream(HttpServletRequest request)
+            throws IOException, IngestionOverloadedException, PartialIngestionException {
+        int accepted = 0;
+        int parsed = 0;
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        try (MappingIterator<EndpointHitDto> iterator = objectMapper.readerFor(EndpointHitDto.class)
+                .readValues(request.getInputStream())) {
+            while (true) {
+                EndpointHitDto endpointHitDto;
+                try {
+                    if (!iterator.hasNextValue()) {
+                        break;
+                    }
+                    endpointHitDto = iterator.nextValue();
+                    validate(endpointHitDto);
+                } catch (JsonProcessingException | ConstraintViolationException e) {
+                    if (!batch.isEmpty()) {
+                        accepted += service.addStats(batch);
+                    }
+                    throw new PartialIngestionException("Record " + (parsed + 1) + " is invalid: "
+                            + e.getMessage(), accepted, parsed + 1);
+                }
+                parsed++;
+                batch.add(endpointHitDto);
+                if (batch.size() == batchSize) {
+                    accepted += service.addStats(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            accepted += service.addStats(batch);
+        }
+        return accepted;
+    }
+
+    private void validate(EndpointHitDto endpointHitDto) {
+        Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(endpointHitDto);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    // место в очереди занимает и освобождает само тело ответа: если оно так и не запустится, место не пропадёт.
+    // Тело объявляет только IOException, а отказ должен дойти до ErrorHandler как есть и стать 503 -
+    // до первой строки ответ ещё не начат
+    @SneakyThrows(QueryOverloadedException.class)
+    private QueryAdmission.Permit admitExport() {
+        return admission.begin(QueryClass.EXPORT);
+    }
 }
@@ -0,0 +1,7 @@
+package ru.practicum.stats.exception;
+
+public class IncorrectRequestParameterException extends Exception {
+    public IncorrectRequestParameterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.stats.exception;
+
+public class IngestionOverloadedException extends Exception {
+    public IngestionOverloadedException(String message) {
+        super(message);
+    }
+}
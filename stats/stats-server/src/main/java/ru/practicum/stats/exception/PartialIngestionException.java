@@ -0,0 +1,23 @@
+package ru.practicum.stats.exception;
+
+/**
+ * Ошибка в середине NDJSON-потока хитов: все записи до failedRecord уже сохранены, начиная с неё - нет.
+ */
+public class PartialIngestionException extends Exception {
+    private final int accepted;
+    private final int failedRecord;
+
+    public PartialIngestionException(String message, int accepted, int failedRecord) {
+        super(message);
+        this.accepted = accepted;
+        this.failedRecord = failedRecord;
+    }
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public int getFailedRecord() {
+        return failedRecord;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.stats.exception;
+
+public class QueryOverloadedException extends Exception {
+    public QueryOverloadedException(String message) {
+        super(message);
+    }
+}
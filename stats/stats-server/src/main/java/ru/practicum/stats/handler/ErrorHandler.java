@@ -1,7 +1,12 @@
 package ru.practicum.stats.handler;
 
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -9,7 +14,12 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import ru.practicum.stats.ErrorResponseDto;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+import ru.practicum.stats.exception.PartialIngestionException;
+import ru.practicum.stats.exception.QueryOverloadedException;
 import ru.practicum.stats.exception.StartDateIsAfterEndDateException;
 
 import java.io.PrintWriter;
@@ -39,8 +49,26 @@ public class ErrorHandler {
         return new ErrorResponseDto("Validation failed", "VALIDATION_ERROR", errors);
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponseDto handleConstraintViolationException(ConstraintViolationException ex, WebRequest request) {
+        Map<String, String> errors = ex.getConstraintViolations()
+                .stream()
+                .collect(Collectors.toMap(
+                        violation -> violation.getPropertyPath().toString(),
+                        violation -> Optional.ofNullable(violation.getMessage()).orElse("Invalid value"),
+                        (existingMessage, newMessage) -> existingMessage + "; " + newMessage
+                ));
+
+        log.warn("Constraint violation error in {} : {}", request.getDescription(false), errors, ex);
+
+        return new ErrorResponseDto("Validation failed", "VALIDATION_ERROR", errors);
+    }
+
     @ExceptionHandler({MissingServletRequestParameterException.class,
-            StartDateIsAfterEndDateException.class})
+            MethodArgumentTypeMismatchException.class,
+            StartDateIsAfterEndDateException.class,
+            IncorrectRequestParameterException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponseDto handleIncorrectDataExceptions(Exception ex, WebRequest request) {
         log.error("Input data is incorrect {}: {}", request.getDescription(false), ex.getMessage(), ex);
@@ -52,6 +80,38 @@ public class ErrorHandler {
         return new ErrorResponseDto("Input data is incorrect", "BAD_REQUEST", details);
     }
 
+    @ExceptionHandler(PartialIngestionException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponseDto handlePartialIngestionException(final PartialIngestionException ex,
+                                                            final WebRequest request) {
+        log.warn("Hit stream rejected {}: {}", request.getDescription(false), ex.getMessage());
+
+        Map<String, String> details = new HashMap<>();
+        details.put("exception", ex.getClass().getSimpleName());
+        details.put("message", ex.getMessage());
+        details.put("accepted", String.valueOf(ex.getAccepted()));
+        details.put("failedRecord", String.valueOf(ex.getFailedRecord()));
+
+        return new ErrorResponseDto("Input data is incorrect", "BAD_REQUEST", details);
+    }
+
+    @ExceptionHandler({IngestionOverloadedException.class,
+            QueryOverloadedException.class,
+            QueryTimeoutException.class,
+            TransactionTimedOutException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponseDto handleOverloadExceptions(final Exception ex, final WebRequest request,
+                                                     final HttpServletResponse response) {
+        log.warn("Service overloaded {}: {}", request.getDescription(false), ex.getMessage());
+        // потоковые ответы получают отказ уже после того, как выставили NDJSON/CSV: ошибку отдаём в JSON
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        Map<String, String> details = new HashMap<>();
+        details.put("exception", ex.getClass().getSimpleName());
+        details.put("message", ex.getMessage());
+
+        return new ErrorResponseDto("Service is overloaded, retry later", "SERVICE_UNAVAILABLE", details);
+    }
 
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -6,11 +6,17 @@ import ru.practicum.stats.EndpointHitDto;
 import ru.practicum.stats.config.CommonMapperConfiguration;
 import ru.practicum.stats.model.EndpointHitEntity;
 
+import java.util.List;
+
 @Mapper(config = CommonMapperConfiguration.class)
 public interface EndpointHitMapper {
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "timestamp", defaultExpression = "java(java.time.LocalDateTime.now().truncatedTo(java.time.temporal.ChronoUnit.MICROS))")
+    @Mapping(target = "count", defaultValue = "1")
     EndpointHitEntity toEntity(EndpointHitDto dto);
 
+    List<EndpointHitEntity> toEntities(List<EndpointHitDto> dtos);
+
     EndpointHitDto toDto(EndpointHitEntity entity);
 }
@@ -0,0 +1,7 @@
+package ru.practicum.stats.model;
+
+/**
+ * Непрерывный ряд целых бакетов одной гранулярности.
+ */
+public record BucketSpan(TimeBucket bucket, TimeSpan span) {
+}
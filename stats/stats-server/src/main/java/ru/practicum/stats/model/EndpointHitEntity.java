@@ -41,4 +41,9 @@ public class EndpointHitEntity {
 
     @Column(name = "hit_timestamp", nullable = false)
     private LocalDateTime timestamp;
+
+    // сколько одинаковых хитов представляет строка (предагрегация на клиенте)
+    @Builder.Default
+    @Column(name = "hit_count", nullable = false)
+    private int count = 1;
 }
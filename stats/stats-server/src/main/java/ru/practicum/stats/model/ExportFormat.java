@@ -0,0 +1,9 @@
+package ru.practicum.stats.model;
+
+/**
+ * Формат выгрузки /stats/export.
+ */
+public enum ExportFormat {
+    CSV,
+    NDJSON
+}
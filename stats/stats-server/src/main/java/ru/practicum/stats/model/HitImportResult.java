@@ -0,0 +1,7 @@
+package ru.practicum.stats.model;
+
+/**
+ * Итог импорта хитов: copy - загрузка шла через PostgreSQL COPY, а не batch insert.
+ */
+public record HitImportResult(long rows, long durationMillis, long rowsPerSecond, boolean copy) {
+}
@@ -0,0 +1,6 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+
+public record HitRollup(TimeBucket bucket, LocalDateTime bucketStart, String app, String uri, long hits) {
+}
@@ -0,0 +1,4 @@
+package ru.practicum.stats.model;
+
+public record HitVisitor(String app, String uri, String ip) {
+}
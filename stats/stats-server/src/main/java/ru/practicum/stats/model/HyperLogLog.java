@@ -0,0 +1,108 @@
+package ru.practicum.stats.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog с 2^12 = 4096 однобайтовыми регистрами (4 КБ на скетч).
+ * Стандартная ошибка оценки 1.04 / sqrt(4096) ~ 1.6%, т.е. ~3.3% с вероятностью 95%.
+ * Скетчи объединяются без потери точности: merge - поэлементный максимум регистров.
+ * Не потокобезопасен.
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTER_COUNT = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length != REGISTER_COUNT) {
+            throw new IllegalArgumentException("HyperLogLog expects " + REGISTER_COUNT + " registers, got " + bytes.length);
+        }
+        return new HyperLogLog(bytes.clone());
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // маркерный бит ограничивает rank значением 64 - PRECISION + 1
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(registers.clone());
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        // поправка для малых кардинальностей: linear counting
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // FNV-1a 64 + финализатор MurmurHash3 для равномерного распределения старших битов
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.stats.model;
+
+/**
+ * Очередь допуска запроса на чтение: у каждой свой лимит параллельных запросов и таймаут.
+ */
+public enum QueryClass {
+    // по конкретным uri/id - поштучные запросы main-service
+    CHEAP,
+    // без uri, по диапазону id, /stats/top, много ключей за широкий период
+    EXPENSIVE,
+    // потоковые выгрузки, держат соединение долго
+    EXPORT
+}
@@ -0,0 +1,12 @@
+package ru.practicum.stats.model;
+
+import java.util.List;
+
+/**
+ * Отбор хитов по resource_id: набор ids (если не пуст) и/или диапазон [idFrom, idTo], границы необязательны.
+ */
+public record ResourceIdFilter(List<Long> ids, Long idFrom, Long idTo) {
+    public boolean hasIds() {
+        return ids != null && !ids.isEmpty();
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+
+public record SketchKey(String app, String uri, LocalDateTime bucketStart) {
+}
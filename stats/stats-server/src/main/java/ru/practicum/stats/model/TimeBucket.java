@@ -0,0 +1,34 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum TimeBucket {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    TimeBucket(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime dateTime) {
+        LocalDateTime floor = floor(dateTime);
+        return floor.equals(dateTime) ? dateTime : floor.plus(1, unit);
+    }
+
+    // число целых бакетов между началами бакетов from и to
+    public long between(LocalDateTime from, LocalDateTime to) {
+        return unit.between(from, to);
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Полуинтервал [from, to).
+ */
+public record TimeSpan(LocalDateTime from, LocalDateTime to) {
+
+    public boolean isEmpty() {
+        return !from.isBefore(to);
+    }
+}
@@ -0,0 +1,254 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Компактная схема: app и uri хранятся как id словарей hit_apps / hit_uris,
+ * ip - 4 или 16 байт адреса. Группировка идёт по числовым ключам,
+ * текстовые значения подтягиваются только для строк результата.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${stats-server.storage.engine:jdbc}' == 'jdbc' && '${stats-server.storage.schema:text}' == 'compact'")
+public class CompactHitStore implements HitStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO endpoint_hits_compact (app_id, uri_id, ip, hit_timestamp, resource_id, hit_count) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final HitDictionary hitDictionary;
+    private final CursorJdbcTemplate cursorJdbcTemplate;
+    private final ResourceIds resourceIds;
+
+    @Override
+    public void saveAll(List<EndpointHitEntity> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        // словари пополняются в транзакции записи: сначала app, затем uri - у всех писателей в одном порядке
+        Map<String, Long> appIds = hitDictionary.resolveApps(hits.stream().map(EndpointHitEntity::getApp).toList());
+        Map<String, Long> uriIds = hitDictionary.resolveUris(hits.stream().map(EndpointHitEntity::getUri).toList());
+        namedJdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_SQL, hits, hits.size(), (ps, hit) -> {
+            ps.setLong(1, appIds.get(hit.getApp()));
+            ps.setLong(2, uriIds.get(hit.getUri()));
+            ps.setBytes(3, encodeIp(hit.getIp()));
+            ps.setObject(4, hit.getTimestamp());
+            ps.setObject(5, resourceIds.extract(hit.getUri()), Types.BIGINT);
+            ps.setInt(6, hit.getCount());
+        });
+    }
+
+    @Override
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        Optional<String> uriFilter = uriFilter(uris, params);
+        if (uriFilter.isEmpty()) {
+            return List.of();
+        }
+        return namedJdbcTemplate.query(viewStatsSql(uriFilter.get(), unique), params, (rs, rowNum) ->
+                new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    @Override
+    public void streamViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        Optional<String> uriFilter = uriFilter(uris, params);
+        if (uriFilter.isEmpty()) {
+            return;
+        }
+        cursorJdbcTemplate.query(viewStatsSql(uriFilter.get(), unique), params, rs ->
+                consumer.accept(new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public void forEachViewStat(String uriPrefix, LocalDateTime from, LocalDateTime to, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        String uriFilter = "";
+        if (uriPrefix != null && !uriPrefix.isEmpty()) {
+            params.addValue("prefix", SqlPatterns.prefix(uriPrefix));
+            uriFilter = " AND uri_id IN (SELECT id FROM hit_uris WHERE uri LIKE :prefix ESCAPE '\\')";
+        }
+        String sql = "SELECT a.name AS app, u.uri AS uri, s.hits AS hits FROM ("
+                + "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits_compact "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter
+                + " GROUP BY app_id, uri_id) s "
+                + "JOIN hit_apps a ON a.id = s.app_id "
+                + "JOIN hit_uris u ON u.id = s.uri_id";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public void forEachBucketedStat(List<String> uris, LocalDateTime from, LocalDateTime to, TimeBucket granularity,
+                                    boolean unique, Consumer<HitRollup> consumer) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        Optional<String> uriFilter = uriFilter(uris, params);
+        if (uriFilter.isEmpty()) {
+            return;
+        }
+        String sql = "SELECT a.name AS app, u.uri AS uri, s.bucket_start AS bucket_start, s.hits AS hits FROM ("
+                + "SELECT app_id, uri_id, DATE_TRUNC('" + granularity.name().toLowerCase() + "', hit_timestamp) AS bucket_start, "
+                + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits_compact "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter.get()
+                + " GROUP BY app_id, uri_id, bucket_start) s "
+                + "JOIN hit_apps a ON a.id = s.app_id "
+                + "JOIN hit_uris u ON u.id = s.uri_id";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new HitRollup(granularity, rs.getObject("bucket_start", LocalDateTime.class),
+                        rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public List<ViewStatsDto> getViewStatsSince(List<UriStart> starts, LocalDateTime to, boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource("to", to);
+        StringBuilder values = new StringBuilder();
+        int i = 0;
+        for (UriStart start : starts) {
+            Optional<Long> uriId = hitDictionary.findUri(start.uri());
+            if (uriId.isEmpty()) {
+                continue;
+            }
+            params.addValue("uriId" + i, uriId.get());
+            params.addValue("start" + i, start.start());
+            values.append(i == 0 ? "" : ", ").append("(CAST(:uriId").append(i).append(" AS BIGINT), CAST(:start").append(i).append(" AS TIMESTAMP))");
+            i++;
+        }
+        if (i == 0) {
+            return List.of();
+        }
+        String sql = "SELECT a.name AS app, u.uri AS uri, s.hits AS hits FROM ("
+                + "SELECT h.app_id, h.uri_id, " + (unique ? "COUNT(DISTINCT h.ip)" : "SUM(h.hit_count)") + " AS hits "
+                + "FROM (VALUES " + values + ") AS q(uri_id, start_at) "
+                + "JOIN endpoint_hits_compact h ON h.uri_id = q.uri_id AND h.hit_timestamp >= q.start_at "
+                + "WHERE h.hit_timestamp < :to "
+                + "GROUP BY h.app_id, h.uri_id) s "
+                + "JOIN hit_apps a ON a.id = s.app_id "
+                + "JOIN hit_uris u ON u.id = s.uri_id";
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    @Override
+    public Map<Long, Long> countByResourceIds(ResourceIdFilter filter, LocalDateTime from, LocalDateTime to, boolean unique) {
+        return ResourceIdSql.count(namedJdbcTemplate, "endpoint_hits_compact", "app_id", filter, from, to, unique);
+    }
+
+    @Override
+    public Map<Long, Long> countByResourceIdsSince(Map<Long, LocalDateTime> starts, LocalDateTime to, boolean unique) {
+        return ResourceIdSql.countSince(namedJdbcTemplate, "endpoint_hits_compact", "app_id", starts, to, unique);
+    }
+
+    @Override
+    public void exportHits(List<String> uris, LocalDateTime from, LocalDateTime to, Long afterId,
+                           Consumer<EndpointHitDto> consumer) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        Optional<String> uriFilter = uriFilter(uris, params);
+        if (uriFilter.isEmpty()) {
+            return;
+        }
+        String idFilter = "";
+        if (afterId != null) {
+            params.addValue("afterId", afterId);
+            idFilter = " AND h.id > :afterId";
+        }
+        String sql = "SELECT h.id, a.name AS app, u.uri AS uri, h.ip, h.hit_timestamp, h.hit_count "
+                + "FROM endpoint_hits_compact h "
+                + "JOIN hit_apps a ON a.id = h.app_id "
+                + "JOIN hit_uris u ON u.id = h.uri_id "
+                + "WHERE h.hit_timestamp >= :from AND h.hit_timestamp < :to" + uriFilter.get() + idFilter
+                + " ORDER BY h.id";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new EndpointHitDto(rs.getLong("id"), rs.getString("app"), rs.getString("uri"),
+                        decodeIp(rs.getBytes("ip")), rs.getObject("hit_timestamp", LocalDateTime.class), rs.getInt("hit_count"))));
+    }
+
+    @Override
+    public List<HitVisitor> findVisitors(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        Optional<String> uriFilter = uriFilter(uris, params);
+        if (uriFilter.isEmpty()) {
+            return List.of();
+        }
+        String sql = "SELECT a.name AS app, u.uri AS uri, s.ip AS ip FROM ("
+                + "SELECT DISTINCT app_id, uri_id, ip FROM endpoint_hits_compact "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter.get() + ") s "
+                + "JOIN hit_apps a ON a.id = s.app_id "
+                + "JOIN hit_uris u ON u.id = s.uri_id";
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new HitVisitor(rs.getString("app"), rs.getString("uri"), decodeIp(rs.getBytes("ip"))));
+    }
+
+    private String viewStatsSql(String uriFilter, boolean unique) {
+        return "SELECT a.name AS app, u.uri AS uri, s.hits AS hits FROM ("
+                + "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits_compact "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter
+                + " GROUP BY app_id, uri_id) s "
+                + "JOIN hit_apps a ON a.id = s.app_id "
+                + "JOIN hit_uris u ON u.id = s.uri_id "
+                + "ORDER BY s.hits DESC";
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+    }
+
+    // пустой Optional - ни один из запрошенных uri ещё не встречался
+    private Optional<String> uriFilter(List<String> uris, MapSqlParameterSource params) {
+        if (uris == null || uris.isEmpty()) {
+            return Optional.of("");
+        }
+        List<Long> uriIds = uris.stream()
+                .map(hitDictionary::findUri)
+                .flatMap(Optional::stream)
+                .toList();
+        if (uriIds.isEmpty()) {
+            return Optional.empty();
+        }
+        params.addValue("uriIds", uriIds);
+        return Optional.of(" AND uri_id IN (:uriIds)");
+    }
+
+    private static byte[] encodeIp(String ip) {
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid IP address " + ip, e);
+        }
+    }
+
+    private static String decodeIp(byte[] ip) {
+        try {
+            return InetAddress.getByAddress(ip).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Stored IP address has invalid length " + ip.length, e);
+        }
+    }
+}
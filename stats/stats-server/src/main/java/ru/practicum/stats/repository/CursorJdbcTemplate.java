@@ -0,0 +1,30 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Запросы, результат которых читается курсором порциями по fetch-size строк, а не целиком.
+ * PostgreSQL держит курсор только внутри транзакции, поэтому вызывать под @Transactional.
+ */
+@Component
+public class CursorJdbcTemplate {
+
+    private final NamedParameterJdbcTemplate template;
+
+    public CursorJdbcTemplate(DataSource dataSource, @Value("${stats-server.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        this.template = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    public void query(String sql, SqlParameterSource params, RowCallbackHandler handler) {
+        template.query(sql, params, handler);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Различия SQL между PostgreSQL (прод) и H2 (профиль test).
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabaseDialect {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public boolean isPostgres() {
+        if (postgres == null) {
+            String productName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(productName);
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.UriStart;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запросы к endpoint_hits на чистом SQL. Условие uri IN (...) AND hit_timestamp в диапазоне
+ * с группировкой по (app, uri) обслуживается индексом idx_endpoint_hits_uri_timestamp
+ * (uri, hit_timestamp, app, ip, hit_count) целиком, без чтения строк таблицы.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitJdbcRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO endpoint_hits (app, uri, ip, hit_timestamp, resource_id, hit_count) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final RowMapper<ViewStatsDto> VIEW_STATS_MAPPER = (rs, rowNum) ->
+            new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"));
+
+    private static final RowMapper<HitVisitor> VISITOR_MAPPER = (rs, rowNum) ->
+            new HitVisitor(rs.getString("app"), rs.getString("uri"), rs.getString("ip"));
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ResourceIds resourceIds;
+
+    public void saveAll(List<EndpointHitEntity> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_SQL, hits, hits.size(), (ps, hit) -> {
+            ps.setString(1, hit.getApp());
+            ps.setString(2, hit.getUri());
+            ps.setString(3, hit.getIp());
+            ps.setObject(4, hit.getTimestamp());
+            ps.setObject(5, resourceIds.extract(hit.getUri()), Types.BIGINT);
+            ps.setInt(6, hit.getCount());
+        });
+    }
+
+    // период - полуинтервал [from, to)
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        String sql = "SELECT app, uri, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits "
+                + "WHERE " + uriFilter(uris, params) + "hit_timestamp >= :from AND hit_timestamp < :to "
+                + "GROUP BY app, uri "
+                + "ORDER BY hits DESC";
+        return namedJdbcTemplate.query(sql, params, VIEW_STATS_MAPPER);
+    }
+
+    // у каждого uri своё начало: пары (uri, start) соединяются с таблицей как список VALUES,
+    // так что все uri считаются одним запросом по тому же индексу (uri, hit_timestamp, ...)
+    public List<ViewStatsDto> getViewStatsSince(List<UriStart> starts, LocalDateTime to, boolean unique) {
+        if (starts.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("to", to);
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < starts.size(); i++) {
+            params.addValue("uri" + i, starts.get(i).uri());
+            params.addValue("start" + i, starts.get(i).start());
+            values.append(i == 0 ? "" : ", ").append("(:uri").append(i).append(", CAST(:start").append(i).append(" AS TIMESTAMP))");
+        }
+        String sql = "SELECT h.app AS app, h.uri AS uri, " + (unique ? "COUNT(DISTINCT h.ip)" : "SUM(h.hit_count)") + " AS hits "
+                + "FROM (VALUES " + values + ") AS q(uri, start_at) "
+                + "JOIN endpoint_hits h ON h.uri = q.uri AND h.hit_timestamp >= q.start_at "
+                + "WHERE h.hit_timestamp < :to "
+                + "GROUP BY h.app, h.uri";
+        return namedJdbcTemplate.query(sql, params, VIEW_STATS_MAPPER);
+    }
+
+    public Map<Long, Long> countByResourceIds(ResourceIdFilter filter, LocalDateTime from, LocalDateTime to, boolean unique) {
+        return ResourceIdSql.count(namedJdbcTemplate, "endpoint_hits", "app", filter, from, to, unique);
+    }
+
+    public Map<Long, Long> countByResourceIdsSince(Map<Long, LocalDateTime> starts, LocalDateTime to, boolean unique) {
+        return ResourceIdSql.countSince(namedJdbcTemplate, "endpoint_hits", "app", starts, to, unique);
+    }
+
+    // уникальные (app, uri, ip) за [from, to)
+    public List<HitVisitor> findVisitors(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = rangeParams(from, to);
+        String sql = "SELECT DISTINCT app, uri, ip "
+                + "FROM endpoint_hits "
+                + "WHERE " + uriFilter(uris, params) + "hit_timestamp >= :from AND hit_timestamp < :to";
+        return namedJdbcTemplate.query(sql, params, VISITOR_MAPPER);
+    }
+
+    private static MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+    }
+
+    // порядок условий в WHERE на план не влияет: индекс (uri, hit_timestamp, ...) подходит, потому что
+    // по uri сравнение на равенство, а по времени - диапазон; план проверяет EndpointHitJdbcRepositoryPlanTest
+    private static String uriFilter(List<String> uris, MapSqlParameterSource params) {
+        if (uris == null || uris.isEmpty()) {
+            return "";
+        }
+        params.addValue("uris", uris);
+        return "uri IN (:uris) AND ";
+    }
+}
@@ -0,0 +1,975 @@
+package ru.practicum.stats.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Встроенное файловое хранилище хитов без БД (stats-server.storage.engine=file), для
+ * append-only нагрузки. Хиты копятся в памяти (memtable) и в журнале hits-N.wal, затем
+ * сбрасываются колоночными блоками: один блок - хиты одного uri, отсортированные по времени.
+ * В блоке время хранится дельтами в varint, app и ip - номерами в словаре блока, кратность
+ * предагрегированного хита - отдельной колонкой.
+ * Блоки лежат в файлах data-N.dat, читаются через memory-mapped буферы; index.dat хранит
+ * (uri, min/max время, файл, смещение) каждого блока и загружается в память при старте.
+ * Блоки uri держатся отсортированными по времени и ищутся двоичным поиском; мелкие блоки
+ * частых сбросов сливаются в один (компактизация), старые байты остаются в файлах данных.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats-server.storage.engine", havingValue = "file")
+public class FileHitStore implements HitStore {
+
+    private static final String INDEX_FILE = "index.dat";
+    // заголовок журнала с кратностью хитов; в старых журналах его нет, а первые байты - длина uri
+    private static final int WAL_MAGIC = 0x48495432;
+
+    @Value("${stats-server.storage.file.dir:./data/hit-store}")
+    private Path dir;
+
+    @Value("${stats-server.storage.file.memtable-size:100000}")
+    private int memtableSize;
+
+    @Value("${stats-server.storage.file.data-file-size:1GB}")
+    private DataSize dataFileSize;
+
+    @Value("${stats-server.storage.file.min-block-size:64KB}")
+    private DataSize minBlockSize;
+
+    @Value("${stats-server.storage.file.compaction-threshold:4}")
+    private int compactionThreshold;
+
+    private final ResourceIds resourceIds;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, UriBlocks> blocksByUri = new HashMap<>();
+    private final Map<Integer, MappedByteBuffer> mappedFiles = new ConcurrentHashMap<>();
+
+    private Memtable memtable;
+    private Memtable flushing;
+    private long walGeneration;
+    private DataOutputStream wal;
+    private int dataFileId;
+    private long dataFileLength;
+    private DataOutputStream index;
+
+    private record Row(String app, String ip, long micros, int count) {
+    }
+
+    private record BucketKey(LocalDateTime bucketStart, String app, String uri) {
+    }
+
+    private record BlockMeta(String uri, long minMicros, long maxMicros, int fileId, long offset, int length,
+                             long walGeneration) {
+    }
+
+    private record BlockRef(int fileId, long offset) {
+    }
+
+    /**
+     * Блоки одного uri, отсортированные по minMicros. maxUpTo[i] - наибольший maxMicros среди
+     * блоков 0..i: он не убывает, поэтому первый блок, который может задеть период, ищется двоичным поиском.
+     */
+    private static final class UriBlocks {
+        private final List<BlockMeta> blocks = new ArrayList<>();
+        private long[] maxUpTo = new long[0];
+
+        private UriBlocks(List<BlockMeta> blocks) {
+            this.blocks.addAll(blocks);
+            reindex();
+        }
+
+        private void add(BlockMeta block) {
+            blocks.add(block);
+            reindex();
+        }
+
+        private void replace(Set<BlockRef> removed, BlockMeta merged) {
+            blocks.removeIf(block -> removed.contains(new BlockRef(block.fileId(), block.offset())));
+            add(merged);
+        }
+
+        private void forEachOverlapping(long fromMicros, long toMicros, Consumer<BlockMeta> consumer) {
+            int low = 0;
+            int high = blocks.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (maxUpTo[middle] < fromMicros) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < blocks.size() && blocks.get(i).minMicros() < toMicros; i++) {
+                if (blocks.get(i).maxMicros() >= fromMicros) {
+                    consumer.accept(blocks.get(i));
+                }
+            }
+        }
+
+        private void reindex() {
+            blocks.sort(Comparator.comparingLong(BlockMeta::minMicros));
+            maxUpTo = new long[blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                maxUpTo[i] = Math.max(i == 0 ? Long.MIN_VALUE : maxUpTo[i - 1], blocks.get(i).maxMicros());
+            }
+        }
+    }
+
+    // хиты, ещё не сброшенные в блоки; generation - номер журнала, в котором они записаны
+    private static final class Memtable {
+        private final long generation;
+        private final Map<String, List<Row>> rowsByUri = new HashMap<>();
+        private int size;
+
+        private Memtable(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor {
+        void visit(String app, String uri, String ip, long micros, int count);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        long flushedGeneration = loadIndex();
+        dataFileId = listFiles("data-", ".dat").stream().mapToInt(Long::intValue).max().orElse(0);
+        dataFileLength = Files.exists(dataPath(dataFileId)) ? Files.size(dataPath(dataFileId)) : 0;
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+
+        // журналы, чьи хиты уже попали в блоки, удаляем; остальные проигрываем в memtable
+        List<Long> walGenerations = listFiles("hits-", ".wal");
+        walGeneration = walGenerations.isEmpty() ? flushedGeneration + 1 : walGenerations.get(walGenerations.size() - 1) + 1;
+        memtable = new Memtable(walGeneration);
+        int replayed = 0;
+        for (Long generation : walGenerations) {
+            if (generation <= flushedGeneration) {
+                Files.deleteIfExists(walPath(generation));
+            } else {
+                replayed += replayWal(generation);
+            }
+        }
+        wal = openWal(walGeneration);
+        if (replayed > 0) {
+            // проигранные хиты переписываются в текущий журнал, после чего старые журналы не нужны
+            for (Map.Entry<String, List<Row>> entry : memtable.rowsByUri.entrySet()) {
+                for (Row row : entry.getValue()) {
+                    writeWal(wal, entry.getKey(), row);
+                }
+            }
+            wal.flush();
+        }
+        // пустые журналы прошлых запусков тоже не нужны, иначе каждый рестарт оставлял бы по файлу
+        for (Long generation : walGenerations) {
+            Files.deleteIfExists(walPath(generation));
+        }
+        log.info("Stats-server. File hit store opened: dir = {}, blocks for {} uris, replayed {} hits",
+                dir, blocksByUri.size(), replayed);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        flush();
+        wal.close();
+        index.close();
+    }
+
+    @Override
+    public void saveAll(List<EndpointHitEntity> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            for (EndpointHitEntity hit : hits) {
+                Row row = new Row(hit.getApp(), hit.getIp(), toMicros(hit.getTimestamp()), hit.getCount());
+                writeWal(wal, hit.getUri(), row);
+                addRow(memtable, hit.getUri(), row);
+            }
+            wal.flush();
+            full = memtable.size >= memtableSize;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Сбрасывает memtable в блоки. Запись идёт без блокировки чтения: до публикации новых блоков
+     * запросы видят сбрасываемые хиты через flushing.
+     */
+    @Scheduled(fixedDelayString = "${stats-server.storage.file.flush-interval:1m}")
+    public synchronized void flush() {
+        Memtable frozen;
+        lock.writeLock().lock();
+        try {
+            if (memtable.size == 0) {
+                return;
+            }
+            frozen = memtable;
+            flushing = frozen;
+            wal.close();
+            walGeneration++;
+            wal = openWal(walGeneration);
+            memtable = new Memtable(walGeneration);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            List<BlockMeta> written = writeBlocks(frozen);
+            lock.writeLock().lock();
+            try {
+                // файлы данных выросли - старые отображения не покрывают новые блоки
+                written.forEach(block -> mappedFiles.remove(block.fileId()));
+                written.forEach(this::register);
+                flushing = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Files.deleteIfExists(walPath(frozen.generation));
+            log.debug("Stats-server. File hit store flushed {} hits into {} blocks", frozen.size, written.size());
+        } catch (IOException e) {
+            // хиты остаются в журнале frozen.generation; возвращаем их в memtable до следующего сброса
+            lock.writeLock().lock();
+            try {
+                frozen.rowsByUri.forEach((uri, rows) -> rows.forEach(row -> addRow(memtable, uri, row)));
+                flushing = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Stats-server. File hit store flush failed: {}", e.getMessage(), e);
+            throw new UncheckedIOException(e);
+        }
+        compact();
+    }
+
+    /**
+     * Сливает мелкие блоки uri, когда их набирается compactionThreshold: подряд по времени, пока
+     * слитый блок не дорастёт до minBlockSize. Вызывается только из flush, поэтому блоки больше никто не пишет.
+     * Слитые блоки не стираются из файлов данных: их ещё может читать выгрузка, взявшая снимок до замены.
+     */
+    private void compact() {
+        Map<String, List<List<BlockMeta>>> runsByUri = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            blocksByUri.forEach((uri, uriBlocks) -> {
+                List<BlockMeta> small = uriBlocks.blocks.stream()
+                        .filter(block -> block.length() < minBlockSize.toBytes())
+                        .toList();
+                List<List<BlockMeta>> runs = small.size() >= compactionThreshold ? runs(small) : List.of();
+                if (!runs.isEmpty()) {
+                    runsByUri.put(uri, runs);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (runsByUri.isEmpty()) {
+            return;
+        }
+        try {
+            Map<BlockMeta, List<BlockMeta>> merged = new HashMap<>();
+            for (List<List<BlockMeta>> runs : runsByUri.values()) {
+                for (List<BlockMeta> run : runs) {
+                    merged.put(merge(run), run);
+                }
+            }
+            forceData(new ArrayList<>(merged.keySet()));
+            // группа на каждый слитый блок: отрицательное число - сколько блоков он заменяет
+            ByteArrayOutputStream groups = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(groups)) {
+                for (Map.Entry<BlockMeta, List<BlockMeta>> entry : merged.entrySet()) {
+                    out.writeInt(-entry.getValue().size());
+                    writeIndexEntry(out, entry.getKey());
+                    for (BlockMeta block : entry.getValue()) {
+                        out.writeInt(block.fileId());
+                        out.writeLong(block.offset());
+                    }
+                }
+            }
+            index.write(groups.toByteArray());
+            index.flush();
+            lock.writeLock().lock();
+            try {
+                merged.forEach((block, run) -> {
+                    mappedFiles.remove(block.fileId());
+                    blocksByUri.get(block.uri()).replace(refs(run), block);
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Stats-server. File hit store compacted {} uris into {} blocks", runsByUri.size(), merged.size());
+        } catch (IOException e) {
+            // сброс уже опубликован; мелкие блоки остаются и сольются при следующем сбросе
+            log.error("Stats-server. File hit store compaction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // соседние по времени мелкие блоки группируются, пока их размер не дорастёт до minBlockSize
+    private List<List<BlockMeta>> runs(List<BlockMeta> small) {
+        List<List<BlockMeta>> runs = new ArrayList<>();
+        List<BlockMeta> run = new ArrayList<>();
+        long length = 0;
+        for (BlockMeta block : small) {
+            run.add(block);
+            length += block.length();
+            if (length >= minBlockSize.toBytes()) {
+                if (run.size() > 1) {
+                    runs.add(run);
+                }
+                run = new ArrayList<>();
+                length = 0;
+            }
+        }
+        if (run.size() > 1) {
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    private BlockMeta merge(List<BlockMeta> run) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        long generation = 0;
+        for (BlockMeta block : run) {
+            readBlock(block, Long.MIN_VALUE, Long.MAX_VALUE,
+                    (app, uri, ip, micros, count) -> rows.add(new Row(app, ip, micros, count)));
+            generation = Math.max(generation, block.walGeneration());
+        }
+        return appendBlock(run.get(0).uri(), rows, generation);
+    }
+
+    @Override
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique) {
+        Map<AppUri, Long> counts = aggregate(uriFilter(uris), from, to, unique);
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<AppUri, Long>comparingByValue(Comparator.reverseOrder()))
+                .map(entry -> new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    @Override
+    public void streamViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        getViewStats(uris, from, to, unique).forEach(consumer);
+    }
+
+    @Override
+    public void forEachViewStat(String uriPrefix, LocalDateTime from, LocalDateTime to, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        Predicate<String> filter = uriPrefix == null || uriPrefix.isEmpty() ? uri -> true : uri -> uri.startsWith(uriPrefix);
+        aggregate(filter, from, to, unique).forEach((appUri, hits) ->
+                consumer.accept(new ViewStatsDto(appUri.app(), appUri.uri(), hits)));
+    }
+
+    @Override
+    public void forEachBucketedStat(List<String> uris, LocalDateTime from, LocalDateTime to, TimeBucket granularity,
+                                    boolean unique, Consumer<HitRollup> consumer) {
+        Map<BucketKey, Set<String>> ips = new HashMap<>();
+        Map<BucketKey, Long> counts = new HashMap<>();
+        scan(uriFilter(uris), from, to, (app, uri, ip, micros, count) -> {
+            BucketKey key = new BucketKey(granularity.floor(fromMicros(micros)), app, uri);
+            if (unique) {
+                ips.computeIfAbsent(key, k -> new HashSet<>()).add(ip);
+            } else {
+                counts.merge(key, (long) count, Long::sum);
+            }
+        });
+        if (unique) {
+            ips.forEach((key, set) -> counts.put(key, (long) set.size()));
+        }
+        counts.forEach((key, hits) ->
+                consumer.accept(new HitRollup(granularity, key.bucketStart(), key.app(), key.uri(), hits)));
+    }
+
+    @Override
+    public List<ViewStatsDto> getViewStatsSince(List<UriStart> starts, LocalDateTime to, boolean unique) {
+        if (starts.isEmpty()) {
+            return List.of();
+        }
+        // один обход с самого раннего начала, хиты раньше начала своего uri отбрасываются
+        Map<String, Long> startMicros = new HashMap<>();
+        starts.forEach(start -> startMicros.merge(start.uri(), toMicros(start.start()), Math::min));
+        LocalDateTime from = fromMicros(Collections.min(startMicros.values()));
+        Map<AppUri, Long> counts = new HashMap<>();
+        Map<AppUri, Set<String>> ips = new HashMap<>();
+        scan(startMicros::containsKey, from, to, (app, uri, ip, micros, count) -> {
+            if (micros < startMicros.get(uri)) {
+                return;
+            }
+            if (unique) {
+                ips.computeIfAbsent(new AppUri(app, uri), key -> new HashSet<>()).add(ip);
+            } else {
+                counts.merge(new AppUri(app, uri), (long) count, Long::sum);
+            }
+        });
+        if (unique) {
+            ips.forEach((key, set) -> counts.put(key, (long) set.size()));
+        }
+        return counts.entrySet().stream()
+                .map(entry -> new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    // отдельной колонки нет: id берётся из uri блока, подходящие блоки отбираются по нему
+    @Override
+    public Map<Long, Long> countByResourceIds(ResourceIdFilter filter, LocalDateTime from, LocalDateTime to, boolean unique) {
+        Set<Long> ids = filter.hasIds() ? new HashSet<>(filter.ids()) : null;
+        Predicate<String> uriFilter = uri -> {
+            Long id = resourceIds.extract(uri);
+            return id != null && (ids == null || ids.contains(id))
+                    && (filter.idFrom() == null || id >= filter.idFrom())
+                    && (filter.idTo() == null || id <= filter.idTo());
+        };
+        return sumByResourceId(aggregate(uriFilter, from, to, unique));
+    }
+
+    @Override
+    public Map<Long, Long> countByResourceIdsSince(Map<Long, LocalDateTime> starts, LocalDateTime to, boolean unique) {
+        List<UriStart> uriStarts = starts.entrySet().stream()
+                .map(entry -> new UriStart(resourceIds.toUri(entry.getKey()), entry.getValue()))
+                .toList();
+        Map<AppUri, Long> counts = new HashMap<>();
+        getViewStatsSince(uriStarts, to, unique).forEach(stat ->
+                counts.put(new AppUri(stat.getApp(), stat.getUri()), stat.getHits()));
+        return sumByResourceId(counts);
+    }
+
+    // у хитов движка нет id: выгрузка идёт в порядке блоков, продолжить с afterId нельзя
+    @Override
+    public boolean supportsExportAfterId() {
+        return false;
+    }
+
+    // под блокировкой снимается только список блоков и копия memtable - запись хитов не ждёт выгрузку
+    @Override
+    public void exportHits(List<String> uris, LocalDateTime from, LocalDateTime to, Long afterId,
+                           Consumer<EndpointHitDto> consumer) {
+        if (afterId != null) {
+            throw new UnsupportedOperationException("Resuming export by id is not supported by the file hit store, "
+                    + "check supportsExportAfterId() first");
+        }
+        Predicate<String> filter = uriFilter(uris);
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        List<BlockMeta> blocks = new ArrayList<>();
+        List<EndpointHitDto> recent = new ArrayList<>();
+        RowVisitor toDto = (app, uri, ip, micros, count) ->
+                consumer.accept(new EndpointHitDto(null, app, uri, ip, fromMicros(micros), count));
+        lock.readLock().lock();
+        try {
+            blocksByUri.forEach((uri, uriBlocks) -> {
+                if (filter.test(uri)) {
+                    uriBlocks.forEachOverlapping(fromMicros, toMicros, blocks::add);
+                }
+            });
+            RowVisitor copy = (app, uri, ip, micros, count) ->
+                    recent.add(new EndpointHitDto(null, app, uri, ip, fromMicros(micros), count));
+            scanMemtable(memtable, filter, fromMicros, toMicros, copy);
+            if (flushing != null) {
+                scanMemtable(flushing, filter, fromMicros, toMicros, copy);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // файлы данных только дописываются, поэтому блоки из снимка читаются без блокировки
+        blocks.forEach(block -> readBlock(block, fromMicros, toMicros, toDto));
+        recent.forEach(consumer);
+    }
+
+    @Override
+    public List<HitVisitor> findVisitors(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        Set<HitVisitor> visitors = new HashSet<>();
+        scan(uriFilter(uris), from, to, (app, uri, ip, micros, count) -> visitors.add(new HitVisitor(app, uri, ip)));
+        return new ArrayList<>(visitors);
+    }
+
+    private Map<AppUri, Long> aggregate(Predicate<String> uriFilter, LocalDateTime from, LocalDateTime to, boolean unique) {
+        Map<AppUri, Long> counts = new HashMap<>();
+        Map<AppUri, Set<String>> ips = new HashMap<>();
+        scan(uriFilter, from, to, (app, uri, ip, micros, count) -> {
+            if (unique) {
+                ips.computeIfAbsent(new AppUri(app, uri), key -> new HashSet<>()).add(ip);
+            } else {
+                counts.merge(new AppUri(app, uri), (long) count, Long::sum);
+            }
+        });
+        if (unique) {
+            ips.forEach((key, set) -> counts.put(key, (long) set.size()));
+        }
+        return counts;
+    }
+
+    private Map<Long, Long> sumByResourceId(Map<AppUri, Long> counts) {
+        Map<Long, Long> byId = new HashMap<>();
+        counts.forEach((appUri, hits) -> byId.merge(resourceIds.extract(appUri.uri()), hits, Long::sum));
+        return byId;
+    }
+
+    // обходит хиты [from, to): блоки, чей диапазон времени пересекается с периодом, и memtable
+    private void scan(Predicate<String> uriFilter, LocalDateTime from, LocalDateTime to, RowVisitor visitor) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        lock.readLock().lock();
+        try {
+            blocksByUri.forEach((uri, uriBlocks) -> {
+                if (uriFilter.test(uri)) {
+                    uriBlocks.forEachOverlapping(fromMicros, toMicros,
+                            block -> readBlock(block, fromMicros, toMicros, visitor));
+                }
+            });
+            scanMemtable(memtable, uriFilter, fromMicros, toMicros, visitor);
+            if (flushing != null) {
+                scanMemtable(flushing, uriFilter, fromMicros, toMicros, visitor);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void scanMemtable(Memtable table, Predicate<String> uriFilter, long fromMicros, long toMicros,
+                              RowVisitor visitor) {
+        table.rowsByUri.forEach((uri, rows) -> {
+            if (uriFilter.test(uri)) {
+                for (Row row : rows) {
+                    if (row.micros() >= fromMicros && row.micros() < toMicros) {
+                        visitor.visit(row.app(), uri, row.ip(), row.micros(), row.count());
+                    }
+                }
+            }
+        });
+    }
+
+    private List<BlockMeta> writeBlocks(Memtable table) throws IOException {
+        List<BlockMeta> written = new ArrayList<>();
+        for (Map.Entry<String, List<Row>> entry : table.rowsByUri.entrySet()) {
+            written.add(appendBlock(entry.getKey(), new ArrayList<>(entry.getValue()), table.generation));
+        }
+        forceData(written);
+        // группа записей индекса на один сброс: при обрыве посреди группы она отбрасывается целиком
+        ByteArrayOutputStream group = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(group)) {
+            out.writeInt(written.size());
+            for (BlockMeta block : written) {
+                writeIndexEntry(out, block);
+            }
+        }
+        index.write(group.toByteArray());
+        index.flush();
+        return written;
+    }
+
+    // дописывает блок из строк uri в текущий файл данных, при переполнении начинает следующий
+    private BlockMeta appendBlock(String uri, List<Row> rows, long generation) throws IOException {
+        rows.sort(Comparator.comparingLong(Row::micros));
+        byte[] block = BlockCodec.encode(rows);
+        if (dataFileLength > 0 && dataFileLength + block.length > dataFileSize.toBytes()) {
+            dataFileId++;
+            dataFileLength = 0;
+        }
+        try (OutputStream out = Files.newOutputStream(dataPath(dataFileId),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(block);
+        }
+        BlockMeta meta = new BlockMeta(uri, rows.get(0).micros(), rows.get(rows.size() - 1).micros(),
+                dataFileId, dataFileLength, block.length, generation);
+        dataFileLength += block.length;
+        return meta;
+    }
+
+    private void forceData(List<BlockMeta> written) throws IOException {
+        Set<Integer> fileIds = new HashSet<>();
+        written.forEach(block -> fileIds.add(block.fileId()));
+        for (Integer fileId : fileIds) {
+            try (FileChannel channel = FileChannel.open(dataPath(fileId), StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private void readBlock(BlockMeta block, long fromMicros, long toMicros, RowVisitor visitor) {
+        MappedByteBuffer mapped = mappedFiles.computeIfAbsent(block.fileId(), this::map);
+        BlockCodec.decode(mapped.slice((int) block.offset(), block.length()), block.uri(), fromMicros, toMicros, visitor);
+    }
+
+    private MappedByteBuffer map(int fileId) {
+        try (FileChannel channel = FileChannel.open(dataPath(fileId), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void register(BlockMeta block) {
+        UriBlocks uriBlocks = blocksByUri.get(block.uri());
+        if (uriBlocks == null) {
+            blocksByUri.put(block.uri(), new UriBlocks(List.of(block)));
+        } else {
+            uriBlocks.add(block);
+        }
+    }
+
+    // тестовый хук: сколько блоков сейчас у uri
+    int blockCount(String uri) {
+        lock.readLock().lock();
+        try {
+            UriBlocks uriBlocks = blocksByUri.get(uri);
+            return uriBlocks == null ? 0 : uriBlocks.blocks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<BlockRef> refs(List<BlockMeta> blocks) {
+        Set<BlockRef> refs = new HashSet<>();
+        blocks.forEach(block -> refs.add(new BlockRef(block.fileId(), block.offset())));
+        return refs;
+    }
+
+    // возвращает наибольший номер журнала, чьи хиты уже лежат в блоках
+    private long loadIndex() throws IOException {
+        Path indexPath = dir.resolve(INDEX_FILE);
+        long flushedGeneration = 0;
+        if (!Files.exists(indexPath)) {
+            return flushedGeneration;
+        }
+        byte[] bytes = Files.readAllBytes(indexPath);
+        int complete = 0;
+        // блоки копятся списками и сортируются один раз в конце, а не на каждой группе
+        Map<String, List<BlockMeta>> loaded = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            while (in.available() > 0) {
+                int count = in.readInt();
+                if (count < 0) {
+                    // группа компактизации: слитый блок и -count блоков, которые он заменяет
+                    BlockMeta merged = readIndexEntry(in);
+                    Set<BlockRef> removed = new HashSet<>();
+                    for (int i = 0; i < -count; i++) {
+                        removed.add(new BlockRef(in.readInt(), in.readLong()));
+                    }
+                    List<BlockMeta> blocks = loaded.computeIfAbsent(merged.uri(), key -> new ArrayList<>());
+                    blocks.removeIf(block -> removed.contains(new BlockRef(block.fileId(), block.offset())));
+                    blocks.add(merged);
+                } else {
+                    List<BlockMeta> group = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        group.add(readIndexEntry(in));
+                    }
+                    for (BlockMeta block : group) {
+                        loaded.computeIfAbsent(block.uri(), key -> new ArrayList<>()).add(block);
+                        flushedGeneration = Math.max(flushedGeneration, block.walGeneration());
+                    }
+                }
+                complete = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            log.warn("Stats-server. File hit store index has a torn tail, truncating {} bytes", bytes.length - complete);
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+        loaded.forEach((uri, blocks) -> blocksByUri.put(uri, new UriBlocks(blocks)));
+        return flushedGeneration;
+    }
+
+    private static BlockMeta readIndexEntry(DataInputStream in) throws IOException {
+        return new BlockMeta(in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readLong(),
+                in.readInt(), in.readLong());
+    }
+
+    private static void writeIndexEntry(DataOutputStream out, BlockMeta block) throws IOException {
+        out.writeUTF(block.uri());
+        out.writeLong(block.minMicros());
+        out.writeLong(block.maxMicros());
+        out.writeInt(block.fileId());
+        out.writeLong(block.offset());
+        out.writeInt(block.length());
+        out.writeLong(block.walGeneration());
+    }
+
+    private int replayWal(long generation) throws IOException {
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(walPath(generation))))) {
+            boolean counted = readWalMagic(in);
+            while (true) {
+                try {
+                    String uri = in.readUTF();
+                    addRow(memtable, uri, new Row(in.readUTF(), in.readUTF(), in.readLong(), counted ? in.readInt() : 1));
+                    replayed++;
+                } catch (EOFException e) {
+                    // в том числе недописанная последняя запись
+                    break;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    // журналы без заголовка записаны до появления кратности, каждая запись в них - один хит
+    private static boolean readWalMagic(DataInputStream in) throws IOException {
+        in.mark(Integer.BYTES);
+        try {
+            if (in.readInt() == WAL_MAGIC) {
+                return true;
+            }
+        } catch (EOFException e) {
+            // пустой журнал или оборванная первая запись
+        }
+        in.reset();
+        return false;
+    }
+
+    private DataOutputStream openWal(long generation) throws IOException {
+        boolean created = !Files.exists(walPath(generation));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(walPath(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (created) {
+            out.writeInt(WAL_MAGIC);
+            out.flush();
+        }
+        return out;
+    }
+
+    private static void writeWal(DataOutputStream out, String uri, Row row) throws IOException {
+        out.writeUTF(uri);
+        out.writeUTF(row.app());
+        out.writeUTF(row.ip());
+        out.writeLong(row.micros());
+        out.writeInt(row.count());
+    }
+
+    private static void addRow(Memtable table, String uri, Row row) {
+        table.rowsByUri.computeIfAbsent(uri, key -> new ArrayList<>()).add(row);
+        table.size++;
+    }
+
+    private List<Long> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path dataPath(int fileId) {
+        return dir.resolve("data-" + fileId + ".dat");
+    }
+
+    private Path walPath(long generation) {
+        return dir.resolve("hits-" + generation + ".wal");
+    }
+
+    private static Predicate<String> uriFilter(List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return uri -> true;
+        }
+        Set<String> set = new HashSet<>(uris);
+        return set::contains;
+    }
+
+    private static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Колоночный блок одного uri: [int rows][словарь app][словарь ip][первое время long]
+     * [rows - 1 дельт времени varint][rows номеров app varint][rows номеров ip varint]
+     * [rows кратностей - 1 varint]. Колонка кратностей пишется, только если есть хит с кратностью
+     * больше 1, тогда число строк записано со знаком минус; блоки без неё совпадают со старым форматом.
+     */
+    private static final class BlockCodec {
+
+        private static byte[] encode(List<Row> rows) {
+            Map<String, Integer> apps = new HashMap<>();
+            Map<String, Integer> ips = new HashMap<>();
+            rows.forEach(row -> {
+                apps.putIfAbsent(row.app(), apps.size());
+                ips.putIfAbsent(row.ip(), ips.size());
+            });
+            boolean counted = rows.stream().anyMatch(row -> row.count() != 1);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 4 + 64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(counted ? -rows.size() : rows.size());
+                writeDictionary(out, apps);
+                writeDictionary(out, ips);
+                out.writeLong(rows.get(0).micros());
+                for (int i = 1; i < rows.size(); i++) {
+                    writeVarLong(out, rows.get(i).micros() - rows.get(i - 1).micros());
+                }
+                for (Row row : rows) {
+                    writeVarLong(out, apps.get(row.app()));
+                }
+                for (Row row : rows) {
+                    writeVarLong(out, ips.get(row.ip()));
+                }
+                if (counted) {
+                    for (Row row : rows) {
+                        writeVarLong(out, row.count() - 1);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static void decode(ByteBuffer buffer, String uri, long fromMicros, long toMicros,
+                                   RowVisitor visitor) {
+            try (DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer))) {
+                int header = in.readInt();
+                boolean counted = header < 0;
+                int count = Math.abs(header);
+                String[] apps = readDictionary(in);
+                String[] ips = readDictionary(in);
+                long[] micros = new long[count];
+                micros[0] = in.readLong();
+                for (int i = 1; i < count; i++) {
+                    micros[i] = micros[i - 1] + readVarLong(in);
+                }
+                int[] appIds = new int[count];
+                for (int i = 0; i < count; i++) {
+                    appIds[i] = (int) readVarLong(in);
+                }
+                int[] ipIds = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ipIds[i] = (int) readVarLong(in);
+                }
+                for (int i = 0; i < count; i++) {
+                    int multiplicity = counted ? (int) readVarLong(in) + 1 : 1;
+                    if (micros[i] >= fromMicros && micros[i] < toMicros) {
+                        visitor.visit(apps[appIds[i]], uri, ips[ipIds[i]], micros[i], multiplicity);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void writeDictionary(DataOutputStream out, Map<String, Integer> dictionary) throws IOException {
+            String[] values = new String[dictionary.size()];
+            dictionary.forEach((value, id) -> values[id] = value);
+            writeVarLong(out, values.length);
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String[] readDictionary(DataInputStream in) throws IOException {
+            String[] values = new String[(int) readVarLong(in)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readUTF();
+            }
+            return values;
+        }
+
+        private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long readVarLong(DataInputStream in) throws IOException {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.SketchKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Битовые карты посетителей endpoint_hit_bitmaps в переносимом формате сериализации RoaringBitmap.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitBitmapRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public Optional<RoaringBitmap> findForUpdate(SketchKey key) {
+        List<byte[]> visitors = namedJdbcTemplate.query("""
+                        SELECT visitors FROM endpoint_hit_bitmaps
+                        WHERE uri = :uri AND bucket_start = :bucketStart AND app = :app
+                        FOR UPDATE
+                        """,
+                keyParams(key),
+                (rs, rowNum) -> rs.getBytes("visitors"));
+        return visitors.stream().findFirst().map(HitBitmapRepository::fromBytes);
+    }
+
+    public void insert(SketchKey key, RoaringBitmap visitors) {
+        namedJdbcTemplate.update("""
+                        INSERT INTO endpoint_hit_bitmaps (app, uri, bucket_start, visitors)
+                        VALUES (:app, :uri, :bucketStart, :visitors)
+                        """,
+                keyParams(key).addValue("visitors", toBytes(visitors)));
+    }
+
+    public void update(SketchKey key, RoaringBitmap visitors) {
+        namedJdbcTemplate.update("""
+                        UPDATE endpoint_hit_bitmaps SET visitors = :visitors
+                        WHERE uri = :uri AND bucket_start = :bucketStart AND app = :app
+                        """,
+                keyParams(key).addValue("visitors", toBytes(visitors)));
+    }
+
+    public void forEachBitmap(List<String> uris, LocalDateTime from, LocalDateTime to,
+                              BiConsumer<SketchKey, RoaringBitmap> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "SELECT app, uri, bucket_start, visitors FROM endpoint_hit_bitmaps "
+                + "WHERE bucket_start >= :from AND bucket_start < :to";
+        if (uris != null && !uris.isEmpty()) {
+            sql += " AND uri IN (:uris)";
+            params.addValue("uris", uris);
+        }
+        namedJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new SketchKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getObject("bucket_start", LocalDateTime.class)), fromBytes(rs.getBytes("visitors")));
+        });
+    }
+
+    private MapSqlParameterSource keyParams(SketchKey key) {
+        return new MapSqlParameterSource()
+                .addValue("app", key.app())
+                .addValue("uri", key.uri())
+                .addValue("bucketStart", key.bucketStart());
+    }
+
+    private static byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted visitor bitmap", e);
+        }
+        return bitmap;
+    }
+}
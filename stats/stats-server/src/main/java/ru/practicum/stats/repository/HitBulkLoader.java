@@ -0,0 +1,110 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Массовая загрузка хитов. Для endpoint_hits на PostgreSQL - COPY FROM STDIN через CopyManager,
+ * в остальных случаях (H2, компактная схема, файловый движок) - обычный batch insert хранилища.
+ * Вызывать в транзакции: COPY идёт через соединение текущей транзакции.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitBulkLoader {
+
+    private static final String COPY_SQL =
+            "COPY endpoint_hits (app, uri, ip, hit_timestamp, resource_id, hit_count) FROM STDIN WITH (FORMAT csv)";
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final DatabaseDialect databaseDialect;
+    private final HitStore hitStore;
+    private final ResourceIds resourceIds;
+
+    @Value("${stats-server.storage.engine:jdbc}")
+    private String engine;
+
+    @Value("${stats-server.storage.schema:text}")
+    private String schema;
+
+    public boolean usesCopy() {
+        return "jdbc".equals(engine) && "text".equals(schema) && databaseDialect.isPostgres();
+    }
+
+    public void load(List<EndpointHitEntity> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (!usesCopy()) {
+            hitStore.saveAll(hits);
+            return;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        CopyIn copyIn = null;
+        try {
+            copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            StringBuilder rows = new StringBuilder(COPY_BUFFER_CHARS + 1024);
+            for (EndpointHitEntity hit : hits) {
+                appendRow(rows, hit);
+                if (rows.length() >= COPY_BUFFER_CHARS) {
+                    writeToCopy(copyIn, rows);
+                }
+            }
+            writeToCopy(copyIn, rows);
+            copyIn.endCopy();
+        } catch (SQLException e) {
+            cancel(copyIn);
+            throw new UncategorizedSQLException("COPY endpoint_hits", COPY_SQL, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void appendRow(StringBuilder rows, EndpointHitEntity hit) {
+        appendField(rows, hit.getApp()).append(',');
+        appendField(rows, hit.getUri()).append(',');
+        appendField(rows, hit.getIp()).append(',');
+        rows.append(hit.getTimestamp()).append(',');
+        // пустое поле без кавычек в COPY csv - NULL
+        Long resourceId = resourceIds.extract(hit.getUri());
+        if (resourceId != null) {
+            rows.append(resourceId);
+        }
+        rows.append(',').append(hit.getCount()).append('\n');
+    }
+
+    private static StringBuilder appendField(StringBuilder rows, String value) {
+        return rows.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    private static void cancel(CopyIn copyIn) {
+        try {
+            if (copyIn != null && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException ignored) {
+            // исходная ошибка важнее, транзакция всё равно откатится
+        }
+    }
+}
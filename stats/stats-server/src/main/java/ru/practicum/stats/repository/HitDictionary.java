@@ -0,0 +1,137 @@
+package ru.practicum.stats.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Словари app и uri компактной схемы с ограниченным кешем в памяти. Словари только растут,
+ * поэтому закешированный id никогда не устаревает.
+ * <p>
+ * Новые значения добавляются в транзакции записи хитов, без второго соединения из пула;
+ * в кеш id попадает только после её коммита, чтобы откат не оставил в кеше id удалённой строки.
+ */
+@Component
+@ConditionalOnProperty(name = "stats-server.storage.schema", havingValue = "compact")
+public class HitDictionary {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+    private final Cache<String, Long> appIds;
+    private final Cache<String, Long> uriIds;
+
+    public HitDictionary(NamedParameterJdbcTemplate namedJdbcTemplate,
+                         DatabaseDialect databaseDialect,
+                         @Value("${stats-server.storage.dictionary-cache-size:1000000}") long cacheSize) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.databaseDialect = databaseDialect;
+        this.appIds = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.uriIds = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * id для всех app, новые добавляются в словарь в текущей транзакции.
+     */
+    public Map<String, Long> resolveApps(Collection<String> apps) {
+        return resolve(appIds, "hit_apps", "name", apps);
+    }
+
+    /**
+     * id для всех uri, новые добавляются в словарь в текущей транзакции.
+     */
+    public Map<String, Long> resolveUris(Collection<String> uris) {
+        return resolve(uriIds, "hit_uris", "uri", uris);
+    }
+
+    // только поиск: неизвестный uri означает, что хитов по нему нет
+    public Optional<Long> findUri(String uri) {
+        Long id = uriIds.getIfPresent(uri);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        Optional<Long> found = Optional.ofNullable(select("hit_uris", "uri", List.of(uri)).get(uri));
+        found.ifPresent(value -> uriIds.put(uri, value));
+        return found;
+    }
+
+    private Map<String, Long> resolve(Cache<String, Long> cache, String table, String column, Collection<String> values) {
+        Map<String, Long> resolved = new HashMap<>();
+        // по порядку: параллельные писатели блокируют новые строки словаря в одной последовательности
+        TreeSet<String> missing = new TreeSet<>();
+        for (String value : values) {
+            Long id = cache.getIfPresent(value);
+            if (id != null) {
+                resolved.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+        Map<String, Long> found = new HashMap<>();
+        List<String> pendingValues = new ArrayList<>(missing);
+        for (int from = 0; from < pendingValues.size(); from += CHUNK_SIZE) {
+            List<String> chunk = pendingValues.subList(from, Math.min(from + CHUNK_SIZE, pendingValues.size()));
+            Map<String, Long> known = select(table, column, chunk);
+            if (known.size() < chunk.size()) {
+                insertIfAbsent(table, column, chunk.stream().filter(value -> !known.containsKey(value)).toList());
+                known.putAll(select(table, column, chunk));
+            }
+            found.putAll(known);
+        }
+        resolved.putAll(found);
+        cacheAfterCommit(cache, found);
+        return resolved;
+    }
+
+    private void cacheAfterCommit(Cache<String, Long> cache, Map<String, Long> found) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.putAll(found);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.putAll(found);
+            }
+        });
+    }
+
+    private void insertIfAbsent(String table, String column, List<String> values) {
+        String sql = databaseDialect.isPostgres()
+                ? "INSERT INTO " + table + " (" + column + ") VALUES (:value) ON CONFLICT (" + column + ") DO NOTHING"
+                : "MERGE INTO " + table + " (" + column + ") KEY (" + column + ") VALUES (:value)";
+        SqlParameterSource[] batch = values.stream()
+                .map(value -> new MapSqlParameterSource("value", value))
+                .toArray(SqlParameterSource[]::new);
+        namedJdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    private Map<String, Long> select(String table, String column, List<String> values) {
+        Map<String, Long> found = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, " + column + " FROM " + table + " WHERE " + column + " IN (:values)",
+                new MapSqlParameterSource("values", values),
+                rs -> {
+                    found.put(rs.getString(column), rs.getLong("id"));
+                });
+        return found;
+    }
+}
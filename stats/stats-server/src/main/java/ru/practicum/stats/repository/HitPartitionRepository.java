@@ -0,0 +1,56 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DDL секций endpoint_hits (PostgreSQL). Имена секций формируются сервисом из дат,
+ * поэтому подставляются в SQL напрямую.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitPartitionRepository {
+
+    public static final String PARENT_TABLE = "endpoint_hits";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createPartition(String name, LocalDate from, LocalDate to) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT_TABLE
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    public boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject("""
+                        SELECT EXISTS (SELECT 1
+                                       FROM pg_partitioned_table
+                                       JOIN pg_class ON pg_partitioned_table.partrelid = pg_class.oid
+                                       WHERE pg_class.relname = ?)
+                        """,
+                Boolean.class, PARENT_TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList("""
+                        SELECT child.relname
+                        FROM pg_inherits
+                        JOIN pg_class parent ON pg_inherits.inhparent = parent.oid
+                        JOIN pg_class child ON pg_inherits.inhrelid = child.oid
+                        WHERE parent.relname = ?
+                        """,
+                String.class, PARENT_TABLE);
+    }
+
+    public void detachPartition(String name) {
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name);
+    }
+
+    public void dropTable(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+}
@@ -0,0 +1,129 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.TimeBucket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class HitRollupRepository {
+
+    private static final String UPSERT_POSTGRES = """
+            INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app, uri, hits)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (granularity, uri, bucket_start, app)
+            DO UPDATE SET hits = endpoint_hit_rollups.hits + EXCLUDED.hits
+            """;
+
+    private static final String UPSERT_MERGE = """
+            MERGE INTO endpoint_hit_rollups r
+            USING (VALUES (CAST(? AS VARCHAR(8)), CAST(? AS TIMESTAMP), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(512)), CAST(? AS BIGINT)))
+                AS s (granularity, bucket_start, app, uri, hits)
+            ON r.granularity = s.granularity AND r.uri = s.uri AND r.bucket_start = s.bucket_start AND r.app = s.app
+            WHEN MATCHED THEN UPDATE SET hits = r.hits + s.hits
+            WHEN NOT MATCHED THEN INSERT (granularity, bucket_start, app, uri, hits)
+                VALUES (s.granularity, s.bucket_start, s.app, s.uri, s.hits)
+            """;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+    private final CursorJdbcTemplate cursorJdbcTemplate;
+
+    // строки должны приходить отсортированными по ключу: одинаковый порядок блокировок у параллельных писателей
+    public void increment(List<HitRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        String sql = databaseDialect.isPostgres() ? UPSERT_POSTGRES : UPSERT_MERGE;
+        namedJdbcTemplate.getJdbcTemplate().batchUpdate(sql, rollups, rollups.size(), (ps, rollup) -> {
+            ps.setString(1, rollup.bucket().name());
+            ps.setObject(2, rollup.bucketStart());
+            ps.setString(3, rollup.app());
+            ps.setString(4, rollup.uri());
+            ps.setLong(5, rollup.hits());
+        });
+    }
+
+    public List<ViewStatsDto> sumHits(List<String> uris, List<BucketSpan> spans) {
+        if (spans.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = spansQuery(spans, params);
+        if (uris != null && !uris.isEmpty()) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+        sql.append(" GROUP BY app, uri");
+
+        return namedJdbcTemplate.query(sql.toString(), params, (rs, rowNum) ->
+                new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    /**
+     * Суммы по (app, uri) для uri с префиксом uriPrefix (null - все uri), без сортировки, курсором.
+     */
+    public void forEachSum(String uriPrefix, List<BucketSpan> spans, Consumer<ViewStatsDto> consumer) {
+        if (spans.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = spansQuery(spans, params);
+        if (uriPrefix != null && !uriPrefix.isEmpty()) {
+            sql.append(" AND uri LIKE :prefix ESCAPE '\\'");
+            params.addValue("prefix", SqlPatterns.prefix(uriPrefix));
+        }
+        sql.append(" GROUP BY app, uri");
+
+        cursorJdbcTemplate.query(sql.toString(), params, rs ->
+                consumer.accept(new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    /**
+     * Строки бакетов одной гранулярности с началом в [from, to), курсором.
+     */
+    public void forEachRollup(List<String> uris, TimeBucket granularity, LocalDateTime from, LocalDateTime to,
+                              Consumer<HitRollup> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("g", granularity.name())
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder sql = new StringBuilder("SELECT bucket_start, app, uri, hits FROM endpoint_hit_rollups "
+                + "WHERE granularity = :g AND bucket_start >= :from AND bucket_start < :to");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+
+        cursorJdbcTemplate.query(sql.toString(), params, rs ->
+                consumer.accept(new HitRollup(granularity, rs.getObject("bucket_start", LocalDateTime.class),
+                        rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    private StringBuilder spansQuery(List<BucketSpan> spans, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits FROM endpoint_hit_rollups WHERE (");
+        for (int i = 0; i < spans.size(); i++) {
+            BucketSpan span = spans.get(i);
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(granularity = :g").append(i)
+                    .append(" AND bucket_start >= :from").append(i)
+                    .append(" AND bucket_start < :to").append(i).append(")");
+            params.addValue("g" + i, span.bucket().name());
+            params.addValue("from" + i, span.span().from());
+            params.addValue("to" + i, span.span().to());
+        }
+        return sql.append(")");
+    }
+}
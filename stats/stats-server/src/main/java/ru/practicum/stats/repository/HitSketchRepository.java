@@ -0,0 +1,93 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.SketchKey;
+import ru.practicum.stats.model.TimeBucket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class HitSketchRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public Optional<byte[]> findForUpdate(TimeBucket granularity, SketchKey key) {
+        List<byte[]> registers = namedJdbcTemplate.query("""
+                        SELECT registers FROM endpoint_hit_sketches
+                        WHERE granularity = :granularity AND uri = :uri AND bucket_start = :bucketStart AND app = :app
+                        FOR UPDATE
+                        """,
+                keyParams(granularity, key),
+                (rs, rowNum) -> rs.getBytes("registers"));
+        return registers.stream().findFirst();
+    }
+
+    public void insert(TimeBucket granularity, SketchKey key, byte[] registers) {
+        namedJdbcTemplate.update("""
+                        INSERT INTO endpoint_hit_sketches (granularity, app, uri, bucket_start, registers)
+                        VALUES (:granularity, :app, :uri, :bucketStart, :registers)
+                        """,
+                keyParams(granularity, key).addValue("registers", registers));
+    }
+
+    public void update(TimeBucket granularity, SketchKey key, byte[] registers) {
+        namedJdbcTemplate.update("""
+                        UPDATE endpoint_hit_sketches SET registers = :registers
+                        WHERE granularity = :granularity AND uri = :uri AND bucket_start = :bucketStart AND app = :app
+                        """,
+                keyParams(granularity, key).addValue("registers", registers));
+    }
+
+    /**
+     * Скетчи, чьи бакеты покрывают spans; каждый сегмент - своей гранулярности.
+     */
+    public void forEachSketch(List<String> uris, List<BucketSpan> spans, SketchConsumer consumer) {
+        if (spans.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder(
+                "SELECT app, uri, bucket_start, registers FROM endpoint_hit_sketches WHERE (");
+        for (int i = 0; i < spans.size(); i++) {
+            BucketSpan span = spans.get(i);
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(granularity = :g").append(i)
+                    .append(" AND bucket_start >= :from").append(i)
+                    .append(" AND bucket_start < :to").append(i).append(")");
+            params.addValue("g" + i, span.bucket().name());
+            params.addValue("from" + i, span.span().from());
+            params.addValue("to" + i, span.span().to());
+        }
+        sql.append(")");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append(" AND uri IN (:uris)");
+            params.addValue("uris", uris);
+        }
+        namedJdbcTemplate.query(sql.toString(), params, rs -> {
+            consumer.accept(new SketchKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getObject("bucket_start", LocalDateTime.class)), rs.getBytes("registers"));
+        });
+    }
+
+    private MapSqlParameterSource keyParams(TimeBucket granularity, SketchKey key) {
+        return new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("app", key.app())
+                .addValue("uri", key.uri())
+                .addValue("bucketStart", key.bucketStart());
+    }
+
+    @FunctionalInterface
+    public interface SketchConsumer {
+        void accept(SketchKey key, byte[] registers);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.practicum.stats.repository;
+
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище сырых хитов - точка расширения для движков хранения. Движок выбирается свойством
+ * stats-server.storage.engine: jdbc - таблицы в БД (вид таблицы задаёт stats-server.storage.schema:
+ * text - endpoint_hits с текстовыми app/uri/ip, compact - endpoint_hits_compact со словарями),
+ * file - встроенное файловое колоночное хранилище. Периоды - полуинтервалы [from, to).
+ */
+public interface HitStore {
+
+    void saveAll(List<EndpointHitEntity> hits);
+
+    List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique);
+
+    /**
+     * То же, что getViewStats, но строки передаются в consumer по мере чтения курсора.
+     */
+    void streamViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique,
+                         Consumer<ViewStatsDto> consumer);
+
+    /**
+     * Счётчики по (app, uri) без сортировки, для uri с префиксом uriPrefix (null - все uri).
+     * Строки передаются в consumer по мере чтения курсора.
+     */
+    void forEachViewStat(String uriPrefix, LocalDateTime from, LocalDateTime to, boolean unique,
+                         Consumer<ViewStatsDto> consumer);
+
+    /**
+     * Счётчики по (app, uri, бакет granularity); для unique - число разных ip внутри бакета.
+     */
+    void forEachBucketedStat(List<String> uris, LocalDateTime from, LocalDateTime to, TimeBucket granularity,
+                             boolean unique, Consumer<HitRollup> consumer);
+
+    /**
+     * Счётчики по (app, uri) за один проход, у каждого uri своё начало периода [start, to).
+     */
+    List<ViewStatsDto> getViewStatsSince(List<UriStart> starts, LocalDateTime to, boolean unique);
+
+    /**
+     * Просмотры по resource_id (см. ResourceIds) за [from, to), сумма по app.
+     */
+    Map<Long, Long> countByResourceIds(ResourceIdFilter filter, LocalDateTime from, LocalDateTime to, boolean unique);
+
+    /**
+     * Как countByResourceIds, но у каждого id своё начало периода [start, to).
+     */
+    Map<Long, Long> countByResourceIdsSince(Map<Long, LocalDateTime> starts, LocalDateTime to, boolean unique);
+
+    /**
+     * Сырые хиты за [from, to) по возрастанию id, начиная после afterId (null - с начала).
+     * Строки читаются курсором и передаются в consumer, не собираясь в память.
+     */
+    void exportHits(List<String> uris, LocalDateTime from, LocalDateTime to, Long afterId,
+                    Consumer<EndpointHitDto> consumer);
+
+    /**
+     * Можно ли продолжить exportHits с afterId: у хитов движка есть возрастающий id.
+     */
+    default boolean supportsExportAfterId() {
+        return true;
+    }
+
+    List<HitVisitor> findVisitors(List<String> uris, LocalDateTime from, LocalDateTime to);
+}
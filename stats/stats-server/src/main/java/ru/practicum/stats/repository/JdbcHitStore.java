@@ -0,0 +1,141 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${stats-server.storage.engine:jdbc}' == 'jdbc' && '${stats-server.storage.schema:text}' == 'text'")
+public class JdbcHitStore implements HitStore {
+
+    private final EndpointHitJdbcRepository endpointHitJdbcRepository;
+    private final CursorJdbcTemplate cursorJdbcTemplate;
+
+    @Override
+    public void saveAll(List<EndpointHitEntity> hits) {
+        endpointHitJdbcRepository.saveAll(hits);
+    }
+
+    @Override
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique) {
+        return endpointHitJdbcRepository.getViewStats(uris, from, to, unique);
+    }
+
+    @Override
+    public void streamViewStats(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String uriFilter = "";
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris);
+            uriFilter = " AND uri IN (:uris)";
+        }
+        String sql = "SELECT app, uri, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter
+                + " GROUP BY app, uri "
+                + "ORDER BY hits DESC";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public void forEachViewStat(String uriPrefix, LocalDateTime from, LocalDateTime to, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String uriFilter = "";
+        if (uriPrefix != null && !uriPrefix.isEmpty()) {
+            params.addValue("prefix", SqlPatterns.prefix(uriPrefix));
+            uriFilter = " AND uri LIKE :prefix ESCAPE '\\'";
+        }
+        String sql = "SELECT app, uri, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter
+                + " GROUP BY app, uri";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public void forEachBucketedStat(List<String> uris, LocalDateTime from, LocalDateTime to, TimeBucket granularity,
+                                    boolean unique, Consumer<HitRollup> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String uriFilter = "";
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris);
+            uriFilter = " AND uri IN (:uris)";
+        }
+        String sql = "SELECT app, uri, DATE_TRUNC('" + granularity.name().toLowerCase() + "', hit_timestamp) AS bucket_start, "
+                + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM endpoint_hits "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + uriFilter
+                + " GROUP BY app, uri, bucket_start";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new HitRollup(granularity, rs.getObject("bucket_start", LocalDateTime.class),
+                        rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public List<ViewStatsDto> getViewStatsSince(List<UriStart> starts, LocalDateTime to, boolean unique) {
+        return endpointHitJdbcRepository.getViewStatsSince(starts, to, unique);
+    }
+
+    @Override
+    public Map<Long, Long> countByResourceIds(ResourceIdFilter filter, LocalDateTime from, LocalDateTime to, boolean unique) {
+        return endpointHitJdbcRepository.countByResourceIds(filter, from, to, unique);
+    }
+
+    @Override
+    public Map<Long, Long> countByResourceIdsSince(Map<Long, LocalDateTime> starts, LocalDateTime to, boolean unique) {
+        return endpointHitJdbcRepository.countByResourceIdsSince(starts, to, unique);
+    }
+
+    @Override
+    public void exportHits(List<String> uris, LocalDateTime from, LocalDateTime to, Long afterId,
+                           Consumer<EndpointHitDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder filter = new StringBuilder();
+        if (afterId != null) {
+            params.addValue("afterId", afterId);
+            filter.append(" AND id > :afterId");
+        }
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris);
+            filter.append(" AND uri IN (:uris)");
+        }
+        String sql = "SELECT id, app, uri, ip, hit_timestamp, hit_count FROM endpoint_hits "
+                + "WHERE hit_timestamp >= :from AND hit_timestamp < :to" + filter
+                + " ORDER BY id";
+        cursorJdbcTemplate.query(sql, params, rs ->
+                consumer.accept(new EndpointHitDto(rs.getLong("id"), rs.getString("app"), rs.getString("uri"),
+                        rs.getString("ip"), rs.getObject("hit_timestamp", LocalDateTime.class), rs.getInt("hit_count"))));
+    }
+
+    @Override
+    public List<HitVisitor> findVisitors(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        return endpointHitJdbcRepository.findVisitors(uris, from, to);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.stats.model.ResourceIdFilter;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Запросы по колонке resource_id, общие для endpoint_hits и endpoint_hits_compact.
+ * Уникальные считаются по (app, resource_id) и складываются по app - как и в запросах по uri.
+ */
+final class ResourceIdSql {
+
+    private ResourceIdSql() {
+    }
+
+    static Map<Long, Long> count(NamedParameterJdbcTemplate jdbcTemplate, String table, String appColumn,
+                                 ResourceIdFilter filter, LocalDateTime from, LocalDateTime to, boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder where = new StringBuilder("resource_id IS NOT NULL");
+        if (filter.hasIds()) {
+            params.addValue("ids", filter.ids());
+            where.append(" AND resource_id IN (:ids)");
+        }
+        if (filter.idFrom() != null) {
+            params.addValue("idFrom", filter.idFrom());
+            where.append(" AND resource_id >= :idFrom");
+        }
+        if (filter.idTo() != null) {
+            params.addValue("idTo", filter.idTo());
+            where.append(" AND resource_id <= :idTo");
+        }
+        String sql = "SELECT resource_id, SUM(hits) AS hits FROM ("
+                + "SELECT " + appColumn + ", resource_id, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hit_count)") + " AS hits "
+                + "FROM " + table + " "
+                + "WHERE " + where + " AND hit_timestamp >= :from AND hit_timestamp < :to "
+                + "GROUP BY " + appColumn + ", resource_id) s "
+                + "GROUP BY resource_id";
+        return query(jdbcTemplate, sql, params);
+    }
+
+    static Map<Long, Long> countSince(NamedParameterJdbcTemplate jdbcTemplate, String table, String appColumn,
+                                      Map<Long, LocalDateTime> starts, LocalDateTime to, boolean unique) {
+        if (starts.isEmpty()) {
+            return Map.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("to", to);
+        StringBuilder values = new StringBuilder();
+        int i = 0;
+        for (Map.Entry<Long, LocalDateTime> start : starts.entrySet()) {
+            params.addValue("id" + i, start.getKey());
+            params.addValue("start" + i, start.getValue());
+            values.append(i == 0 ? "" : ", ").append("(CAST(:id").append(i).append(" AS BIGINT), CAST(:start").append(i).append(" AS TIMESTAMP))");
+            i++;
+        }
+        String sql = "SELECT resource_id, SUM(hits) AS hits FROM ("
+                + "SELECT h." + appColumn + ", h.resource_id, " + (unique ? "COUNT(DISTINCT h.ip)" : "SUM(h.hit_count)") + " AS hits "
+                + "FROM (VALUES " + values + ") AS q(resource_id, start_at) "
+                + "JOIN " + table + " h ON h.resource_id = q.resource_id AND h.hit_timestamp >= q.start_at "
+                + "WHERE h.hit_timestamp < :to "
+                + "GROUP BY h." + appColumn + ", h.resource_id) s "
+                + "GROUP BY resource_id";
+        return query(jdbcTemplate, sql, params);
+    }
+
+    private static Map<Long, Long> query(NamedParameterJdbcTemplate jdbcTemplate, String sql, MapSqlParameterSource params) {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            counts.put(rs.getLong("resource_id"), rs.getLong("hits"));
+        });
+        return counts;
+    }
+}
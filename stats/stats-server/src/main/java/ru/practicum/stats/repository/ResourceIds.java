@@ -0,0 +1,62 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Числовой id ресурса из uri по шаблону stats-server.resource-id.uri-template (например "/events/{id}").
+ * Для совпавших uri хранилища пишут id в колонку resource_id, запросы по id идут по ней, а не по тексту uri.
+ * Пустой шаблон отключает извлечение.
+ */
+@Component
+public class ResourceIds {
+
+    private final String uriTemplate;
+    private final String prefix;
+    private final String suffix;
+
+    public ResourceIds(@Value("${stats-server.resource-id.uri-template:/events/{id}}") String uriTemplate) {
+        int placeholder = uriTemplate.indexOf("{id}");
+        if (!uriTemplate.isEmpty() && placeholder < 0) {
+            throw new IllegalStateException("stats-server.resource-id.uri-template must contain {id}: " + uriTemplate);
+        }
+        this.uriTemplate = uriTemplate;
+        this.prefix = placeholder < 0 ? "" : uriTemplate.substring(0, placeholder);
+        this.suffix = placeholder < 0 ? "" : uriTemplate.substring(placeholder + "{id}".length());
+    }
+
+    public boolean isEnabled() {
+        return !uriTemplate.isEmpty();
+    }
+
+    // шаблон запроса совпадает с настроенным - запрос можно обслужить по resource_id
+    public boolean supports(String template) {
+        return isEnabled() && uriTemplate.equals(template);
+    }
+
+    public String toUri(long id) {
+        return prefix + id + suffix;
+    }
+
+    /**
+     * id из uri или null, если uri не подходит под шаблон. Принимается только каноническая запись
+     * числа ("/events/7", но не "/events/007"), чтобы uri и id соответствовали друг другу один к одному.
+     */
+    public Long extract(String uri) {
+        if (!isEnabled() || !uri.startsWith(prefix) || !uri.endsWith(suffix)
+                || uri.length() <= prefix.length() + suffix.length()) {
+            return null;
+        }
+        String digits = uri.substring(prefix.length(), uri.length() - suffix.length());
+        if (digits.length() > 18 || (digits.length() > 1 && digits.charAt(0) == '0')) {
+            return null;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        return Long.parseLong(digits);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.stats.repository;
+
+final class SqlPatterns {
+
+    private SqlPatterns() {
+    }
+
+    // шаблон LIKE для "начинается с prefix"; спецсимволы экранируются обратной косой чертой
+    static String prefix(String prefix) {
+        return prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.stats.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Словарь IP -> плотный int-номер посетителя (hit_visitor_ips) для битовых карт.
+ * Номера выдаёт identity подряд, поэтому карты остаются компактными. Словарь только растёт;
+ * в памяти - ограниченный кеш, промахи добираются одним запросом на пачку.
+ * <p>
+ * Новые ip добавляются в транзакции записи хитов, без второго соединения из пула;
+ * в кеш номер попадает только после её коммита, как и в HitDictionary.
+ */
+@Component
+public class VisitorIpDictionary {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+    private final Cache<String, Integer> ids;
+
+    public VisitorIpDictionary(NamedParameterJdbcTemplate namedJdbcTemplate,
+                               DatabaseDialect databaseDialect,
+                               @Value("${stats-server.bitmap.ip-cache-size:1000000}") long cacheSize) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.databaseDialect = databaseDialect;
+        this.ids = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Номера для всех ip, новые ip добавляются в словарь в текущей транзакции.
+     */
+    public Map<String, Integer> resolveAll(Collection<String> ips) {
+        Map<String, Integer> resolved = new HashMap<>();
+        // по порядку: параллельные писатели блокируют новые строки словаря в одной последовательности
+        TreeSet<String> missing = new TreeSet<>();
+        collectCached(ips, resolved, missing);
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+        Map<String, Integer> found = new HashMap<>();
+        List<String> pendingIps = new ArrayList<>(missing);
+        for (int from = 0; from < pendingIps.size(); from += CHUNK_SIZE) {
+            List<String> chunk = pendingIps.subList(from, Math.min(from + CHUNK_SIZE, pendingIps.size()));
+            Map<String, Integer> known = select(chunk);
+            if (known.size() < chunk.size()) {
+                insertIfAbsent(chunk.stream().filter(ip -> !known.containsKey(ip)).toList());
+                known.putAll(select(chunk));
+            }
+            found.putAll(known);
+        }
+        resolved.putAll(found);
+        cacheAfterCommit(found);
+        return resolved;
+    }
+
+    /**
+     * Только поиск, для запросов на чтение: ip, которых нет в словаре, в ответ не попадают.
+     */
+    public Map<String, Integer> findAll(Collection<String> ips) {
+        Map<String, Integer> resolved = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        collectCached(ips, resolved, missing);
+        List<String> pendingIps = new ArrayList<>(missing);
+        for (int from = 0; from < pendingIps.size(); from += CHUNK_SIZE) {
+            Map<String, Integer> known = select(pendingIps.subList(from, Math.min(from + CHUNK_SIZE, pendingIps.size())));
+            // строки словаря уже закоммичены - их номера можно кешировать сразу
+            ids.putAll(known);
+            resolved.putAll(known);
+        }
+        return resolved;
+    }
+
+    private void collectCached(Collection<String> ips, Map<String, Integer> resolved, Set<String> missing) {
+        for (String ip : ips) {
+            Integer id = ids.getIfPresent(ip);
+            if (id != null) {
+                resolved.put(ip, id);
+            } else {
+                missing.add(ip);
+            }
+        }
+    }
+
+    private void cacheAfterCommit(Map<String, Integer> found) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.putAll(found);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.putAll(found);
+            }
+        });
+    }
+
+    private void insertIfAbsent(List<String> ips) {
+        String sql = databaseDialect.isPostgres()
+                ? "INSERT INTO hit_visitor_ips (ip) VALUES (:ip) ON CONFLICT (ip) DO NOTHING"
+                : "MERGE INTO hit_visitor_ips (ip) KEY (ip) VALUES (:ip)";
+        SqlParameterSource[] batch = ips.stream()
+                .map(ip -> new MapSqlParameterSource("ip", ip))
+                .toArray(SqlParameterSource[]::new);
+        namedJdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    private Map<String, Integer> select(List<String> ips) {
+        Map<String, Integer> found = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, ip FROM hit_visitor_ips WHERE ip IN (:ips)",
+                new MapSqlParameterSource("ips", ips),
+                rs -> {
+                    found.put(rs.getString("ip"), rs.getInt("id"));
+                });
+        return found;
+    }
+}
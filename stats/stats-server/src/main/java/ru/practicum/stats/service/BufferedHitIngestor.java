@@ -0,0 +1,195 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+import ru.practicum.stats.mapper.EndpointHitMapper;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронный приём хитов: POST /hit кладёт хит в ограниченный буфер и сразу отвечает,
+ * фоновый писатель сбрасывает буфер в endpoint_hits пачками по размеру или по времени.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats-server.ingest.mode", havingValue = "async")
+public class BufferedHitIngestor implements HitIngestor {
+
+    private final HitWriter hitWriter;
+    private final EndpointHitMapper endpointHitMapper;
+
+    @Value("${stats-server.ingest.buffer-capacity:100000}")
+    private int bufferCapacity;
+
+    @Value("${stats-server.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${stats-server.ingest.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    @Value("${stats-server.ingest.overflow-policy:BLOCK}")
+    private HitOverflowPolicy overflowPolicy;
+
+    @Value("${stats-server.ingest.block-timeout:1s}")
+    private Duration blockTimeout;
+
+    @Value("${stats-server.ingest.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private final AtomicLong droppedHits = new AtomicLong();
+    private BlockingQueue<EndpointHitEntity> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "stats-hit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Stats-server. Buffered ingestion started: capacity = {}, batchSize = {}, flushInterval = {}, policy = {}",
+                bufferCapacity, batchSize, flushInterval, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(shutdownTimeout.toMillis());
+        if (writerThread.isAlive()) {
+            log.warn("Stats-server. Hit writer did not finish in {}, {} hits left in buffer", shutdownTimeout, buffer.size());
+        }
+        log.info("Stats-server. Buffered ingestion stopped: dropped = {}", droppedHits.get());
+    }
+
+    @Override
+    public boolean ingest(EndpointHitDto endpointHitDto) throws IngestionOverloadedException {
+        if (!running) {
+            throw new IngestionOverloadedException("Hit ingestion is shutting down");
+        }
+        EndpointHitEntity hit = endpointHitMapper.toEntity(endpointHitDto);
+
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                if (!offerBlocking(hit)) {
+                    throw new IngestionOverloadedException("Hit buffer is full for more than " + blockTimeout);
+                }
+            }
+            case DROP -> {
+                if (!buffer.offer(hit)) {
+                    long dropped = droppedHits.incrementAndGet();
+                    log.debug("Stats-server. Hit buffer is full, hit dropped: total dropped = {}", dropped);
+                    return false;
+                }
+            }
+            case REJECT -> {
+                if (!buffer.offer(hit)) {
+                    throw new IngestionOverloadedException("Hit buffer is full");
+                }
+            }
+        }
+        // stop() мог пройти между проверкой running и offer: если хит ещё в буфере, писатель его уже
+        // не заберёт - забираем сами и отказываем. Не нашли - значит, его взял последний сброс писателя.
+        // Сравниваем по ссылке: equals сущности идёт по id, а у новых хитов он пустой
+        if (!running && buffer.removeIf(buffered -> buffered == hit)) {
+            throw new IngestionOverloadedException("Hit ingestion is shutting down");
+        }
+        return true;
+    }
+
+    @Override
+    public int ingestAll(List<EndpointHitDto> endpointHitDtos) throws IngestionOverloadedException {
+        if (!running) {
+            throw new IngestionOverloadedException("Hit ingestion is shutting down");
+        }
+        return HitBatches.writeInBatches(hitWriter, endpointHitMapper.toEntities(endpointHitDtos), batchSize);
+    }
+
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedHits.get();
+    }
+
+    private boolean offerBlocking(EndpointHitEntity hit) {
+        try {
+            return buffer.offer(hit, blockTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void writeLoop() {
+        List<EndpointHitEntity> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                collectBatch(batch);
+                flush(batch);
+            }
+        } catch (InterruptedException e) {
+            // остановка: дописываем то, что успели собрать, и остаток буфера
+            flush(batch);
+        }
+        while (!buffer.isEmpty()) {
+            buffer.drainTo(batch, batchSize);
+            flush(batch);
+        }
+    }
+
+    // ждём первый хит, затем добираем пачку до batchSize, но не дольше flushInterval
+    private void collectBatch(List<EndpointHitEntity> batch) throws InterruptedException {
+        EndpointHitEntity first = buffer.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < batchSize) {
+            if (buffer.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            EndpointHitEntity next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<EndpointHitEntity> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            hitWriter.write(batch);
+            log.debug("Stats-server. Hit batch written: size = {}", batch.size());
+        } catch (RuntimeException e) {
+            log.error("Stats-server. Hit batch write failed, {} hits lost: {}", batch.size(), e.getMessage(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+}
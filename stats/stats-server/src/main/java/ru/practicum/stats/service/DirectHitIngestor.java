@@ -0,0 +1,33 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.mapper.EndpointHitMapper;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats-server.ingest.mode", havingValue = "sync", matchIfMissing = true)
+public class DirectHitIngestor implements HitIngestor {
+
+    private final HitWriter hitWriter;
+    private final EndpointHitMapper endpointHitMapper;
+
+    @Value("${stats-server.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public boolean ingest(EndpointHitDto endpointHitDto) {
+        hitWriter.write(List.of(endpointHitMapper.toEntity(endpointHitDto)));
+        return true;
+    }
+
+    @Override
+    public int ingestAll(List<EndpointHitDto> endpointHitDtos) {
+        return HitBatches.writeInBatches(hitWriter, endpointHitMapper.toEntities(endpointHitDtos), batchSize);
+    }
+}
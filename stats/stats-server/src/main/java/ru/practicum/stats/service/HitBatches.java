@@ -0,0 +1,18 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.util.List;
+
+final class HitBatches {
+
+    private HitBatches() {
+    }
+
+    static int writeInBatches(HitWriter hitWriter, List<EndpointHitEntity> hits, int batchSize) {
+        for (int from = 0; from < hits.size(); from += batchSize) {
+            hitWriter.write(hits.subList(from, Math.min(from + batchSize, hits.size())));
+        }
+        return hits.size();
+    }
+}
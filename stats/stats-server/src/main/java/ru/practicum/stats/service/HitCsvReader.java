@@ -0,0 +1,129 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Построчное чтение хитов из CSV с заголовком. Обязательные колонки app, uri, ip, timestamp,
+ * необязательная count; прочие (например id из /stats/export) пропускаются.
+ * Время - "yyyy-MM-dd HH:mm:ss" или ISO, допускаются доли секунды.
+ */
+class HitCsvReader {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .toFormatter();
+
+    private final BufferedReader reader;
+    private final int appColumn;
+    private final int uriColumn;
+    private final int ipColumn;
+    private final int timestampColumn;
+    private final int countColumn;
+    private long lineNumber;
+
+    HitCsvReader(Reader reader) throws IOException, IncorrectRequestParameterException {
+        this.reader = new BufferedReader(reader);
+        String header = this.reader.readLine();
+        lineNumber = 1;
+        if (header == null) {
+            throw new IncorrectRequestParameterException("CSV header is missing");
+        }
+        List<String> columns = split(header.strip().toLowerCase());
+        this.appColumn = required(columns, "app");
+        this.uriColumn = required(columns, "uri");
+        this.ipColumn = required(columns, "ip");
+        this.timestampColumn = required(columns, "timestamp");
+        this.countColumn = columns.indexOf("count");
+    }
+
+    /**
+     * @return следующий хит или null в конце файла
+     */
+    EndpointHitEntity next() throws IOException, IncorrectRequestParameterException {
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+
+        List<String> fields = split(line);
+        try {
+            int count = countColumn >= 0 && countColumn < fields.size() && !fields.get(countColumn).isEmpty()
+                    ? Integer.parseInt(fields.get(countColumn))
+                    : 1;
+            if (count < 1) {
+                throw new IncorrectRequestParameterException("count must be positive at line " + lineNumber);
+            }
+            return EndpointHitEntity.builder()
+                    .app(nonBlank(fields, appColumn, "app"))
+                    .uri(nonBlank(fields, uriColumn, "uri"))
+                    .ip(nonBlank(fields, ipColumn, "ip"))
+                    .timestamp(LocalDateTime.parse(nonBlank(fields, timestampColumn, "timestamp"), TIMESTAMP_FORMAT))
+                    .count(count)
+                    .build();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IncorrectRequestParameterException("Malformed value at line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+
+    private String nonBlank(List<String> fields, int column, String name) throws IncorrectRequestParameterException {
+        if (column >= fields.size() || fields.get(column).isBlank()) {
+            throw new IncorrectRequestParameterException("Missing " + name + " at line " + lineNumber);
+        }
+        return fields.get(column);
+    }
+
+    private static int required(List<String> columns, String name) throws IncorrectRequestParameterException {
+        int index = columns.indexOf(name);
+        if (index < 0) {
+            throw new IncorrectRequestParameterException("CSV header has no column " + name);
+        }
+        return index;
+    }
+
+    // RFC 4180 в пределах одной строки: поля в кавычках, "" внутри кавычек - сама кавычка
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Импорт из командной строки: java -jar stats-server.jar --stats-server.import.file=hits.csv.
+ * По умолчанию после импорта приложение завершается (stats-server.import.exit).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats-server.import.file")
+public class HitImportRunner implements ApplicationRunner {
+
+    private final HitImportService hitImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${stats-server.import.file}")
+    private Path file;
+
+    @Value("${stats-server.import.exit:true}")
+    private boolean exit;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Stats-server. Importing hits from {}", file);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            hitImportService.importCsv(reader);
+        }
+        if (exit) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+}
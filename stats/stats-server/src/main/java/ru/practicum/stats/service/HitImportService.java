@@ -0,0 +1,66 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitImportResult;
+import ru.practicum.stats.repository.HitBulkLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Импорт истории хитов из CSV. Файл читается потоком и пишется частями по chunk-size хитов
+ * через HitWriter.writeBulk: каждая часть - своя транзакция, rollup и остальные производные
+ * данные обновляются вместе с ней. При ошибке в данных уже загруженные части остаются.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HitImportService {
+
+    private final HitWriter hitWriter;
+    private final HitBulkLoader hitBulkLoader;
+
+    @Value("${stats-server.import.chunk-size:50000}")
+    private int chunkSize;
+
+    public HitImportResult importCsv(Reader input) throws IOException, IncorrectRequestParameterException {
+        long startNanos = System.nanoTime();
+        long rows = 0;
+        HitCsvReader reader = new HitCsvReader(input);
+        List<EndpointHitEntity> chunk = new ArrayList<>(chunkSize);
+        try {
+            EndpointHitEntity hit;
+            while ((hit = reader.next()) != null) {
+                chunk.add(hit);
+                if (chunk.size() >= chunkSize) {
+                    hitWriter.writeBulk(chunk);
+                    rows += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                hitWriter.writeBulk(chunk);
+                rows += chunk.size();
+            }
+        } catch (IncorrectRequestParameterException e) {
+            log.warn("Stats-server. Hit import stopped after {} rows: {}", rows, e.getMessage());
+            throw new IncorrectRequestParameterException(e.getMessage() + "; " + rows + " rows were imported before the error");
+        }
+
+        long durationMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        HitImportResult result = new HitImportResult(rows, durationMillis, rows * 1000 / durationMillis,
+                hitBulkLoader.usesCopy());
+
+        log.info("Stats-server. Imported {} hits in {} ms: {} rows/s, copy = {}",
+                result.rows(), result.durationMillis(), result.rowsPerSecond(), result.copy());
+
+        return result;
+    }
+}
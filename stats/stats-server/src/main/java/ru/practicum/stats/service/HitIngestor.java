@@ -0,0 +1,24 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+
+import java.util.List;
+
+/**
+ * Приём хитов. Реализация выбирается свойством stats-server.ingest.mode (sync | async | log).
+ */
+public interface HitIngestor {
+
+    /**
+     * @return false, если хит был отброшен политикой переполнения
+     */
+    boolean ingest(EndpointHitDto endpointHitDto) throws IngestionOverloadedException;
+
+    /**
+     * Пакетный приём: хиты уже собраны клиентом, поэтому пишутся пачками сразу, минуя буфер.
+     *
+     * @return количество принятых хитов
+     */
+    int ingestAll(List<EndpointHitDto> endpointHitDtos) throws IngestionOverloadedException;
+}
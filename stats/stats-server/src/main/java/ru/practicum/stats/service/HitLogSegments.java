@@ -0,0 +1,172 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Файловый формат журнала хитов. Каталог содержит сегменты segment-NNNNNNNNNNNNNNNNNNNN.log
+ * и файл checkpoint с позицией, до которой журнал уже записан в БД.
+ * Запись в сегменте: [int длина payload][int CRC32C payload][payload].
+ */
+class HitLogSegments {
+
+    static final int RECORD_HEADER_BYTES = 8;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path dir;
+
+    record Position(long segmentId, long offset) {
+    }
+
+    record ReadResult(List<EndpointHitEntity> hits, long endOffset, boolean corrupted) {
+    }
+
+    HitLogSegments(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    Path segmentPath(long segmentId) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+
+    List<Long> listSegmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    Position readCheckpoint() throws IOException {
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        String[] parts = Files.readString(checkpoint, StandardCharsets.UTF_8).trim().split(" ");
+        return new Position(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+    }
+
+    // через временный файл и атомарный rename: после сбоя checkpoint либо старый, либо новый
+    void writeCheckpoint(Position position) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(tmp, position.segmentId() + " " + position.offset(), StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    FileChannel openForAppend(long segmentId) throws IOException {
+        return FileChannel.open(segmentPath(segmentId),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Читает не больше maxRecords записей сегмента с offset до limit. Недописанная или испорченная
+     * запись (сбой посреди записи) останавливает чтение с corrupted = true.
+     */
+    ReadResult read(long segmentId, long offset, long limit, int maxRecords) throws IOException {
+        List<EndpointHitEntity> hits = new ArrayList<>();
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            while (hits.size() < maxRecords && position + RECORD_HEADER_BYTES <= limit) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || position + RECORD_HEADER_BYTES + length > limit) {
+                    return new ReadResult(hits, position, true);
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + RECORD_HEADER_BYTES);
+                if (checksum(payload.array()) != checksum) {
+                    return new ReadResult(hits, position, true);
+                }
+                hits.add(decode(payload.array()));
+                position += RECORD_HEADER_BYTES + length;
+            }
+        }
+        return new ReadResult(hits, position, false);
+    }
+
+    long size(long segmentId) throws IOException {
+        return Files.size(segmentPath(segmentId));
+    }
+
+    void delete(long segmentId) throws IOException {
+        Files.deleteIfExists(segmentPath(segmentId));
+    }
+
+    static void putRecord(ByteBuffer buffer, byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.putInt(checksum(payload));
+        buffer.put(payload);
+    }
+
+    static byte[] encode(EndpointHitEntity hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+            out.writeInt(hit.getCount());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EndpointHitEntity decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return EndpointHitEntity.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                    // записи, сделанные до появления count, заканчиваются на времени
+                    .count(in.available() >= Integer.BYTES ? in.readInt() : 1)
+                    .build();
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of hit log segment");
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.stats.service;
+
+/**
+ * Поведение буфера хитов при заполнении.
+ */
+public enum HitOverflowPolicy {
+    // ждать освобождения места не дольше stats-server.ingest.block-timeout, затем 503
+    BLOCK,
+    // молча отбросить хит
+    DROP,
+    // сразу ответить 503
+    REJECT
+}
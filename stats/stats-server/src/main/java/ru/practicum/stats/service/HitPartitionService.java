@@ -0,0 +1,138 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.model.PartitionInterval;
+import ru.practicum.stats.repository.DatabaseDialect;
+import ru.practicum.stats.repository.HitPartitionRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Обслуживание секций endpoint_hits (schema-partitioned.sql): заранее создаёт секции на
+ * precreate интервалов вперёд и отсоединяет или удаляет секции старше retention.
+ * Запросы статистики фильтруют по hit_timestamp, поэтому PostgreSQL читает только
+ * секции, пересекающиеся с [start, end].
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HitPartitionService {
+
+    private static final String PARENT_TABLE = HitPartitionRepository.PARENT_TABLE;
+    private static final String PARTITION_PREFIX = PARENT_TABLE + "_p";
+
+    private final HitPartitionRepository hitPartitionRepository;
+    private final DatabaseDialect databaseDialect;
+
+    @Value("${stats-server.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stats-server.partitioning.interval:DAY}")
+    private PartitionInterval interval;
+
+    @Value("${stats-server.partitioning.precreate:7}")
+    private int precreate;
+
+    // 0 - хранить без ограничения
+    @Value("${stats-server.partitioning.retention:0d}")
+    private Duration retention;
+
+    @Value("${stats-server.partitioning.retention-action:DROP}")
+    private RetentionAction retentionAction;
+
+    public enum RetentionAction {
+        // отсоединить секцию и удалить её
+        DROP,
+        // только отсоединить: таблица остаётся для архивации
+        DETACH
+    }
+
+    // включённое секционирование без секционированной таблицы - ошибка конфигурации: сервис не стартует,
+    // иначе хиты молча копятся в обычной таблице, а retention ничего не удаляет
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        if (!databaseDialect.isPostgres()) {
+            throw new IllegalStateException("stats-server.partitioning.enabled requires PostgreSQL");
+        }
+        if (!hitPartitionRepository.isPartitioned()) {
+            throw new IllegalStateException("stats-server.partitioning.enabled is set, but " + PARENT_TABLE
+                    + " is not partitioned: put classpath:schema-partitioned.sql before schema.sql in"
+                    + " spring.sql.init.schema-locations (an existing plain table has to be migrated by hand)");
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats-server.partitioning.maintenance-cron:0 5 * * * *}")
+    public void maintain() {
+        if (!enabled || !databaseDialect.isPostgres()) {
+            return;
+        }
+        createAhead(LocalDate.now());
+        applyRetention(LocalDateTime.now());
+    }
+
+    void createAhead(LocalDate today) {
+        LocalDate partitionStart = interval.floor(today);
+        for (int i = 0; i <= precreate; i++) {
+            LocalDate partitionEnd = interval.next(partitionStart);
+            String name = PARTITION_PREFIX + interval.suffix(partitionStart);
+            try {
+                hitPartitionRepository.createPartition(name, partitionStart, partitionEnd);
+            } catch (DataAccessException e) {
+                // например, в default-секции уже есть строки из этого диапазона
+                log.error("Stats-server. Failed to create partition {}: {}", name, e.getMessage());
+            }
+            partitionStart = partitionEnd;
+        }
+    }
+
+    void applyRetention(LocalDateTime now) {
+        if (retention.isZero()) {
+            return;
+        }
+        LocalDate cutoff = now.minus(retention).toLocalDate();
+        for (String name : hitPartitionRepository.findPartitionNames()) {
+            LocalDate partitionEnd = parsePartitionEnd(name);
+            if (partitionEnd == null || partitionEnd.isAfter(cutoff)) {
+                continue;
+            }
+            hitPartitionRepository.detachPartition(name);
+            if (retentionAction == RetentionAction.DROP) {
+                hitPartitionRepository.dropTable(name);
+            }
+            log.info("Stats-server. Partition {} expired: {}", name, retentionAction);
+        }
+    }
+
+    private LocalDate parsePartitionEnd(String name) {
+        if (!name.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        String suffix = name.substring(PARTITION_PREFIX.length());
+        try {
+            if (suffix.length() == 8) {
+                return PartitionInterval.DAY.next(LocalDate.parse(suffix, DateTimeFormatter.BASIC_ISO_DATE));
+            }
+            if (suffix.length() == 6) {
+                return PartitionInterval.MONTH.next(LocalDate.parse(suffix + "01", DateTimeFormatter.BASIC_ISO_DATE));
+            }
+        } catch (DateTimeParseException e) {
+            log.warn("Stats-server. Unexpected partition name {}", name);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.TimeSpan;
+import ru.practicum.stats.repository.HitRollupRepository;
+import ru.practicum.stats.repository.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Предагрегированные счётчики хитов по (app, uri) в минутных, часовых и дневных бакетах.
+ * Неуникальная статистика за любой период собирается из нескольких строк бакетов
+ * и сырых хитов только для неполных минут по краям периода.
+ */
+@Service
+@RequiredArgsConstructor
+public class HitRollupService {
+
+    private static final Comparator<HitRollup> KEY_ORDER = Comparator
+            .comparing(HitRollup::bucket)
+            .thenComparing(HitRollup::uri)
+            .thenComparing(HitRollup::bucketStart)
+            .thenComparing(HitRollup::app);
+
+    private final HitRollupRepository hitRollupRepository;
+    private final HitStore hitStore;
+
+    @Value("${stats-server.rollup.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // вызывается в транзакции записи хитов, поэтому бакеты и сырые хиты не расходятся
+    public void record(List<EndpointHitEntity> hits) {
+        if (!enabled || hits.isEmpty()) {
+            return;
+        }
+        Map<RollupKey, Long> counts = new HashMap<>();
+        for (EndpointHitEntity hit : hits) {
+            for (TimeBucket bucket : TimeBucket.values()) {
+                counts.merge(new RollupKey(bucket, bucket.floor(hit.getTimestamp()), hit.getApp(), hit.getUri()),
+                        (long) hit.getCount(), Long::sum);
+            }
+        }
+        List<HitRollup> rollups = counts.entrySet().stream()
+                .map(entry -> new HitRollup(entry.getKey().bucket(), entry.getKey().bucketStart(),
+                        entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(KEY_ORDER)
+                .toList();
+        hitRollupRepository.increment(rollups);
+    }
+
+    /**
+     * Неуникальная статистика за полуинтервал [from, to).
+     */
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        RollupPlanner.Plan plan = RollupPlanner.plan(from, to);
+
+        ViewStatsAccumulator accumulator = new ViewStatsAccumulator()
+                .add(hitRollupRepository.sumHits(uris, plan.bucketSpans()));
+        for (TimeSpan rawSpan : plan.rawSpans()) {
+            accumulator.add(hitStore.getViewStats(uris, rawSpan.from(), rawSpan.to(), false));
+        }
+        return accumulator.toList();
+    }
+
+    /**
+     * Неуникальные счётчики по (app, uri) за [from, to) без сортировки. В памяти держатся только
+     * сырые хиты неполных минут по краям периода, суммы бакетов передаются в consumer из курсора.
+     */
+    public void forEachViewStat(String uriPrefix, LocalDateTime from, LocalDateTime to, Consumer<ViewStatsDto> consumer) {
+        RollupPlanner.Plan plan = RollupPlanner.plan(from, to);
+
+        Map<AppUri, Long> edges = new HashMap<>();
+        for (TimeSpan rawSpan : plan.rawSpans()) {
+            hitStore.forEachViewStat(uriPrefix, rawSpan.from(), rawSpan.to(), false, stat ->
+                    edges.merge(new AppUri(stat.getApp(), stat.getUri()), stat.getHits(), Long::sum));
+        }
+        hitRollupRepository.forEachSum(uriPrefix, plan.bucketSpans(), stat -> {
+            Long edgeHits = edges.remove(new AppUri(stat.getApp(), stat.getUri()));
+            consumer.accept(edgeHits == null ? stat : new ViewStatsDto(stat.getApp(), stat.getUri(), stat.getHits() + edgeHits));
+        });
+        edges.forEach((appUri, hits) -> consumer.accept(new ViewStatsDto(appUri.app(), appUri.uri(), hits)));
+    }
+
+    /**
+     * Неуникальный ряд за [from, to): полные бакеты granularity читаются из rollup-таблицы как есть,
+     * неполные бакеты по краям собираются из более мелких бакетов и сырых хитов.
+     */
+    void collectSeries(List<String> uris, LocalDateTime from, LocalDateTime to, TimeBucket granularity,
+                       ViewStatsSeries series) {
+        List<TimeSpan> edges = new ArrayList<>();
+        LocalDateTime interiorFrom = granularity.ceil(from);
+        LocalDateTime interiorTo = granularity.floor(to);
+        if (interiorFrom.isBefore(interiorTo)) {
+            hitRollupRepository.forEachRollup(uris, granularity, interiorFrom, interiorTo, series::add);
+            edges.add(new TimeSpan(from, interiorFrom));
+            edges.add(new TimeSpan(interiorTo, to));
+        } else {
+            // период короче одного полного бакета: не больше двух неполных
+            LocalDateTime boundary = granularity.next(granularity.floor(from));
+            edges.add(new TimeSpan(from, boundary.isBefore(to) ? boundary : to));
+            edges.add(new TimeSpan(boundary, to));
+        }
+        for (TimeSpan edge : edges) {
+            if (!edge.isEmpty()) {
+                series.add(granularity.floor(edge.from()), getViewStats(uris, edge.from(), edge.to()));
+            }
+        }
+    }
+
+    private record RollupKey(TimeBucket bucket, LocalDateTime bucketStart, String app, String uri) {
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.repository.HitBulkLoader;
+import ru.practicum.stats.repository.HitStore;
+
+import java.util.List;
+
+/**
+ * Единая точка записи хитов в хранилище: одна транзакция и один JDBC batch на пачку.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private final HitStore hitStore;
+    private final HitBulkLoader hitBulkLoader;
+    private final HitRollupService hitRollupService;
+    private final UniqueVisitorSketchService uniqueVisitorSketchService;
+    private final UniqueVisitorBitmapService uniqueVisitorBitmapService;
+    private final HotWindowStats hotWindowStats;
+    private final ViewStatsCache viewStatsCache;
+
+    @Transactional
+    public void write(List<EndpointHitEntity> hits) {
+        hitStore.saveAll(hits);
+        record(hits);
+    }
+
+    /**
+     * Загрузка большой пачки (импорт истории): COPY вместо batch insert, где он доступен.
+     * Rollup, скетчи, карты, окно и кэш обновляются так же, как при обычной записи.
+     */
+    @Transactional
+    public void writeBulk(List<EndpointHitEntity> hits) {
+        hitBulkLoader.load(hits);
+        record(hits);
+    }
+
+    private void record(List<EndpointHitEntity> hits) {
+        hitRollupService.record(hits);
+        uniqueVisitorSketchService.record(hits);
+        uniqueVisitorBitmapService.record(hits);
+        // окно в памяти и кэш видят хит только после коммита, иначе откат оставил бы его в счётчиках
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long commitStarted;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitStarted = viewStatsCache.beforeCommit();
+            }
+
+            @Override
+            public void afterCommit() {
+                hotWindowStats.record(hits);
+                viewStatsCache.record(hits, commitStarted);
+            }
+        });
+    }
+}
@@ -0,0 +1,257 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.repository.HitStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Скользящее окно последних хитов в памяти: кольцо минутных слотов, в каждом слоте
+ * счётчик (LongAdder) и множество IP на (uri, app). Запрос, попадающий в окно, считается
+ * из памяти; из БД читаются только часть периода до начала окна и неполные минуты по краям.
+ * <p>
+ * Окно видит только хиты, принятые этим экземпляром, и покрывает время с первой полной минуты
+ * после старта: более ранние минуты всегда читаются из БД, даже если формально попадают в окно.
+ * Число пар (uri, app, ip) в окне ограничено max-entries; слоты, не уместившиеся
+ * в бюджет, помечаются переполненными, и запросы по ним уходят в БД.
+ */
+@Service
+@RequiredArgsConstructor
+public class HotWindowStats {
+
+    private static final TimeBucket SLOT = TimeBucket.MINUTE;
+
+    private final HitStore hitStore;
+
+    @Value("${stats-server.hot-window.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stats-server.hot-window.duration:26h}")
+    private Duration duration;
+
+    @Value("${stats-server.hot-window.max-entries:1000000}")
+    private long maxEntries;
+
+    private final AtomicLong entries = new AtomicLong();
+    private AtomicReferenceArray<MinuteStats> slots;
+    private LocalDateTime coveredFrom;
+
+    @FunctionalInterface
+    public interface PersistedStats {
+        List<ViewStatsDto> get(LocalDateTime from, LocalDateTime to);
+    }
+
+    @PostConstruct
+    public void init() {
+        init(LocalDateTime.now());
+    }
+
+    void init(LocalDateTime startedAt) {
+        slots = new AtomicReferenceArray<>((int) duration.toMinutes() + 1);
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, new MinuteStats(null));
+        }
+        // хиты текущей неполной минуты могли быть записаны до старта - её окно не покрывает
+        coveredFrom = SLOT.ceil(startedAt);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(List<EndpointHitEntity> hits) {
+        record(hits, LocalDateTime.now());
+    }
+
+    void record(List<EndpointHitEntity> hits, LocalDateTime now) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime oldest = oldestSlotStart(now);
+        for (EndpointHitEntity hit : hits) {
+            LocalDateTime minute = SLOT.floor(hit.getTimestamp());
+            if (minute.isBefore(oldest)) {
+                continue;
+            }
+            MinuteStats stats = statsFor(minute);
+            if (stats != null) {
+                stats.add(hit.getUri(), hit.getApp(), hit.getIp(), hit.getCount());
+            }
+        }
+    }
+
+    /**
+     * Статистика за [from, to), если окно может на неё ответить. Неуникальные хиты до начала окна
+     * и в неполных минутах читаются через persisted; для уникальных период должен начинаться в окне.
+     */
+    public Optional<List<ViewStatsDto>> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to,
+                                                     boolean unique, PersistedStats persisted) {
+        return getViewStats(uris, from, to, unique, persisted, LocalDateTime.now());
+    }
+
+    Optional<List<ViewStatsDto>> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to,
+                                              boolean unique, PersistedStats persisted, LocalDateTime now) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        LocalDateTime windowFrom = oldestSlotStart(now);
+        LocalDateTime memoryFrom = SLOT.ceil(from.isAfter(windowFrom) ? from : windowFrom);
+        // хитов из будущего нет (@PastOrPresent), поэтому текущую минуту можно брать целиком
+        LocalDateTime memoryTo = to.isAfter(now) ? SLOT.floor(now).plusMinutes(1) : SLOT.floor(to);
+        if (!memoryFrom.isBefore(memoryTo) || (unique && from.isBefore(windowFrom))) {
+            return Optional.empty();
+        }
+
+        Map<AppUri, Long> hits = new HashMap<>();
+        Map<AppUri, Set<String>> ips = new HashMap<>();
+        for (LocalDateTime minute = memoryFrom; minute.isBefore(memoryTo); minute = minute.plusMinutes(1)) {
+            MinuteStats stats = slots.get(index(minute));
+            if (!minute.equals(stats.minuteStart)) {
+                continue;
+            }
+            if (stats.overflowed) {
+                return Optional.empty();
+            }
+            stats.collect(uris, hits, unique ? ips : null);
+        }
+
+        ViewStatsAccumulator accumulator = new ViewStatsAccumulator();
+        if (unique) {
+            addVisitors(ips, hitStore.findVisitors(uris, from, memoryFrom));
+            if (memoryTo.isBefore(to)) {
+                addVisitors(ips, hitStore.findVisitors(uris, memoryTo, to));
+            }
+            ips.forEach((appUri, set) -> accumulator.add(appUri.app(), appUri.uri(), set.size()));
+        } else {
+            hits.forEach((appUri, count) -> accumulator.add(appUri.app(), appUri.uri(), count));
+            if (from.isBefore(memoryFrom)) {
+                accumulator.add(persisted.get(from, memoryFrom));
+            }
+            if (memoryTo.isBefore(to)) {
+                accumulator.add(persisted.get(memoryTo, to));
+            }
+        }
+        return Optional.of(accumulator.toList());
+    }
+
+    private LocalDateTime oldestSlotStart(LocalDateTime now) {
+        LocalDateTime oldest = SLOT.floor(now).minusMinutes(slots.length() - 1);
+        return oldest.isAfter(coveredFrom) ? oldest : coveredFrom;
+    }
+
+    private int index(LocalDateTime minute) {
+        long epochMinute = minute.toEpochSecond(ZoneOffset.UTC) / 60;
+        return (int) Math.floorMod(epochMinute, slots.length());
+    }
+
+    // счётчики этой минуты; минуту, ушедшую из окна, вытесняем заменой через CAS, а не очисткой
+    // на месте - писатель, успевший взять старые счётчики, не попадёт в новую минуту
+    private MinuteStats statsFor(LocalDateTime minute) {
+        int index = index(minute);
+        while (true) {
+            MinuteStats stats = slots.get(index);
+            if (minute.equals(stats.minuteStart)) {
+                return stats;
+            }
+            if (stats.minuteStart != null && stats.minuteStart.isAfter(minute)) {
+                return null;
+            }
+            MinuteStats fresh = new MinuteStats(minute);
+            if (slots.compareAndSet(index, stats, fresh)) {
+                entries.addAndGet(-stats.retire());
+                return fresh;
+            }
+        }
+    }
+
+    private void addVisitors(Map<AppUri, Set<String>> ips, List<HitVisitor> visitors) {
+        for (HitVisitor visitor : visitors) {
+            ips.computeIfAbsent(new AppUri(visitor.app(), visitor.uri()), key -> new HashSet<>()).add(visitor.ip());
+        }
+    }
+
+    private final class MinuteStats {
+        private final LocalDateTime minuteStart;
+        private volatile boolean overflowed;
+        // число пар (uri, app, ip); после вытеснения - отрицательное
+        private final AtomicLong entries = new AtomicLong();
+        private final Map<String, Map<String, Counter>> byUri = new ConcurrentHashMap<>();
+
+        private MinuteStats(LocalDateTime minuteStart) {
+            this.minuteStart = minuteStart;
+        }
+
+        // возвращает пары, которые надо снять с общего бюджета; опоздавшие писатели снимут свои сами
+        private long retire() {
+            return entries.getAndSet(Long.MIN_VALUE);
+        }
+
+        private void add(String uri, String app, String ip, int count) {
+            if (overflowed) {
+                return;
+            }
+            Counter counter = byUri.computeIfAbsent(uri, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(app, key -> new Counter());
+            counter.hits.add(count);
+            if (!counter.ips.contains(ip)) {
+                if (HotWindowStats.this.entries.incrementAndGet() > maxEntries) {
+                    HotWindowStats.this.entries.decrementAndGet();
+                    overflowed = true;
+                    return;
+                }
+                if (!counter.ips.add(ip) || entries.getAndIncrement() < 0) {
+                    HotWindowStats.this.entries.decrementAndGet();
+                }
+            }
+        }
+
+        private void collect(List<String> uris, Map<AppUri, Long> hits, Map<AppUri, Set<String>> ips) {
+            if (uris == null || uris.isEmpty()) {
+                byUri.forEach((uri, byApp) -> collectUri(uri, byApp, hits, ips));
+            } else {
+                for (String uri : uris) {
+                    Map<String, Counter> byApp = byUri.get(uri);
+                    if (byApp != null) {
+                        collectUri(uri, byApp, hits, ips);
+                    }
+                }
+            }
+        }
+
+        private void collectUri(String uri, Map<String, Counter> byApp,
+                                Map<AppUri, Long> hits, Map<AppUri, Set<String>> ips) {
+            byApp.forEach((app, counter) -> {
+                AppUri key = new AppUri(app, uri);
+                hits.merge(key, counter.hits.sum(), Long::sum);
+                if (ips != null) {
+                    ips.computeIfAbsent(key, k -> new HashSet<>()).addAll(counter.ips);
+                }
+            });
+        }
+    }
+
+    private static final class Counter {
+        private final LongAdder hits = new LongAdder();
+        private final Set<String> ips = ConcurrentHashMap.newKeySet();
+    }
+}
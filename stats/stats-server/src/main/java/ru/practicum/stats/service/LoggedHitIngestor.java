@@ -0,0 +1,300 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+import ru.practicum.stats.mapper.EndpointHitMapper;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Приём хитов через локальный журнал: хит подтверждается после записи и fsync в сегмент журнала,
+ * в endpoint_hits его переносит фоновый поток. Одновременные запросы пишутся одной групповой
+ * записью с одним fsync, поэтому пропускная способность упирается в последовательную запись на диск.
+ * <p>
+ * После сбоя всё, что лежит в журнале после checkpoint, дописывается в БД при старте.
+ * Доставка "хотя бы один раз": сбой между записью пачки в БД и сохранением checkpoint даст повтор этой пачки.
+ * Отказ по таймауту значит, что хит в журнал не попадёт: запрос, ещё не взятый в запись, снимается
+ * из очереди, а уже взятый дожидается своего fsync, поэтому повтор клиента не задваивает хит.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats-server.ingest.mode", havingValue = "log")
+public class LoggedHitIngestor implements HitIngestor {
+
+    private final HitWriter hitWriter;
+    private final EndpointHitMapper endpointHitMapper;
+
+    @Value("${stats-server.ingest.log.dir:./data/hit-log}")
+    private Path logDir;
+
+    @Value("${stats-server.ingest.log.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${stats-server.ingest.buffer-capacity:100000}")
+    private int bufferCapacity;
+
+    @Value("${stats-server.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${stats-server.ingest.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    @Value("${stats-server.ingest.block-timeout:1s}")
+    private Duration commitTimeout;
+
+    @Value("${stats-server.ingest.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private record Append(List<byte[]> records, int bytes, AtomicBoolean taken, CompletableFuture<Void> done) {
+
+        // запрос забирает тот, кто первым его взял: committer на запись или клиент на отмену
+        private boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+    }
+
+    private HitLogSegments segments;
+    private BlockingQueue<Append> appends;
+    private Thread committerThread;
+    private Thread drainerThread;
+    private volatile boolean running;
+
+    // пишется только committer-потоком
+    private FileChannel activeChannel;
+    private long activeSize;
+    // докуда активный сегмент записан и сброшен на диск; читается drainer-потоком
+    private volatile HitLogSegments.Position committed;
+
+    @PostConstruct
+    public void start() throws IOException {
+        segments = new HitLogSegments(logDir);
+        List<Long> existing = segments.listSegmentIds();
+        HitLogSegments.Position checkpoint = segments.readCheckpoint();
+        if (checkpoint == null || (!existing.isEmpty() && existing.get(0) > checkpoint.segmentId())) {
+            checkpoint = new HitLogSegments.Position(existing.isEmpty() ? 1 : existing.get(0), 0);
+        }
+        for (Long segmentId : existing) {
+            if (segmentId < checkpoint.segmentId()) {
+                segments.delete(segmentId);
+            }
+        }
+        // после рестарта пишем в новый сегмент: хвост старого мог оборваться посреди записи
+        long activeId = existing.isEmpty() ? checkpoint.segmentId() : existing.get(existing.size() - 1) + 1;
+        activeChannel = segments.openForAppend(activeId);
+        activeSize = 0;
+        committed = new HitLogSegments.Position(activeId, 0);
+
+        appends = new LinkedBlockingQueue<>(bufferCapacity);
+        running = true;
+        committerThread = new Thread(this::commitLoop, "stats-hit-log-committer");
+        committerThread.setDaemon(true);
+        committerThread.start();
+        HitLogSegments.Position drainFrom = checkpoint;
+        drainerThread = new Thread(() -> drainLoop(drainFrom), "stats-hit-log-drainer");
+        drainerThread.setDaemon(true);
+        drainerThread.start();
+
+        log.info("Stats-server. Hit log ingestion started: dir = {}, active segment = {}, replay from {}",
+                logDir, activeId, checkpoint);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        committerThread.join(shutdownTimeout.toMillis());
+        drainerThread.interrupt();
+        drainerThread.join(shutdownTimeout.toMillis());
+        log.info("Stats-server. Hit log ingestion stopped, undrained hits will be replayed on next start");
+    }
+
+    @Override
+    public boolean ingest(EndpointHitDto endpointHitDto) throws IngestionOverloadedException {
+        append(List.of(endpointHitMapper.toEntity(endpointHitDto)));
+        return true;
+    }
+
+    @Override
+    public int ingestAll(List<EndpointHitDto> endpointHitDtos) throws IngestionOverloadedException {
+        List<EndpointHitEntity> hits = endpointHitMapper.toEntities(endpointHitDtos);
+        for (int from = 0; from < hits.size(); from += batchSize) {
+            append(hits.subList(from, Math.min(from + batchSize, hits.size())));
+        }
+        return hits.size();
+    }
+
+    // возвращает управление, когда хиты записаны в журнал и сброшены на диск
+    private void append(List<EndpointHitEntity> hits) throws IngestionOverloadedException {
+        if (!running) {
+            throw new IngestionOverloadedException("Hit ingestion is shutting down");
+        }
+        List<byte[]> records = new ArrayList<>(hits.size());
+        int bytes = 0;
+        for (EndpointHitEntity hit : hits) {
+            byte[] record = HitLogSegments.encode(hit);
+            records.add(record);
+            bytes += HitLogSegments.RECORD_HEADER_BYTES + record.length;
+        }
+        Append append = new Append(records, bytes, new AtomicBoolean(), new CompletableFuture<>());
+        if (!appends.offer(append)) {
+            throw new IngestionOverloadedException("Hit log queue is full");
+        }
+        try {
+            append.done().get(commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (append.take()) {
+                appends.remove(append);
+                throw new IngestionOverloadedException("Hit log commit took more than " + commitTimeout);
+            }
+            awaitCommit(append);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (append.take()) {
+                appends.remove(append);
+                throw new IngestionOverloadedException("Interrupted while waiting for hit log commit");
+            }
+            awaitCommit(append);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hit log write failed", e.getCause());
+        }
+    }
+
+    // запрос уже пишется: ждём fsync без таймаута, иначе хит окажется в журнале, а клиент получит отказ
+    private static void awaitCommit(Append append) {
+        try {
+            append.done().join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Hit log write failed", e.getCause());
+        }
+    }
+
+    private void commitLoop() {
+        List<Append> group = new ArrayList<>();
+        while (running || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                appends.drainTo(group);
+                group.removeIf(append -> !append.take());
+                if (group.isEmpty()) {
+                    continue;
+                }
+                commit(group);
+                group.forEach(append -> append.done().complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Stats-server. Hit log group commit failed for {} requests: {}", group.size(), e.getMessage(), e);
+                group.forEach(append -> append.done().completeExceptionally(e));
+            } finally {
+                group.clear();
+            }
+        }
+        try {
+            activeChannel.close();
+        } catch (IOException e) {
+            log.warn("Stats-server. Failed to close hit log segment: {}", e.getMessage());
+        }
+    }
+
+    // одна запись и один fsync на всю группу запросов
+    private void commit(List<Append> group) throws IOException {
+        int bytes = group.stream().mapToInt(Append::bytes).sum();
+        if (activeSize > 0 && activeSize + bytes > segmentSize.toBytes()) {
+            rollSegment();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        for (Append append : group) {
+            append.records().forEach(record -> HitLogSegments.putRecord(buffer, record));
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer);
+        }
+        activeChannel.force(false);
+        activeSize += bytes;
+        committed = new HitLogSegments.Position(committed.segmentId(), activeSize);
+    }
+
+    private void rollSegment() throws IOException {
+        activeChannel.close();
+        long nextId = committed.segmentId() + 1;
+        activeChannel = segments.openForAppend(nextId);
+        activeSize = 0;
+        committed = new HitLogSegments.Position(nextId, 0);
+    }
+
+    private void drainLoop(HitLogSegments.Position from) {
+        HitLogSegments.Position position = from;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                HitLogSegments.Position next = drainOnce(position);
+                if (next.equals(position)) {
+                    TimeUnit.NANOSECONDS.sleep(flushInterval.toNanos());
+                }
+                position = next;
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                // хиты остаются в журнале, повторим после паузы
+                log.error("Stats-server. Hit log drain failed at {}: {}", position, e.getMessage(), e);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(flushInterval.toNanos());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private HitLogSegments.Position drainOnce(HitLogSegments.Position position) throws IOException {
+        HitLogSegments.Position head = committed;
+        boolean sealed = position.segmentId() < head.segmentId();
+        long limit = sealed ? segments.size(position.segmentId()) : head.offset();
+
+        HitLogSegments.ReadResult result = segments.read(position.segmentId(), position.offset(), limit, batchSize);
+        if (!result.hits().isEmpty()) {
+            hitWriter.write(result.hits());
+        }
+        HitLogSegments.Position next = new HitLogSegments.Position(position.segmentId(), result.endOffset());
+        if (sealed && (result.corrupted() || result.endOffset() >= limit)) {
+            if (result.corrupted()) {
+                log.warn("Stats-server. Hit log segment {} has a torn tail at offset {}, skipping {} bytes",
+                        position.segmentId(), result.endOffset(), limit - result.endOffset());
+            }
+            segments.delete(position.segmentId());
+            next = new HitLogSegments.Position(position.segmentId() + 1, 0);
+        }
+        if (!next.equals(position)) {
+            segments.writeCheckpoint(next);
+        }
+        return next;
+    }
+}
@@ -0,0 +1,209 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import ru.practicum.stats.exception.QueryOverloadedException;
+import ru.practicum.stats.model.QueryClass;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Допуск запросов на чтение. Дешёвые (по немногим uri/id за любой период, без uri - за узкий) и дорогие
+ * (по многим ключам, без uri за широкий период) запросы ограничены отдельными семафорами, поэтому тяжёлые
+ * запросы дашбордов не занимают места поштучных запросов main-service. Не дождавшийся места
+ * за queue-timeout запрос получает 503.
+ * <p>
+ * Запрос выполняется в read-only транзакции с таймаутом своей очереди; JdbcTemplate переносит
+ * остаток таймаута в Statement.setQueryTimeout, и драйвер отменяет запрос в БД. На file-хранилище
+ * таймаут не действует.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryAdmission {
+
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${stats-server.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats-server.admission.queue-timeout:500ms}")
+    private Duration queueTimeout;
+
+    // запрос по немногим ключам идёт по индексу (uri или resource_id, время) и дёшев при любом периоде
+    @Value("${stats-server.admission.cheap-max-keys:100}")
+    private int cheapMaxKeys;
+
+    @Value("${stats-server.admission.wide-range:7d}")
+    private Duration wideRange;
+
+    @Value("${stats-server.admission.cheap.max-concurrent:32}")
+    private int cheapMaxConcurrent;
+
+    @Value("${stats-server.admission.cheap.timeout:2s}")
+    private Duration cheapTimeout;
+
+    @Value("${stats-server.admission.expensive.max-concurrent:4}")
+    private int expensiveMaxConcurrent;
+
+    @Value("${stats-server.admission.expensive.timeout:30s}")
+    private Duration expensiveTimeout;
+
+    @Value("${stats-server.admission.export.max-concurrent:2}")
+    private int exportMaxConcurrent;
+
+    @Value("${stats-server.admission.export.timeout:10m}")
+    private Duration exportTimeout;
+
+    private final Map<QueryClass, Lane> lanes = new EnumMap<>(QueryClass.class);
+
+    @PostConstruct
+    public void init() {
+        lanes.put(QueryClass.CHEAP, new Lane(QueryClass.CHEAP, cheapMaxConcurrent, cheapTimeout));
+        lanes.put(QueryClass.EXPENSIVE, new Lane(QueryClass.EXPENSIVE, expensiveMaxConcurrent, expensiveTimeout));
+        lanes.put(QueryClass.EXPORT, new Lane(QueryClass.EXPORT, exportMaxConcurrent, exportTimeout));
+    }
+
+    /**
+     * Очередь для запроса по ключам (uri или id) за [start, end). Пустой список ключей - запрос по всем uri.
+     */
+    public QueryClass classify(Collection<?> keys, LocalDateTime start, LocalDateTime end) {
+        return classify(keys == null ? 0 : keys.size(), start, end);
+    }
+
+    /**
+     * Запрос по keyCount ключам, 0 - по всем uri. Ширина периода учитывается только для запросов
+     * по всем uri: поштучные запросы main-service (от createdOn события до сейчас) остаются дешёвыми.
+     */
+    public QueryClass classify(int keyCount, LocalDateTime start, LocalDateTime end) {
+        if (keyCount > cheapMaxKeys) {
+            return QueryClass.EXPENSIVE;
+        }
+        if (keyCount == 0 && (start == null || end == null || Duration.between(start, end).compareTo(wideRange) > 0)) {
+            return QueryClass.EXPENSIVE;
+        }
+        return QueryClass.CHEAP;
+    }
+
+    /**
+     * Занимает место в очереди и открывает транзакцию в текущем потоке. Потоковые ответы вызывают
+     * его в теле ответа, в том потоке, где идёт запрос к хранилищу.
+     */
+    public Permit begin(QueryClass queryClass) throws QueryOverloadedException {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        Lane lane = lanes.get(queryClass);
+        lane.acquire();
+        Permit permit = new Permit(lane);
+        try {
+            permit.begin();
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        return permit;
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final Lane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private TransactionStatus transaction;
+        private long startedAt;
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        private void begin() {
+            startedAt = System.nanoTime();
+            transaction = transactionManager.getTransaction(lane.definition);
+        }
+
+        // транзакция только читает, поэтому её всегда откатываем: так не нужно знать, чем закончился запрос
+        @Override
+        public void close() {
+            if (lane == null || !released.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (transaction != null) {
+                    transactionManager.rollback(transaction);
+                    lane.executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                lane.permits.release();
+            }
+        }
+    }
+
+    private final class Lane {
+        private final String name;
+        private final Semaphore permits;
+        private final DefaultTransactionDefinition definition;
+        private final Timer queueTimer;
+        private final Timer executionTimer;
+        private final Counter rejected;
+
+        private Lane(QueryClass queryClass, int maxConcurrent, Duration timeout) {
+            this.name = queryClass.name().toLowerCase(Locale.ROOT);
+            this.permits = new Semaphore(maxConcurrent, true);
+            this.definition = new DefaultTransactionDefinition();
+            definition.setName("stats-query-" + name);
+            definition.setReadOnly(true);
+            // таймаут транзакции задаётся в целых секундах
+            definition.setTimeout((int) Math.max(1, (timeout.toMillis() + 999) / 1000));
+
+            this.queueTimer = Timer.builder("stats.server.query.queue")
+                    .description("Time a stats query waited for an admission permit")
+                    .tag("class", name)
+                    .register(meterRegistry);
+            this.executionTimer = Timer.builder("stats.server.query.execution")
+                    .tag("class", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("stats.server.query.rejected")
+                    .description("Stats queries rejected after waiting queue-timeout for a permit")
+                    .tag("class", name)
+                    .register(meterRegistry);
+            Gauge.builder("stats.server.query.active", permits, p -> maxConcurrent - p.availablePermits())
+                    .tag("class", name)
+                    .register(meterRegistry);
+        }
+
+        private void acquire() throws QueryOverloadedException {
+            long queuedAt = System.nanoTime();
+            boolean admitted;
+            try {
+                admitted = permits.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                admitted = false;
+            }
+            queueTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            if (!admitted) {
+                rejected.increment();
+                log.warn("Stats-server. Rejected {} query: no permit within {}", name, queueTimeout);
+                throw new QueryOverloadedException("Too many " + name + " stats queries in progress");
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.TimeSpan;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбивает полуинтервал [from, to) на минимальный набор целых бакетов (дни в середине,
+ * часы и минуты ближе к краям) и неполные минуты по краям, которые читаются из сырых хитов.
+ * Число сегментов не зависит от длины интервала: не больше 2 сырых и 5 бакетных.
+ * Для хранилищ без части гранулярностей (скетчи ведутся по часам и дням) набор бакетов задаётся явно.
+ */
+public final class RollupPlanner {
+
+    private static final TimeBucket[] ALL_BUCKETS = TimeBucket.values();
+
+    private RollupPlanner() {
+    }
+
+    public record Plan(List<TimeSpan> rawSpans, List<BucketSpan> bucketSpans) {
+    }
+
+    public static Plan plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, ALL_BUCKETS);
+    }
+
+    /**
+     * План только из бакетов buckets, перечисленных от мелких к крупным.
+     */
+    public static Plan plan(LocalDateTime from, LocalDateTime to, TimeBucket... buckets) {
+        Plan plan = new Plan(new ArrayList<>(), new ArrayList<>());
+        if (from.isBefore(to)) {
+            cover(plan, buckets, from, to, 0);
+        }
+        return plan;
+    }
+
+    // [from, to) выровнен по buckets[level - 1]; пытаемся выделить в середине бакеты buckets[level]
+    private static void cover(Plan plan, TimeBucket[] buckets, LocalDateTime from, LocalDateTime to, int level) {
+        if (level == buckets.length) {
+            addFinerSpan(plan, buckets, from, to, level);
+            return;
+        }
+        TimeBucket bucket = buckets[level];
+        LocalDateTime alignedFrom = bucket.ceil(from);
+        LocalDateTime alignedTo = bucket.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            addFinerSpan(plan, buckets, from, to, level);
+            return;
+        }
+        addFinerSpan(plan, buckets, from, alignedFrom, level);
+        addFinerSpan(plan, buckets, alignedTo, to, level);
+        cover(plan, buckets, alignedFrom, alignedTo, level + 1);
+    }
+
+    private static void addFinerSpan(Plan plan, TimeBucket[] buckets, LocalDateTime from, LocalDateTime to,
+                                     int level) {
+        TimeSpan span = new TimeSpan(from, to);
+        if (span.isEmpty()) {
+            return;
+        }
+        if (level == 0) {
+            plan.rawSpans().add(span);
+        } else {
+            plan.bucketSpans().add(new BucketSpan(buckets[level - 1], span));
+        }
+    }
+}
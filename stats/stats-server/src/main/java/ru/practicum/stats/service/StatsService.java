@@ -2,15 +2,76 @@ package ru.practicum.stats.service;
 
 import ru.practicum.stats.EndpointHitDto;
 import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.ViewStatsQueryDto;
+import ru.practicum.stats.ViewStatsSeriesDto;
+import ru.practicum.stats.ViewsSinceQueryDto;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.exception.IngestionOverloadedException;
 import ru.practicum.stats.exception.StartDateIsAfterEndDateException;
+import ru.practicum.stats.model.TimeBucket;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface StatsService {
 
-    boolean addStat(EndpointHitDto endpointHitDto);
+    boolean addStat(EndpointHitDto endpointHitDto) throws IngestionOverloadedException;
 
-    List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) throws StartDateIsAfterEndDateException;
+    int addStats(List<EndpointHitDto> endpointHitDtos) throws IngestionOverloadedException;
+
+    /**
+     * @param approximate для unique = true: считать уникальных посетителей по HyperLogLog-скетчам
+     *                    (ошибка ~1.6%); если скетчи выключены, используется точный подсчёт
+     */
+    List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                               Boolean approximate) throws StartDateIsAfterEndDateException;
+
+    /**
+     * Просмотры по каждому uri (или id, если задан uriTemplate) из запроса, сумма по всем app.
+     * Ключи, для которых хитов нет, возвращаются с нулём. Если uriTemplate совпадает с шаблоном
+     * ResourceIds, ids и диапазон idFrom..idTo ищутся по колонке resource_id.
+     */
+    Map<String, Long> getViewCounts(ViewStatsQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException;
+
+    /**
+     * Как getViewCounts, но у каждого uri (или id) своё начало периода при общем конце.
+     * Считается одним запросом к сырым хитам.
+     */
+    Map<String, Long> getViewCountsSince(ViewsSinceQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException;
+
+    /**
+     * limit самых посещаемых (app, uri) за период, uriPrefix (необязательный) ограничивает uri.
+     */
+    List<ViewStatsDto> getTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique, String uriPrefix)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException;
+
+    /**
+     * Счётчики по (app, uri) в бакетах granularity, первый бакет - тот, в который попадает start.
+     */
+    ViewStatsSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris, TimeBucket granularity,
+                                     boolean unique) throws StartDateIsAfterEndDateException, IncorrectRequestParameterException;
+
+    /**
+     * Точная статистика из сырых хитов, строки передаются в consumer по мере чтения из БД.
+     */
+    void streamStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                    Consumer<ViewStatsDto> consumer) throws StartDateIsAfterEndDateException;
+
+    /**
+     * Проверка параметров exportHits до начала ответа: после первой строки статус уже не поменять.
+     * afterId допустим, только если движок хранения умеет продолжать выгрузку по id.
+     */
+    void validateExport(LocalDateTime start, LocalDateTime end, Long afterId)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException;
+
+    /**
+     * Сырые хиты за период по возрастанию id, начиная после afterId; читаются курсором БД.
+     */
+    void exportHits(LocalDateTime start, LocalDateTime end, List<String> uris, Long afterId,
+                    Consumer<EndpointHitDto> consumer) throws StartDateIsAfterEndDateException;
 
 }
@@ -2,54 +2,364 @@ package ru.practicum.stats.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.exception.IngestionOverloadedException;
 import ru.practicum.stats.exception.StartDateIsAfterEndDateException;
-import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.UriStartDto;
 import ru.practicum.stats.ViewStatsDto;
-import ru.practicum.stats.mapper.EndpointHitMapper;
-import ru.practicum.stats.repository.StatsServerRepository;
+import ru.practicum.stats.ViewStatsQueryDto;
+import ru.practicum.stats.ViewStatsSeriesDto;
+import ru.practicum.stats.ViewsSinceQueryDto;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+import ru.practicum.stats.repository.HitStore;
+import ru.practicum.stats.repository.ResourceIds;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 @Transactional(readOnly = true)
 public class StatsServiceImpl implements StatsService {
-    private final StatsServerRepository statsServerRepository;
-    private final EndpointHitMapper endpointHitMapper;
+    private final HitStore hitStore;
+    private final HitIngestor hitIngestor;
+    private final HitRollupService hitRollupService;
+    private final UniqueVisitorSketchService uniqueVisitorSketchService;
+    private final UniqueVisitorBitmapService uniqueVisitorBitmapService;
+    private final HotWindowStats hotWindowStats;
+    private final ViewStatsCache viewStatsCache;
+    private final ResourceIds resourceIds;
 
+    @Value("${stats-server.query.max-keys:10000}")
+    private int queryMaxKeys;
+
+    @Value("${stats-server.top.max-limit:1000}")
+    private int topMaxLimit;
+
+    @Value("${stats-server.timeseries.max-buckets:10000}")
+    private int timeSeriesMaxBuckets;
+
+    // самый нагруженный путь сервиса: логируем только на DEBUG,
+    // транзакцией записи управляет HitWriter, а не поток запроса
     @Override
-    @Transactional
-    public boolean addStat(EndpointHitDto endpointHitDto) {
-        log.info("Stats-server. addStat input: uri = {}, app={} from ip {}",
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean addStat(EndpointHitDto endpointHitDto) throws IngestionOverloadedException {
+        log.debug("Stats-server. addStat input: uri = {}, app={} from ip {}",
                 endpointHitDto.getUri(),
                 endpointHitDto.getApp(),
                 endpointHitDto.getIp());
 
-        EndpointHitEntity savedEntity = statsServerRepository.save(endpointHitMapper.toEntity(endpointHitDto));
+        return hitIngestor.ingest(endpointHitDto);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int addStats(List<EndpointHitDto> endpointHitDtos) throws IngestionOverloadedException {
+        log.debug("Stats-server. addStats input: size = {}", endpointHitDtos.size());
 
-        log.info("Stats-server. addStat success: id = {}", savedEntity.getId());
+        int accepted = hitIngestor.ingestAll(endpointHitDtos);
 
-        return true;
+        log.debug("Stats-server. addStats success: accepted = {}", accepted);
+
+        return accepted;
     }
 
     @Override
-    public List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) throws StartDateIsAfterEndDateException {
-        log.info("Stats-server. getStat input: uris = {}, from {} to {}, unique = {}", uris.toString(), start, end, unique);
+    public List<ViewStatsDto> getStat(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                      Boolean approximate) throws StartDateIsAfterEndDateException {
+        log.info("Stats-server. getStat input: uris = {}, from {} to {}, unique = {}, approximate = {}",
+                uris.toString(), start, end, unique, approximate);
 
-        if (start.isAfter(end)) {
-            throw new StartDateIsAfterEndDateException("Start date " + start + " cannot be after end date " + end);
-        }
+        TimeRanges.requireOrdered(start, end);
 
-        List<ViewStatsDto> list = statsServerRepository.getViewStats(uris, start, end, unique);
+        LocalDateTime to = TimeRanges.exclusiveEnd(end);
+        List<ViewStatsDto> list = viewStatsCache.get(uris, start, to, unique, approximate,
+                (keyUris, from, until) -> loadStat(keyUris, from, until, unique, approximate));
 
         log.info("Stats-server. getStat success: found {}", list.size());
 
         return list;
     }
 
+    @Override
+    public Map<String, Long> getViewCounts(ViewStatsQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        boolean hasIds = query.getIds() != null && !query.getIds().isEmpty();
+        boolean hasIdRange = query.getIdFrom() != null || query.getIdTo() != null;
+        if ((hasIds || hasIdRange) && resourceIds.supports(query.getUriTemplate())) {
+            return getViewCountsByResourceIds(query, hasIds);
+        }
+        if (hasIdRange) {
+            throw new IncorrectRequestParameterException("Id range is supported only for uriTemplate " +
+                    "matching stats-server.resource-id.uri-template");
+        }
+        // uri -> ключ ответа: сам uri или id из шаблона
+        Map<String, String> keysByUri = new LinkedHashMap<>();
+        if (hasIds) {
+            String template = query.getUriTemplate();
+            if (template == null || !template.contains("{id}")) {
+                throw new IncorrectRequestParameterException("uriTemplate with {id} is required when ids are given");
+            }
+            query.getIds().forEach(id -> keysByUri.put(template.replace("{id}", id.toString()), id.toString()));
+        } else if (query.getUris() != null && !query.getUris().isEmpty()) {
+            query.getUris().forEach(uri -> keysByUri.put(uri, uri));
+        } else {
+            throw new IncorrectRequestParameterException("Either uris or ids with uriTemplate must be given");
+        }
+        if (keysByUri.size() > queryMaxKeys) {
+            throw new IncorrectRequestParameterException("At most " + queryMaxKeys + " uris per query, was " + keysByUri.size());
+        }
+
+        List<ViewStatsDto> stats = getStat(query.getStart(), query.getEnd(), List.copyOf(keysByUri.keySet()),
+                Boolean.TRUE.equals(query.getUnique()), false);
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        keysByUri.values().forEach(key -> counts.put(key, 0L));
+        stats.forEach(stat -> counts.merge(keysByUri.get(stat.getUri()), stat.getHits(), Long::sum));
+        return counts;
+    }
+
+    // запрос по числовой колонке resource_id вместо сравнения текстовых uri
+    private Map<String, Long> getViewCountsByResourceIds(ViewStatsQueryDto query, boolean hasIds)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        log.info("Stats-server. getViewCountsByResourceIds input: {} ids, range {}..{}, from {} to {}, unique = {}",
+                hasIds ? query.getIds().size() : 0, query.getIdFrom(), query.getIdTo(),
+                query.getStart(), query.getEnd(), query.getUnique());
+
+        TimeRanges.requireOrdered(query.getStart(), query.getEnd());
+        if (hasIds && query.getIds().size() > queryMaxKeys) {
+            throw new IncorrectRequestParameterException("At most " + queryMaxKeys + " ids per query, was " + query.getIds().size());
+        }
+        // диапазон ограничен так же, как набор ids: открытые границы и широкие диапазоны не принимаются
+        if (query.getIdFrom() != null || query.getIdTo() != null) {
+            if (query.getIdFrom() == null || query.getIdTo() == null) {
+                throw new IncorrectRequestParameterException("Both idFrom and idTo must be given for an id range");
+            }
+            long span = query.getIdTo() - query.getIdFrom();
+            if (query.getIdFrom() > query.getIdTo() || span < 0 || span >= queryMaxKeys) {
+                throw new IncorrectRequestParameterException("Id range must hold from 1 to " + queryMaxKeys
+                        + " ids, was " + query.getIdFrom() + ".." + query.getIdTo());
+            }
+        }
+
+        Map<Long, Long> byId = hitStore.countByResourceIds(
+                new ResourceIdFilter(hasIds ? query.getIds() : null, query.getIdFrom(), query.getIdTo()),
+                query.getStart(), TimeRanges.exclusiveEnd(query.getEnd()), Boolean.TRUE.equals(query.getUnique()));
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (hasIds) {
+            query.getIds().forEach(id -> counts.put(id.toString(), byId.getOrDefault(id, 0L)));
+        } else {
+            byId.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> counts.put(entry.getKey().toString(), entry.getValue()));
+        }
+
+        log.info("Stats-server. getViewCountsByResourceIds success: found {}", byId.size());
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getViewCountsSince(ViewsSinceQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        log.info("Stats-server. getViewCountsSince input: {} items until {}, unique = {}",
+                query.getItems().size(), query.getEnd(), query.getUnique());
+
+        if (query.getItems().size() > queryMaxKeys) {
+            throw new IncorrectRequestParameterException("At most " + queryMaxKeys + " uris per query, was "
+                    + query.getItems().size());
+        }
+        String template = query.getUriTemplate();
+        if (resourceIds.supports(template) && query.getItems().stream().allMatch(item -> item.getId() != null)) {
+            return getViewCountsSinceByResourceIds(query);
+        }
+        // uri -> ключ ответа: сам uri или id из шаблона
+        Map<String, String> keysByUri = new LinkedHashMap<>();
+        List<UriStart> starts = new ArrayList<>(query.getItems().size());
+        for (UriStartDto item : query.getItems()) {
+            String uri;
+            String key;
+            if (item.getId() != null) {
+                if (template == null || !template.contains("{id}")) {
+                    throw new IncorrectRequestParameterException("uriTemplate with {id} is required when ids are given");
+                }
+                key = item.getId().toString();
+                uri = template.replace("{id}", key);
+            } else if (item.getUri() != null) {
+                uri = item.getUri();
+                key = uri;
+            } else {
+                throw new IncorrectRequestParameterException("Each item must have either uri or id");
+            }
+            TimeRanges.requireOrdered(item.getStart(), query.getEnd());
+            if (keysByUri.put(uri, key) != null) {
+                throw new IncorrectRequestParameterException("Duplicate item for uri " + uri);
+            }
+            starts.add(new UriStart(uri, item.getStart()));
+        }
+
+        List<ViewStatsDto> stats = hitStore.getViewStatsSince(starts, TimeRanges.exclusiveEnd(query.getEnd()),
+                Boolean.TRUE.equals(query.getUnique()));
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        keysByUri.values().forEach(key -> counts.put(key, 0L));
+        stats.forEach(stat -> counts.merge(keysByUri.get(stat.getUri()), stat.getHits(), Long::sum));
+
+        log.info("Stats-server. getViewCountsSince success: found {}", stats.size());
+
+        return counts;
+    }
+
+    private Map<String, Long> getViewCountsSinceByResourceIds(ViewsSinceQueryDto query)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        Map<Long, LocalDateTime> starts = new LinkedHashMap<>();
+        for (UriStartDto item : query.getItems()) {
+            TimeRanges.requireOrdered(item.getStart(), query.getEnd());
+            if (starts.put(item.getId(), item.getStart()) != null) {
+                throw new IncorrectRequestParameterException("Duplicate item for id " + item.getId());
+            }
+        }
+
+        Map<Long, Long> byId = hitStore.countByResourceIdsSince(starts, TimeRanges.exclusiveEnd(query.getEnd()),
+                Boolean.TRUE.equals(query.getUnique()));
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        starts.keySet().forEach(id -> counts.put(id.toString(), byId.getOrDefault(id, 0L)));
+
+        log.info("Stats-server. getViewCountsSince success: found {} by resource id", byId.size());
+
+        return counts;
+    }
+
+    @Override
+    public List<ViewStatsDto> getTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique, String uriPrefix)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        log.info("Stats-server. getTop input: from {} to {}, limit = {}, unique = {}, prefix = {}",
+                start, end, limit, unique, uriPrefix);
+
+        TimeRanges.requireOrdered(start, end);
+        if (limit < 1 || limit > topMaxLimit) {
+            throw new IncorrectRequestParameterException("Limit must be between 1 and " + topMaxLimit + ", was " + limit);
+        }
+
+        LocalDateTime to = TimeRanges.exclusiveEnd(end);
+        TopViewStats top = new TopViewStats(limit);
+        if (!unique && hitRollupService.isEnabled()) {
+            hitRollupService.forEachViewStat(uriPrefix, start, to, top);
+        } else {
+            hitStore.forEachViewStat(uriPrefix, start, to, unique, top);
+        }
+        List<ViewStatsDto> list = top.toList();
+
+        log.info("Stats-server. getTop success: found {}", list.size());
+
+        return list;
+    }
+
+    @Override
+    public ViewStatsSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                            TimeBucket granularity, boolean unique)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        log.info("Stats-server. getTimeSeries input: uris = {}, from {} to {}, granularity = {}, unique = {}",
+                uris.toString(), start, end, granularity, unique);
+
+        TimeRanges.requireOrdered(start, end);
+
+        LocalDateTime to = TimeRanges.exclusiveEnd(end);
+        LocalDateTime first = granularity.floor(start);
+        long buckets = granularity.between(first, granularity.ceil(to));
+        if (buckets > timeSeriesMaxBuckets) {
+            throw new IncorrectRequestParameterException("Range contains " + buckets + " " + granularity
+                    + " buckets, at most " + timeSeriesMaxBuckets + " allowed");
+        }
+
+        ViewStatsSeries series = new ViewStatsSeries(granularity, first, (int) buckets);
+        if (!unique && hitRollupService.isEnabled()) {
+            hitRollupService.collectSeries(uris, start, to, granularity, series);
+        } else {
+            hitStore.forEachBucketedStat(uris, start, to, granularity, unique, series::add);
+        }
+        ViewStatsSeriesDto dto = series.toDto();
+
+        log.info("Stats-server. getTimeSeries success: found {} series", dto.getSeries().size());
+
+        return dto;
+    }
+
+    @Override
+    public void streamStat(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                           Consumer<ViewStatsDto> consumer) throws StartDateIsAfterEndDateException {
+        log.info("Stats-server. streamStat input: uris = {}, from {} to {}, unique = {}",
+                uris.toString(), start, end, unique);
+
+        TimeRanges.requireOrdered(start, end);
+
+        long[] count = new long[1];
+        hitStore.streamViewStats(uris, start, TimeRanges.exclusiveEnd(end), unique, stat -> {
+            consumer.accept(stat);
+            count[0]++;
+        });
+
+        log.info("Stats-server. streamStat success: streamed {}", count[0]);
+    }
+
+    @Override
+    public void validateExport(LocalDateTime start, LocalDateTime end, Long afterId)
+            throws StartDateIsAfterEndDateException, IncorrectRequestParameterException {
+        TimeRanges.requireOrdered(start, end);
+        if (afterId != null && !hitStore.supportsExportAfterId()) {
+            throw new IncorrectRequestParameterException("afterId is not supported by the configured storage engine");
+        }
+    }
+
+    @Override
+    public void exportHits(LocalDateTime start, LocalDateTime end, List<String> uris, Long afterId,
+                           Consumer<EndpointHitDto> consumer) throws StartDateIsAfterEndDateException {
+        log.info("Stats-server. exportHits input: uris = {}, from {} to {}, afterId = {}",
+                uris.toString(), start, end, afterId);
+
+        TimeRanges.requireOrdered(start, end);
+
+        long[] count = new long[1];
+        hitStore.exportHits(uris, start, TimeRanges.exclusiveEnd(end), afterId, hit -> {
+            consumer.accept(hit);
+            count[0]++;
+        });
+
+        log.info("Stats-server. exportHits success: exported {}", count[0]);
+    }
+
+    private List<ViewStatsDto> loadStat(List<String> uris, LocalDateTime from, LocalDateTime to,
+                                        boolean unique, boolean approximate) {
+        return hotWindowStats.getViewStats(uris, from, to, unique,
+                        (head, tail) -> getPersistedStat(uris, head, tail, false, false))
+                .orElseGet(() -> getPersistedStat(uris, from, to, unique, approximate));
+    }
+
+    private List<ViewStatsDto> getPersistedStat(List<String> uris, LocalDateTime from, LocalDateTime to,
+                                                boolean unique, boolean approximate) {
+        if (!unique && hitRollupService.isEnabled()) {
+            return hitRollupService.getViewStats(uris, from, to);
+        }
+        if (unique && approximate && uniqueVisitorSketchService.isEnabled()) {
+            return uniqueVisitorSketchService.getViewStats(uris, from, to);
+        }
+        if (unique && uniqueVisitorBitmapService.isEnabled()) {
+            return uniqueVisitorBitmapService.getViewStats(uris, from, to);
+        }
+        return hitStore.getViewStats(uris, from, to, unique);
+    }
 }
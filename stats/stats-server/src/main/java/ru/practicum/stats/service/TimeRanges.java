@@ -0,0 +1,45 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.exception.StartDateIsAfterEndDateException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+public final class TimeRanges {
+
+    private TimeRanges() {
+    }
+
+    public static void requireOrdered(LocalDateTime start, LocalDateTime end) throws StartDateIsAfterEndDateException {
+        if (start.isAfter(end)) {
+            throw new StartDateIsAfterEndDateException("Start date " + start + " cannot be after end date " + end);
+        }
+    }
+
+    /**
+     * API принимает закрытый период [start, end], хранилище работает с полуинтервалами [from, to).
+     * Сдвигаем конец на 1 мкс - точность TIMESTAMP в PostgreSQL и H2.
+     */
+    public static LocalDateTime exclusiveEnd(LocalDateTime end) {
+        return end.plus(1, ChronoUnit.MICROS);
+    }
+
+    /**
+     * Округление вниз до шага step, отсчитанного от эпохи; нулевой шаг оставляет время как есть.
+     */
+    public static LocalDateTime alignDown(LocalDateTime dateTime, Duration step) {
+        long stepNanos = step.toNanos();
+        if (stepNanos <= 0) {
+            return dateTime;
+        }
+        long epochNanos = dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+        return dateTime.minusNanos(Math.floorMod(epochNanos, stepNanos));
+    }
+
+    public static LocalDateTime alignUp(LocalDateTime dateTime, Duration step) {
+        LocalDateTime down = alignDown(dateTime, step);
+        return down.equals(dateTime) ? dateTime : down.plus(step);
+    }
+}
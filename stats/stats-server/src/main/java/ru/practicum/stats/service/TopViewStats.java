@@ -0,0 +1,50 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.ViewStatsDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Первые limit строк по убыванию hits без сортировки всего результата:
+ * min-куча размера limit, память O(limit) при любом числе uri.
+ * При равных hits выше стоит меньший uri, затем app, поэтому граница топа не зависит от порядка строк.
+ */
+class TopViewStats implements Consumer<ViewStatsDto> {
+
+    // лучшая строка первой
+    private static final Comparator<ViewStatsDto> RANK = Comparator.comparing(ViewStatsDto::getHits).reversed()
+            .thenComparing(ViewStatsDto::getUri)
+            .thenComparing(ViewStatsDto::getApp);
+
+    private final int limit;
+    private final PriorityQueue<ViewStatsDto> heap;
+
+    TopViewStats(int limit) {
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit, RANK.reversed());
+    }
+
+    @Override
+    public void accept(ViewStatsDto stat) {
+        if (heap.size() < limit) {
+            heap.add(stat);
+        } else if (RANK.compare(stat, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(stat);
+        }
+    }
+
+    int size() {
+        return heap.size();
+    }
+
+    List<ViewStatsDto> toList() {
+        List<ViewStatsDto> top = new ArrayList<>(heap);
+        top.sort(RANK);
+        return top;
+    }
+}
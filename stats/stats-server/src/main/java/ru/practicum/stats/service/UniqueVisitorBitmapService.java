@@ -0,0 +1,204 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.SketchKey;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.repository.HitBitmapRepository;
+import ru.practicum.stats.repository.HitStore;
+import ru.practicum.stats.repository.VisitorIpDictionary;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Точный подсчёт уникальных посетителей: ip переводится в плотный номер (VisitorIpDictionary),
+ * на (app, uri, день) хранится Roaring-битовая карта номеров. Число уникальных за период -
+ * мощность объединения дневных карт; неполные дни по краям добираются из сырых хитов.
+ * <p>
+ * Новые хиты копятся в памяти и раз в flush-interval объединяются с сохранёнными картами;
+ * несброшенные карты тоже участвуют в запросах.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UniqueVisitorBitmapService {
+
+    private static final TimeBucket BUCKET = TimeBucket.DAY;
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator
+            .comparing(SketchKey::uri)
+            .thenComparing(SketchKey::bucketStart)
+            .thenComparing(SketchKey::app);
+
+    private final HitBitmapRepository hitBitmapRepository;
+    private final VisitorIpDictionary visitorIpDictionary;
+    private final HitStore hitStore;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<SketchKey, RoaringBitmap> pending = new ConcurrentHashMap<>();
+
+    @Value("${stats-server.bitmap.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Вызывается в транзакции записи хитов: номера ip получаются сразу (ошибка откатывает запись),
+     * а в карты хиты попадают только после коммита, чтобы откат не оставил их в подсчёте.
+     */
+    public void record(List<EndpointHitEntity> hits) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Integer> visitorIds = visitorIpDictionary.resolveAll(hits.stream().map(EndpointHitEntity::getIp).toList());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addAll(hits, visitorIds);
+                }
+            });
+        } else {
+            addAll(hits, visitorIds);
+        }
+    }
+
+    private void addAll(List<EndpointHitEntity> hits, Map<String, Integer> visitorIds) {
+        for (EndpointHitEntity hit : hits) {
+            SketchKey key = new SketchKey(hit.getApp(), hit.getUri(), BUCKET.floor(hit.getTimestamp()));
+            int visitorId = visitorIds.get(hit.getIp());
+            pending.compute(key, (k, bitmap) -> {
+                RoaringBitmap target = bitmap != null ? bitmap : new RoaringBitmap();
+                target.add(visitorId);
+                return target;
+            });
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats-server.bitmap.flush-interval:10s}")
+    public void flush() {
+        if (!enabled || pending.isEmpty()) {
+            return;
+        }
+        List<SketchKey> keys = new ArrayList<>(pending.keySet());
+        keys.sort(KEY_ORDER);
+        for (SketchKey key : keys) {
+            RoaringBitmap bitmap = pending.remove(key);
+            if (bitmap == null) {
+                continue;
+            }
+            try {
+                persist(key, bitmap);
+            } catch (RuntimeException e) {
+                log.warn("Stats-server. Bitmap flush failed for {}, will retry: {}", key, e.getMessage());
+                pending.merge(key, bitmap, (current, failed) -> {
+                    current.or(failed);
+                    return current;
+                });
+            }
+        }
+    }
+
+    /**
+     * Точное число уникальных IP по (app, uri) за полуинтервал [from, to).
+     */
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime alignedFrom = BUCKET.ceil(from);
+        LocalDateTime alignedTo = BUCKET.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            // меньше суток - запрос по сырым хитам дешевле
+            return hitStore.getViewStats(uris, from, to, true);
+        }
+
+        Map<AppUri, RoaringBitmap> merged = new HashMap<>();
+        hitBitmapRepository.forEachBitmap(uris, alignedFrom, alignedTo, (key, bitmap) -> mergeInto(merged, key, bitmap));
+        pending.forEach((key, bitmap) -> {
+            if (!key.bucketStart().isBefore(alignedFrom) && key.bucketStart().isBefore(alignedTo)
+                    && (uris == null || uris.isEmpty() || uris.contains(key.uri()))) {
+                mergeInto(merged, key, copyOf(key, bitmap));
+            }
+        });
+        Map<String, Integer> unknownIds = new HashMap<>();
+        addVisitors(merged, hitStore.findVisitors(uris, from, alignedFrom), unknownIds);
+        addVisitors(merged, hitStore.findVisitors(uris, alignedTo, to), unknownIds);
+
+        ViewStatsAccumulator accumulator = new ViewStatsAccumulator();
+        merged.forEach((appUri, bitmap) -> accumulator.add(appUri.app(), appUri.uri(), bitmap.getLongCardinality()));
+        return accumulator.toList();
+    }
+
+    private void persist(SketchKey key, RoaringBitmap bitmap) {
+        try {
+            mergeAndSave(key, bitmap);
+        } catch (DuplicateKeyException e) {
+            // другой экземпляр успел вставить карту за этот день - повторяем как обновление
+            mergeAndSave(key, bitmap);
+        }
+    }
+
+    private void mergeAndSave(SketchKey key, RoaringBitmap bitmap) {
+        transactionTemplate.executeWithoutResult(status -> hitBitmapRepository.findForUpdate(key)
+                .ifPresentOrElse(
+                        stored -> hitBitmapRepository.update(key, RoaringBitmap.or(stored, bitmap)),
+                        () -> hitBitmapRepository.insert(key, bitmap.clone())));
+    }
+
+    // карта в pending может дописываться параллельно, копируем под блокировкой ключа
+    private RoaringBitmap copyOf(SketchKey key, RoaringBitmap bitmap) {
+        RoaringBitmap[] copy = new RoaringBitmap[1];
+        pending.computeIfPresent(key, (k, current) -> {
+            copy[0] = current.clone();
+            return current;
+        });
+        return copy[0] != null ? copy[0] : bitmap.clone();
+    }
+
+    private void mergeInto(Map<AppUri, RoaringBitmap> merged, SketchKey key, RoaringBitmap bitmap) {
+        merged.merge(new AppUri(key.app(), key.uri()), bitmap, (current, added) -> {
+            current.or(added);
+            return current;
+        });
+    }
+
+    /**
+     * Края периода из сырых хитов. Запрос только читает словарь: ip, которого в нём нет (хит записан
+     * до включения карт), получает временный номер с верха беззнакового диапазона - с номерами identity
+     * он не пересекается, а в картах его нет, так что он считается ровно один раз.
+     */
+    private void addVisitors(Map<AppUri, RoaringBitmap> merged, List<HitVisitor> visitors,
+                             Map<String, Integer> unknownIds) {
+        if (visitors.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> visitorIds = visitorIpDictionary.findAll(visitors.stream().map(HitVisitor::ip).toList());
+        for (HitVisitor visitor : visitors) {
+            Integer visitorId = visitorIds.get(visitor.ip());
+            if (visitorId == null) {
+                visitorId = unknownIds.computeIfAbsent(visitor.ip(), ip -> -1 - unknownIds.size());
+            }
+            merged.computeIfAbsent(new AppUri(visitor.app(), visitor.uri()), appUri -> new RoaringBitmap())
+                    .add(visitorId);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.HyperLogLog;
+import ru.practicum.stats.model.SketchKey;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.TimeSpan;
+import ru.practicum.stats.repository.HitSketchRepository;
+import ru.practicum.stats.repository.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Приближённый подсчёт уникальных посетителей: HyperLogLog-скетчи IP на (app, uri, час) и (app, uri, день).
+ * Период покрывается днями в середине и часами по краям, как в {@link RollupPlanner}, скетчи объединяются
+ * при запросе, неполные часы по краям добираются из сырых хитов. Ошибка оценки - см. {@link HyperLogLog}.
+ * <p>
+ * Новые хиты копятся в памяти и раз в flush-interval сливаются с сохранёнными скетчами;
+ * несброшенные скетчи тоже участвуют в запросах.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UniqueVisitorSketchService {
+
+    // от мелких к крупным, как ждёт RollupPlanner
+    private static final TimeBucket[] BUCKETS = {TimeBucket.HOUR, TimeBucket.DAY};
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator
+            .comparing(SketchKey::uri)
+            .thenComparing(SketchKey::bucketStart)
+            .thenComparing(SketchKey::app);
+
+    private final HitSketchRepository hitSketchRepository;
+    private final HitStore hitStore;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<TimeBucket, Map<SketchKey, HyperLogLog>> pending = new EnumMap<>(Map.of(
+            TimeBucket.HOUR, new ConcurrentHashMap<>(),
+            TimeBucket.DAY, new ConcurrentHashMap<>()));
+
+    @Value("${stats-server.sketch.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Вызывается в транзакции записи хитов: в скетчи хиты попадают только после коммита,
+     * чтобы откат не оставил их в подсчёте.
+     */
+    public void record(List<EndpointHitEntity> hits) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addAll(hits);
+                }
+            });
+        } else {
+            addAll(hits);
+        }
+    }
+
+    // каждый хит попадает и в часовой, и в дневной скетч: дневные не нужно собирать из часовых
+    private void addAll(List<EndpointHitEntity> hits) {
+        for (EndpointHitEntity hit : hits) {
+            for (TimeBucket bucket : BUCKETS) {
+                SketchKey key = new SketchKey(hit.getApp(), hit.getUri(), bucket.floor(hit.getTimestamp()));
+                pending.get(bucket).compute(key, (k, sketch) -> {
+                    HyperLogLog target = sketch != null ? sketch : new HyperLogLog();
+                    target.add(hit.getIp());
+                    return target;
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats-server.sketch.flush-interval:10s}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        for (TimeBucket bucket : BUCKETS) {
+            Map<SketchKey, HyperLogLog> bucketPending = pending.get(bucket);
+            List<SketchKey> keys = new ArrayList<>(bucketPending.keySet());
+            keys.sort(KEY_ORDER);
+            for (SketchKey key : keys) {
+                HyperLogLog sketch = bucketPending.remove(key);
+                if (sketch == null) {
+                    continue;
+                }
+                try {
+                    persist(bucket, key, sketch);
+                } catch (RuntimeException e) {
+                    log.warn("Stats-server. Sketch flush failed for {} {}, will retry: {}", bucket, key, e.getMessage());
+                    bucketPending.merge(key, sketch, HyperLogLog::merge);
+                }
+            }
+        }
+    }
+
+    /**
+     * Приближённое число уникальных IP по (app, uri) за полуинтервал [from, to).
+     */
+    public List<ViewStatsDto> getViewStats(List<String> uris, LocalDateTime from, LocalDateTime to) {
+        RollupPlanner.Plan plan = RollupPlanner.plan(from, to, BUCKETS);
+        if (plan.bucketSpans().isEmpty()) {
+            // меньше часа - точный запрос дешевле
+            return hitStore.getViewStats(uris, from, to, true);
+        }
+
+        Map<AppUri, HyperLogLog> merged = new HashMap<>();
+        hitSketchRepository.forEachSketch(uris, plan.bucketSpans(), (key, registers) ->
+                mergeInto(merged, key, HyperLogLog.fromBytes(registers)));
+        for (BucketSpan span : plan.bucketSpans()) {
+            Map<SketchKey, HyperLogLog> bucketPending = pending.get(span.bucket());
+            bucketPending.forEach((key, sketch) -> {
+                if (!key.bucketStart().isBefore(span.span().from()) && key.bucketStart().isBefore(span.span().to())
+                        && (uris == null || uris.isEmpty() || uris.contains(key.uri()))) {
+                    mergeInto(merged, key, copyOf(bucketPending, key, sketch));
+                }
+            });
+        }
+        for (TimeSpan span : plan.rawSpans()) {
+            addVisitors(merged, hitStore.findVisitors(uris, span.from(), span.to()));
+        }
+
+        ViewStatsAccumulator accumulator = new ViewStatsAccumulator();
+        merged.forEach((appUri, sketch) -> accumulator.add(appUri.app(), appUri.uri(), sketch.estimate()));
+        return accumulator.toList();
+    }
+
+    private void persist(TimeBucket bucket, SketchKey key, HyperLogLog sketch) {
+        try {
+            mergeAndSave(bucket, key, sketch);
+        } catch (DuplicateKeyException e) {
+            // другой экземпляр успел вставить скетч за этот бакет - повторяем как обновление
+            mergeAndSave(bucket, key, sketch);
+        }
+    }
+
+    private void mergeAndSave(TimeBucket bucket, SketchKey key, HyperLogLog sketch) {
+        transactionTemplate.executeWithoutResult(status -> hitSketchRepository.findForUpdate(bucket, key)
+                .ifPresentOrElse(
+                        registers -> hitSketchRepository.update(bucket, key,
+                                HyperLogLog.fromBytes(registers).merge(sketch).toBytes()),
+                        () -> hitSketchRepository.insert(bucket, key, sketch.toBytes())));
+    }
+
+    // скетч в pending может дописываться параллельно, копируем под блокировкой ключа
+    private HyperLogLog copyOf(Map<SketchKey, HyperLogLog> bucketPending, SketchKey key, HyperLogLog sketch) {
+        HyperLogLog[] copy = new HyperLogLog[1];
+        bucketPending.computeIfPresent(key, (k, current) -> {
+            copy[0] = current.copy();
+            return current;
+        });
+        return copy[0] != null ? copy[0] : sketch.copy();
+    }
+
+    private void mergeInto(Map<AppUri, HyperLogLog> merged, SketchKey key, HyperLogLog sketch) {
+        merged.merge(new AppUri(key.app(), key.uri()), sketch, HyperLogLog::merge);
+    }
+
+    private void addVisitors(Map<AppUri, HyperLogLog> merged, List<HitVisitor> visitors) {
+        for (HitVisitor visitor : visitors) {
+            merged.computeIfAbsent(new AppUri(visitor.app(), visitor.uri()), appUri -> new HyperLogLog())
+                    .add(visitor.ip());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Суммирует частичные результаты по (app, uri) и отдаёт их в порядке убывания hits, как /stats.
+ */
+public class ViewStatsAccumulator {
+
+    private final Map<AppUri, Long> hits = new HashMap<>();
+
+    public ViewStatsAccumulator add(List<ViewStatsDto> stats) {
+        stats.forEach(stat -> add(stat.getApp(), stat.getUri(), stat.getHits()));
+        return this;
+    }
+
+    public ViewStatsAccumulator add(String app, String uri, long count) {
+        hits.merge(new AppUri(app, uri), count, Long::sum);
+        return this;
+    }
+
+    public List<ViewStatsDto> toList() {
+        return hits.entrySet().stream()
+                .sorted(Map.Entry.<AppUri, Long>comparingByValue(Comparator.reverseOrder()))
+                .map(entry -> new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+}
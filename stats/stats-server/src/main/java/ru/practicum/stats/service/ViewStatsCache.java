@@ -0,0 +1,202 @@
+package ru.practicum.stats.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов /stats. Для неуникальных запросов кэшируется только внутренняя часть периода,
+ * выровненная внутрь до alignment, поэтому почти одинаковые запросы (end = now + 1 мин) попадают
+ * в одну запись; неполные куски по краям каждый раз читаются точно и прибавляются к ней.
+ * Уникальные по частям не складываются, их ключ - точный период.
+ * Новые хиты увеличивают неуникальные записи, покрывающие их uri и время, а уникальные - удаляют.
+ * <p>
+ * Загрузки и коммиты хитов помечаются общими штампами. Хит, закоммиченный до начала загрузки, в записи
+ * уже есть и не прибавляется; закоммиченный после её конца - прибавляется; если коммит пересёкся
+ * с загрузкой, неизвестно, увидела ли она хит, и запись удаляется, чтобы её перечитали.
+ */
+@Service
+public class ViewStatsCache {
+
+    @Value("${stats-server.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stats-server.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${stats-server.cache.ttl:30s}")
+    private Duration ttl;
+
+    @Value("${stats-server.cache.alignment:1m}")
+    private Duration alignment;
+
+    private Cache<Key, Entry> cache;
+
+    // общие штампы загрузок и коммитов: по ним видно, что произошло раньше
+    private final AtomicLong clock = new AtomicLong();
+
+    // индекс для обновления по хиту; пустой список uri означает "все uri"
+    private final Map<String, Set<Key>> keysByUri = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface ViewStatsLoader {
+        List<ViewStatsDto> load(List<String> uris, LocalDateTime from, LocalDateTime to);
+    }
+
+    private record Key(List<String> uris, boolean unique, boolean approximate,
+                       LocalDateTime from, LocalDateTime to) {
+
+        private boolean covers(LocalDateTime timestamp) {
+            return !timestamp.isBefore(from) && timestamp.isBefore(to);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                // evictionListener вызывается атомарно с удалением, поэтому индекс не разойдётся с кэшем
+                .<Key, Entry>evictionListener((key, entry, cause) -> unindex(key))
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<ViewStatsDto> get(List<String> uris, LocalDateTime from, LocalDateTime to,
+                                  boolean unique, boolean approximate, ViewStatsLoader loader) {
+        if (!enabled) {
+            return loader.load(uris, from, to);
+        }
+        List<String> normalized = uris == null ? List.of() : uris.stream().distinct().sorted().toList();
+        if (unique) {
+            return cached(new Key(normalized, true, approximate, from, to), loader);
+        }
+        LocalDateTime innerFrom = TimeRanges.alignUp(from, alignment);
+        LocalDateTime innerTo = TimeRanges.alignDown(to, alignment);
+        if (!innerFrom.isBefore(innerTo)) {
+            return loader.load(normalized, from, to);
+        }
+        ViewStatsAccumulator accumulator = new ViewStatsAccumulator()
+                .add(cached(new Key(normalized, false, approximate, innerFrom, innerTo), loader));
+        if (from.isBefore(innerFrom)) {
+            accumulator.add(loader.load(normalized, from, innerFrom));
+        }
+        if (innerTo.isBefore(to)) {
+            accumulator.add(loader.load(normalized, innerTo, to));
+        }
+        return accumulator.toList();
+    }
+
+    private List<ViewStatsDto> cached(Key key, ViewStatsLoader loader) {
+        return cache.get(key, k -> {
+            // индексируем до начала загрузки: хит, который ключ не нашёл, закоммичен раньше и в загрузку попадёт
+            index(k);
+            long loadStarted = clock.incrementAndGet();
+            List<ViewStatsDto> stats = loader.load(k.uris(), k.from(), k.to());
+            return new Entry(stats, loadStarted, clock.incrementAndGet());
+        }).toList();
+    }
+
+    /**
+     * Штамп начала коммита транзакции с хитами; передаётся в {@link #record} после коммита.
+     */
+    public long beforeCommit() {
+        return clock.incrementAndGet();
+    }
+
+    public void record(List<EndpointHitEntity> hits, long commitStarted) {
+        if (!enabled) {
+            return;
+        }
+        long committed = clock.incrementAndGet();
+        for (EndpointHitEntity hit : hits) {
+            apply(keysByUri.get(hit.getUri()), hit, commitStarted, committed);
+            apply(keysByUri.get(""), hit, commitStarted, committed);
+        }
+    }
+
+    private void apply(Set<Key> keys, EndpointHitEntity hit, long commitStarted, long committed) {
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            if (!key.covers(hit.getTimestamp())) {
+                continue;
+            }
+            // compute ждёт идущую загрузку этого ключа, поэтому хит не проскочит мимо неё
+            cache.asMap().compute(key, (k, entry) -> {
+                if (entry == null || entry.loadStarted > committed) {
+                    return entry;
+                }
+                if (!k.unique() && entry.loadFinished < commitStarted) {
+                    entry.add(hit.getApp(), hit.getUri(), hit.getCount());
+                    return entry;
+                }
+                unindex(k);
+                return null;
+            });
+        }
+    }
+
+    private void index(Key key) {
+        if (key.uris().isEmpty()) {
+            keysByUri.computeIfAbsent("", k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        for (String uri : key.uris()) {
+            keysByUri.computeIfAbsent(uri, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unindex(Key key) {
+        List<String> uris = key.uris().isEmpty() ? List.of("") : key.uris();
+        for (String uri : uris) {
+            keysByUri.computeIfPresent(uri, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static final class Entry {
+        private final Map<AppUri, LongAdder> hits = new ConcurrentHashMap<>();
+        private final long loadStarted;
+        private final long loadFinished;
+
+        private Entry(List<ViewStatsDto> stats, long loadStarted, long loadFinished) {
+            this.loadStarted = loadStarted;
+            this.loadFinished = loadFinished;
+            stats.forEach(stat -> counter(stat.getApp(), stat.getUri()).add(stat.getHits()));
+        }
+
+        private void add(String app, String uri, int count) {
+            counter(app, uri).add(count);
+        }
+
+        private LongAdder counter(String app, String uri) {
+            return hits.computeIfAbsent(new AppUri(app, uri), key -> new LongAdder());
+        }
+
+        private List<ViewStatsDto> toList() {
+            ViewStatsAccumulator accumulator = new ViewStatsAccumulator();
+            hits.forEach((appUri, count) -> accumulator.add(appUri.app(), appUri.uri(), count.sum()));
+            return accumulator.toList();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.stats.service;
+
+import ru.practicum.stats.UriSeriesDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.ViewStatsSeriesDto;
+import ru.practicum.stats.model.AppUri;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.TimeBucket;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Раскладывает счётчики по массивам бакетов: по одному long[] на (app, uri).
+ */
+class ViewStatsSeries {
+
+    private final TimeBucket granularity;
+    private final LocalDateTime start;
+    private final int buckets;
+    private final Map<AppUri, long[]> series = new HashMap<>();
+
+    ViewStatsSeries(TimeBucket granularity, LocalDateTime start, int buckets) {
+        this.granularity = granularity;
+        this.start = start;
+        this.buckets = buckets;
+    }
+
+    void add(HitRollup rollup) {
+        add(rollup.bucketStart(), rollup.app(), rollup.uri(), rollup.hits());
+    }
+
+    void add(LocalDateTime bucketStart, List<ViewStatsDto> stats) {
+        stats.forEach(stat -> add(bucketStart, stat.getApp(), stat.getUri(), stat.getHits()));
+    }
+
+    private void add(LocalDateTime bucketStart, String app, String uri, long hits) {
+        int index = (int) granularity.between(start, bucketStart);
+        series.computeIfAbsent(new AppUri(app, uri), key -> new long[buckets])[index] += hits;
+    }
+
+    ViewStatsSeriesDto toDto() {
+        List<UriSeriesDto> list = series.entrySet().stream()
+                .map(entry -> new UriSeriesDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparingLong((UriSeriesDto dto) -> Arrays.stream(dto.getHits()).sum()).reversed())
+                .toList();
+        return new ViewStatsSeriesDto(granularity.name(), start, buckets, list);
+    }
+}
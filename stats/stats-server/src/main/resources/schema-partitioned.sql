@@ -0,0 +1,25 @@
+-- Только PostgreSQL. Выполняется перед schema.sql и создаёт endpoint_hits как секционированную
+-- по hit_timestamp таблицу, если её ещё нет; тогда CREATE TABLE IF NOT EXISTS из schema.sql её не трогает.
+-- Существующая обычная endpoint_hits не пересоздаётся (это стёрло бы хиты): её переносят вручную,
+-- иначе сервис не стартует. Секции создаёт HitPartitionService.
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_id_seq;
+
+CREATE TABLE IF NOT EXISTS endpoint_hits
+(
+    id            BIGINT                      NOT NULL DEFAULT nextval('endpoint_hits_id_seq'),
+    app           VARCHAR(255)                NOT NULL,
+    uri           VARCHAR(512)                NOT NULL,
+    ip            VARCHAR(45)                 NOT NULL,
+    hit_timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    resource_id   BIGINT,
+    hit_count     INTEGER                     NOT NULL DEFAULT 1
+) PARTITION BY RANGE (hit_timestamp);
+
+-- хиты вне созданных секций (старый импорт, сбитые часы клиента)
+CREATE TABLE IF NOT EXISTS endpoint_hits_default PARTITION OF endpoint_hits DEFAULT;
+
+-- покрывающий индекс для /stats: uri IN (...) AND hit_timestamp в диапазоне, GROUP BY app, uri, SUM(hit_count)
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_uri_timestamp ON endpoint_hits (uri, hit_timestamp, app, ip, hit_count);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_resource_timestamp ON endpoint_hits (resource_id, hit_timestamp, app, ip, hit_count);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_timestamp ON endpoint_hits (hit_timestamp);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_id ON endpoint_hits (id);
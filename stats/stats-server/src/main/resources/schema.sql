@@ -1,15 +1,98 @@
-DROP TABLE IF EXISTS endpoint_hits CASCADE;
-
+-- Выполняется при каждом старте (spring.sql.init.mode: always), поэтому только создаёт недостающее
+-- и никогда не удаляет таблицы: данные импорта и прошлых запусков переживают перезапуск.
 CREATE TABLE IF NOT EXISTS endpoint_hits
 (
     id            BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     app           VARCHAR(255)                            NOT NULL,
     uri           VARCHAR(512)                            NOT NULL,
     ip            VARCHAR(45)                             NOT NULL,
-    hit_timestamp TIMESTAMP WITHOUT TIME ZONE             NOT NULL
+    hit_timestamp TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    -- id ресурса из uri по stats-server.resource-id.uri-template, NULL для прочих uri
+    resource_id   BIGINT,
+    -- кратность предагрегированного клиентом хита
+    hit_count     INTEGER                                 NOT NULL DEFAULT 1
 );
 
-CREATE INDEX IF NOT EXISTS idx_endpoint_hits_ip ON endpoint_hits (ip);
+-- покрывающий индекс для /stats: uri IN (...) AND hit_timestamp в диапазоне, GROUP BY app, uri, SUM(hit_count)
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_uri_timestamp ON endpoint_hits (uri, hit_timestamp, app, ip, hit_count);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_resource_timestamp ON endpoint_hits (resource_id, hit_timestamp, app, ip, hit_count);
 CREATE INDEX IF NOT EXISTS idx_endpoint_hits_timestamp ON endpoint_hits (hit_timestamp);
-CREATE INDEX IF NOT EXISTS idx_endpoint_hits_app ON endpoint_hits (app);
-CREATE INDEX IF NOT EXISTS idx_endpoint_hits_uri ON endpoint_hits(uri);
\ No newline at end of file
+-- порядок выгрузки /stats/export и продолжение с afterId
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_id ON endpoint_hits (id);
+
+-- счётчики хитов по (app, uri) в бакетах MINUTE / HOUR / DAY, ведутся при записи хитов
+CREATE TABLE IF NOT EXISTS endpoint_hit_rollups
+(
+    granularity  VARCHAR(8)                  NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app          VARCHAR(255)                NOT NULL,
+    uri          VARCHAR(512)                NOT NULL,
+    hits         BIGINT                      NOT NULL,
+    CONSTRAINT pk_endpoint_hit_rollups PRIMARY KEY (granularity, uri, bucket_start, app)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_rollups_bucket ON endpoint_hit_rollups (granularity, bucket_start);
+
+-- HyperLogLog-скетчи IP по (app, uri) в бакетах HOUR / DAY для приближённого подсчёта уникальных посетителей
+CREATE TABLE IF NOT EXISTS endpoint_hit_sketches
+(
+    granularity  VARCHAR(8)                  NOT NULL,
+    app          VARCHAR(255)                NOT NULL,
+    uri          VARCHAR(512)                NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    registers    BYTEA                       NOT NULL,
+    CONSTRAINT pk_endpoint_hit_sketches PRIMARY KEY (granularity, uri, bucket_start, app)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_sketches_bucket ON endpoint_hit_sketches (granularity, bucket_start);
+
+-- словарь IP -> плотный номер посетителя для битовых карт
+CREATE TABLE IF NOT EXISTS hit_visitor_ips
+(
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    ip VARCHAR(45) NOT NULL,
+    CONSTRAINT uq_hit_visitor_ips_ip UNIQUE (ip)
+);
+
+-- Roaring-битовые карты номеров посетителей по (app, uri, день) для точного подсчёта уникальных
+CREATE TABLE IF NOT EXISTS endpoint_hit_bitmaps
+(
+    app          VARCHAR(255)                NOT NULL,
+    uri          VARCHAR(512)                NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    visitors     BYTEA                       NOT NULL,
+    CONSTRAINT pk_endpoint_hit_bitmaps PRIMARY KEY (uri, bucket_start, app)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_bitmaps_bucket ON endpoint_hit_bitmaps (bucket_start);
+
+-- компактная схема (stats-server.storage.schema=compact): словари app и uri, ip в бинарном виде
+CREATE TABLE IF NOT EXISTS hit_apps
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT uq_hit_apps_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS hit_uris
+(
+    id  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(512) NOT NULL,
+    CONSTRAINT uq_hit_uris_uri UNIQUE (uri)
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_compact
+(
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app_id        INTEGER                                 NOT NULL,
+    uri_id        BIGINT                                  NOT NULL,
+    ip            BYTEA                                   NOT NULL,
+    hit_timestamp TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    resource_id   BIGINT,
+    hit_count     INTEGER                                 NOT NULL DEFAULT 1
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_compact_uri_timestamp ON endpoint_hits_compact (uri_id, hit_timestamp, app_id, ip, hit_count);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_compact_resource_timestamp ON endpoint_hits_compact (resource_id, hit_timestamp, app_id, ip, hit_count);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_compact_timestamp ON endpoint_hits_compact (hit_timestamp);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_compact_id ON endpoint_hits_compact (id);
@@ -0,0 +1,144 @@
+package ru.practicum.stats.controller;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.exception.QueryOverloadedException;
+import ru.practicum.stats.handler.ErrorHandler;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.QueryClass;
+import ru.practicum.stats.repository.FileHitStore;
+import ru.practicum.stats.repository.ResourceIds;
+import ru.practicum.stats.service.HitIngestor;
+import ru.practicum.stats.service.HitRollupService;
+import ru.practicum.stats.service.HotWindowStats;
+import ru.practicum.stats.service.QueryAdmission;
+import ru.practicum.stats.service.StatsServiceImpl;
+import ru.practicum.stats.service.UniqueVisitorBitmapService;
+import ru.practicum.stats.service.UniqueVisitorSketchService;
+import ru.practicum.stats.service.ViewStatsCache;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StatsControllerExportTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private FileHitStore fileHitStore;
+    private QueryAdmission admission;
+    private QueryAdmission.Permit permit;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileHitStore = new FileHitStore(new ResourceIds("/events/{id}"));
+        ReflectionTestUtils.setField(fileHitStore, "dir", dir);
+        ReflectionTestUtils.setField(fileHitStore, "memtableSize", 1_000);
+        ReflectionTestUtils.setField(fileHitStore, "dataFileSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(fileHitStore, "minBlockSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(fileHitStore, "compactionThreshold", 4);
+        fileHitStore.open();
+        fileHitStore.saveAll(List.of(EndpointHitEntity.builder()
+                .app("ewm")
+                .uri("/events/1")
+                .ip("10.0.0.1")
+                .timestamp(T0)
+                .count(2)
+                .build()));
+
+        StatsServiceImpl service = new StatsServiceImpl(fileHitStore, mock(HitIngestor.class),
+                mock(HitRollupService.class), mock(UniqueVisitorSketchService.class),
+                mock(UniqueVisitorBitmapService.class), mock(HotWindowStats.class), mock(ViewStatsCache.class),
+                new ResourceIds("/events/{id}"));
+        admission = mock(QueryAdmission.class);
+        permit = mock(QueryAdmission.Permit.class);
+        when(admission.begin(any(QueryClass.class))).thenReturn(permit);
+        StatsController controller = new StatsController(service,
+                JsonMapper.builder().addModule(new JavaTimeModule()).build(),
+                Validation.buildDefaultValidatorFactory().getValidator(), admission);
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new ErrorHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        fileHitStore.close();
+    }
+
+    @Test
+    void exportsHitsFromFileEngine() throws Exception {
+        MvcResult started = mvc.perform(get("/stats/export")
+                        .param("start", "2026-04-01T00:00:00")
+                        .param("end", "2026-04-02T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.lines()).singleElement().asString()
+                .contains("\"uri\":\"/events/1\"")
+                .contains("\"count\":2");
+        verify(admission).begin(QueryClass.EXPORT);
+        verify(permit).close();
+    }
+
+    @Test
+    void exportWithoutPermitIsServiceUnavailable() throws Exception {
+        when(admission.begin(QueryClass.EXPORT))
+                .thenThrow(new QueryOverloadedException("Too many export stats queries in progress"));
+
+        MvcResult started = mvc.perform(get("/stats/export")
+                        .param("start", "2026-04-01T00:00:00")
+                        .param("end", "2026-04-02T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.details.exception").value("QueryOverloadedException"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).doesNotContain("/events/1");
+    }
+
+    @Test
+    void afterIdOnFileEngineIsBadRequest() throws Exception {
+        mvc.perform(get("/stats/export")
+                        .param("start", "2026-04-01T00:00:00")
+                        .param("end", "2026-04-02T00:00:00")
+                        .param("afterId", "10"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.exception").value("IncorrectRequestParameterException"));
+
+        verify(admission, never()).begin(any(QueryClass.class));
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.stats.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.handler.ErrorHandler;
+import ru.practicum.stats.service.QueryAdmission;
+import ru.practicum.stats.service.StatsService;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StatsControllerHitStreamTest {
+
+    private static final String VALID = "{\"app\":\"ewm\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\"}\n";
+    private static final String INVALID_IP = "{\"app\":\"ewm\",\"uri\":\"/events/1\",\"ip\":\"not-an-ip\"}\n";
+
+    private StatsService service;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = mock(StatsService.class);
+        when(service.addStats(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        StatsController controller = new StatsController(service, objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(), mock(QueryAdmission.class));
+        ReflectionTestUtils.setField(controller, "batchSize", 2);
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new ErrorHandler())
+                .build();
+    }
+
+    @Test
+    void writesWholeStreamInBatches() throws Exception {
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(VALID + VALID + VALID))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("3"));
+
+        verify(service, times(2)).addStats(anyList());
+    }
+
+    @Test
+    void invalidRecordReportsStoredPrefix() throws Exception {
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(VALID + VALID + VALID + INVALID_IP + VALID))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.accepted").value("3"))
+                .andExpect(jsonPath("$.details.failedRecord").value("4"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EndpointHitDto>> batches = ArgumentCaptor.forClass(List.class);
+        verify(service, times(2)).addStats(batches.capture());
+        assertThat(batches.getAllValues()).extracting(List::size).containsExactly(2, 1);
+    }
+
+    @Test
+    void malformedFirstRecordStoresNothing() throws Exception {
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"app\":\n" + VALID))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.accepted").value("0"))
+                .andExpect(jsonPath("$.details.failedRecord").value("1"));
+
+        verify(service, never()).addStats(anyList());
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.stats.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    // 3 стандартные ошибки 1.6%
+    private static final double TOLERANCE = 0.05;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 10_000, 100_000, 1_000_000})
+    void estimateIsWithinThreeStandardErrors(int cardinality) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < cardinality; i++) {
+            sketch.add(ip(i));
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(cardinality, within(cardinality * TOLERANCE));
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.add(ip(i));
+        }
+
+        assertThat(sketch.estimate()).isBetween(98L, 102L);
+        assertThat(new HyperLogLog().estimate()).isZero();
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 500; i++) {
+                sketch.add(ip(i));
+            }
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(500, within(500 * TOLERANCE));
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            (i % 2 == 0 ? left : right).add(ip(i));
+            union.add(ip(i));
+        }
+        // пересечение: половина правых уже есть в левом
+        for (int i = 0; i < 10_000; i += 2) {
+            right.add(ip(i));
+        }
+
+        assertThat(left.copy().merge(right)).isEqualTo(union);
+        assertThat((double) left.merge(right).estimate()).isCloseTo(20_000, within(20_000 * TOLERANCE));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add(ip(i));
+        }
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertThat(restored).isEqualTo(sketch);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[16])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String ip(int i) {
+        return (10 + (i >>> 24)) + "." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+    }
+}
@@ -0,0 +1,178 @@
+package ru.practicum.stats.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.UriStart;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CompactHitStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    private CompactHitStore store;
+    private JdbcTemplate jdbcTemplate;
+    private HikariDataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // одно соединение в пуле: запись хитов не должна брать второе для словарей
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(1);
+        config.setConnectionTimeout(250);
+        dataSource = new HikariDataSource(config);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        HitDictionary hitDictionary = new HitDictionary(new NamedParameterJdbcTemplate(dataSource),
+                new DatabaseDialect(jdbcTemplate), 1_000);
+        store = new CompactHitStore(new NamedParameterJdbcTemplate(dataSource), hitDictionary,
+                new CursorJdbcTemplate(dataSource, 100), new ResourceIds("/events/{id}"));
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        store.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", T0, 1),
+                hit("/events/1", "10.0.0.1", T0.plusMinutes(1), 3),
+                hit("/events/1", "10.0.0.2", T0.plusMinutes(2), 1),
+                hit("/events/2", "2001:db8::1", T0.plusMinutes(3), 1),
+                // на границах полуинтервала [T0, T0 + 10 мин)
+                hit("/events/2", "10.0.0.3", T0.minusNanos(1000), 1),
+                hit("/events/2", "10.0.0.3", T0.plusMinutes(10), 1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void newDictionaryValuesUseWriteTransactionConnection() {
+        transactionTemplate.executeWithoutResult(status -> store.saveAll(List.of(
+                hit("/events/3", "10.0.0.1", T0, 1),
+                hit("/events/4", "10.0.0.1", T0, 1))));
+
+        assertThat(store.getViewStats(List.of("/events/3", "/events/4"), T0, T0.plusMinutes(10), false))
+                .hasSize(2);
+    }
+
+    @Test
+    void rolledBackDictionaryValuesAreNotCached() {
+        transactionTemplate.executeWithoutResult(status -> {
+            store.saveAll(List.of(hit("/events/5", "10.0.0.1", T0, 1)));
+            status.setRollbackOnly();
+        });
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hit_uris WHERE uri = '/events/5'", Integer.class))
+                .isZero();
+
+        // id из откатанной транзакции не должен всплыть из кеша
+        transactionTemplate.executeWithoutResult(status -> store.saveAll(List.of(hit("/events/5", "10.0.0.1", T0, 2))));
+
+        assertThat(store.getViewStats(List.of("/events/5"), T0, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(2L);
+    }
+
+    @Test
+    void countsHitsWithMultiplicityInHalfOpenRange() {
+        List<ViewStatsDto> stats = store.getViewStats(List.of(), T0, T0.plusMinutes(10), false);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(
+                        tuple("/events/1", 5L),
+                        tuple("/events/2", 1L));
+    }
+
+    @Test
+    void countsUniqueIps() {
+        List<ViewStatsDto> stats = store.getViewStats(List.of("/events/1"), T0, T0.plusMinutes(10), true);
+
+        assertThat(stats).singleElement().satisfies(stat -> {
+            assertThat(stat.getApp()).isEqualTo("ewm");
+            assertThat(stat.getHits()).isEqualTo(2L);
+        });
+    }
+
+    @Test
+    void unknownUriHasNoStats() {
+        assertThat(store.getViewStats(List.of("/events/404"), T0, T0.plusMinutes(10), false)).isEmpty();
+        assertThat(store.findVisitors(List.of("/events/404"), T0, T0.plusMinutes(10))).isEmpty();
+    }
+
+    @Test
+    void storesIpv4AndIpv6AsBytes() {
+        List<HitVisitor> visitors = store.findVisitors(List.of("/events/2"), T0, T0.plusMinutes(10));
+
+        assertThat(visitors).extracting(HitVisitor::ip).containsExactly("2001:db8:0:0:0:0:0:1");
+        Integer length = jdbcTemplate.queryForObject(
+                "SELECT MAX(OCTET_LENGTH(ip)) FROM endpoint_hits_compact", Integer.class);
+        assertThat(length).isEqualTo(16);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hit_uris", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void countsSincePerUriStart() {
+        List<ViewStatsDto> stats = store.getViewStatsSince(List.of(
+                        new UriStart("/events/1", T0.plusMinutes(1)),
+                        new UriStart("/events/2", T0)),
+                T0.plusMinutes(10), false);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(
+                        tuple("/events/1", 4L),
+                        tuple("/events/2", 1L));
+    }
+
+    @Test
+    void countsByResourceId() {
+        Map<Long, Long> counts = store.countByResourceIds(new ResourceIdFilter(List.of(1L, 2L), null, null),
+                T0, T0.plusMinutes(10), false);
+
+        assertThat(counts).containsEntry(1L, 5L).containsEntry(2L, 1L);
+    }
+
+    @Test
+    void exportsHitsInIdOrderFromAfterId() {
+        List<EndpointHitDto> exported = new ArrayList<>();
+        store.exportHits(List.of(), T0, T0.plusMinutes(10), null, exported::add);
+
+        assertThat(exported).extracting(EndpointHitDto::getCount).containsExactly(1, 3, 1, 1);
+
+        List<EndpointHitDto> resumed = new ArrayList<>();
+        store.exportHits(List.of(), T0, T0.plusMinutes(10), exported.get(1).getId(), resumed::add);
+
+        assertThat(resumed).extracting(EndpointHitDto::getId)
+                .containsExactly(exported.get(2).getId(), exported.get(3).getId());
+    }
+
+    private static EndpointHitEntity hit(String uri, String ip, LocalDateTime timestamp, int count) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Регрессия плана /stats на PostgreSQL: запрос по списку uri должен читать только
+ * покрывающий индекс idx_endpoint_hits_uri_timestamp. Без Docker тест пропускается.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class EndpointHitJdbcRepositoryPlanTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16.1");
+
+    private static DriverManagerDataSource dataSource;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // неделя хитов по 50 uri: у каждого uri сотни хитов в сутки, как у живых событий
+        jdbcTemplate.execute("INSERT INTO endpoint_hits (app, uri, ip, hit_timestamp, resource_id, hit_count) "
+                + "SELECT 'ewm', '/events/' || (g % 50), '10.0.' || (g % 250) || '.' || (g % 7), "
+                + "TIMESTAMP '2026-04-01' + g * INTERVAL '3 seconds', g % 50, 1 "
+                + "FROM generate_series(1, 200000) g");
+        // карта видимости нужна, чтобы Index Only Scan не ходил в таблицу; VACUUM ставит её
+        // только для строк, чей коммит уже сброшен в WAL
+        jdbcTemplate.execute("CHECKPOINT");
+        jdbcTemplate.execute("VACUUM ANALYZE endpoint_hits");
+    }
+
+    @ParameterizedTest(name = "unique = {0}")
+    @ValueSource(booleans = {false, true})
+    void statsByUrisReadOnlyCoveringIndex(boolean unique) {
+        CapturingJdbcTemplate captured = new CapturingJdbcTemplate();
+        EndpointHitJdbcRepository repository = new EndpointHitJdbcRepository(captured, new ResourceIds("/events/{id}"));
+        LocalDateTime from = LocalDateTime.of(2026, 4, 2, 0, 0);
+
+        repository.getViewStats(List.of("/events/1", "/events/2", "/events/3"), from, from.plusDays(1), unique);
+        List<String> plan = captured.queryForList("EXPLAIN " + captured.sql, captured.params, String.class);
+
+        assertThat(String.join("\n", plan))
+                .contains("Index Only Scan using idx_endpoint_hits_uri_timestamp")
+                .doesNotContain("Seq Scan");
+    }
+
+    // выполняет запрос как обычно и запоминает его текст и параметры для EXPLAIN
+    private static final class CapturingJdbcTemplate extends NamedParameterJdbcTemplate {
+        private String sql;
+        private SqlParameterSource params;
+
+        private CapturingJdbcTemplate() {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper) {
+            this.sql = sql;
+            this.params = paramSource;
+            return super.query(sql, paramSource, rowMapper);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class FileHitStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private final List<FileHitStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (FileHitStore store : opened) {
+            store.close();
+        }
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void countsHitsWithMultiplicityInHalfOpenRange(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+
+        List<ViewStatsDto> stats = store.getViewStats(List.of(), T0, T0.plusMinutes(10), false);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(
+                        tuple("/events/1", 5L),
+                        tuple("/events/2", 1L));
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void countsUniqueIps(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+
+        List<ViewStatsDto> stats = store.getViewStats(List.of("/events/1"), T0, T0.plusMinutes(10), true);
+
+        assertThat(stats).singleElement().satisfies(stat -> {
+            assertThat(stat.getApp()).isEqualTo("ewm");
+            assertThat(stat.getHits()).isEqualTo(2L);
+        });
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void filtersByUriPrefix(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+        store.saveAll(List.of(hit("/users/1", "10.0.0.1", T0, 1)));
+        List<ViewStatsDto> stats = new ArrayList<>();
+
+        store.forEachViewStat("/events/", T0, T0.plusMinutes(10), false, stats::add);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri).containsExactlyInAnyOrder("/events/1", "/events/2");
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void countsByMinuteBuckets(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+        List<HitRollup> rollups = new ArrayList<>();
+
+        store.forEachBucketedStat(List.of("/events/1"), T0, T0.plusMinutes(10), TimeBucket.MINUTE, false, rollups::add);
+
+        assertThat(rollups).extracting(HitRollup::bucketStart, HitRollup::hits)
+                .containsExactlyInAnyOrder(
+                        tuple(T0, 1L),
+                        tuple(T0.plusMinutes(1), 3L),
+                        tuple(T0.plusMinutes(2), 1L));
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void countsSincePerUriStart(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+
+        List<ViewStatsDto> stats = store.getViewStatsSince(List.of(
+                        new UriStart("/events/1", T0.plusMinutes(1)),
+                        new UriStart("/events/2", T0)),
+                T0.plusMinutes(10), false);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(
+                        tuple("/events/1", 4L),
+                        tuple("/events/2", 1L));
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void countsByResourceId(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+
+        Map<Long, Long> byIds = store.countByResourceIds(new ResourceIdFilter(List.of(1L, 2L), null, null),
+                T0, T0.plusMinutes(10), false);
+        Map<Long, Long> byRange = store.countByResourceIds(new ResourceIdFilter(null, 2L, 5L),
+                T0, T0.plusMinutes(10), true);
+        Map<Long, Long> since = store.countByResourceIdsSince(Map.of(1L, T0.plusMinutes(2)), T0.plusMinutes(10), false);
+
+        assertThat(byIds).containsOnly(Map.entry(1L, 5L), Map.entry(2L, 1L));
+        assertThat(byRange).containsOnly(Map.entry(2L, 1L));
+        assertThat(since).containsOnly(Map.entry(1L, 1L));
+    }
+
+    @ParameterizedTest(name = "flushed = {0}")
+    @ValueSource(booleans = {false, true})
+    void exportsAndFindsVisitors(boolean flushed) throws Exception {
+        FileHitStore store = filled(flushed);
+        List<EndpointHitDto> exported = new ArrayList<>();
+
+        store.exportHits(List.of("/events/1"), T0, T0.plusMinutes(10), null, exported::add);
+        List<HitVisitor> visitors = store.findVisitors(List.of(), T0, T0.plusMinutes(10));
+
+        // предагрегированный хит хранится одной строкой со своей кратностью
+        assertThat(exported).extracting(EndpointHitDto::getTimestamp, EndpointHitDto::getCount)
+                .containsExactlyInAnyOrder(
+                        tuple(T0, 1),
+                        tuple(T0.plusMinutes(1), 3),
+                        tuple(T0.plusMinutes(2), 1));
+        assertThat(visitors).extracting(HitVisitor::uri, HitVisitor::ip)
+                .containsExactlyInAnyOrder(
+                        tuple("/events/1", "10.0.0.1"),
+                        tuple("/events/1", "10.0.0.2"),
+                        tuple("/events/2", "2001:db8::1"));
+    }
+
+    @Test
+    void mergesBlocksAndMemtable() throws Exception {
+        FileHitStore store = filled(true);
+        store.saveAll(List.of(hit("/events/1", "10.0.0.9", T0.plusMinutes(5), 2)));
+
+        List<ViewStatsDto> stats = store.getViewStats(List.of("/events/1"), T0, T0.plusMinutes(10), false);
+
+        assertThat(stats).extracting(ViewStatsDto::getHits).containsExactly(7L);
+    }
+
+    @Test
+    void reopensFlushedBlocks() throws Exception {
+        FileHitStore store = filled(true);
+        store.close();
+        opened.remove(store);
+
+        FileHitStore reopened = open();
+
+        assertThat(reopened.getViewStats(List.of(), T0, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(
+                        tuple("/events/1", 5L),
+                        tuple("/events/2", 1L));
+        assertThat(walFiles()).hasSize(1);
+    }
+
+    @Test
+    void replaysWalAfterTornWrite() throws Exception {
+        FileHitStore crashed = filled(false);
+        opened.remove(crashed);
+        // процесс упал посреди записи: последняя запись журнала оборвана после длины uri
+        Path wal = walFiles().get(0);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(wal, StandardOpenOption.APPEND))) {
+            out.writeShort(9);
+            out.writeBytes("/ev");
+        }
+
+        FileHitStore recovered = open();
+
+        assertThat(recovered.getViewStats(List.of(), T0, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(
+                        tuple("/events/1", 5L),
+                        tuple("/events/2", 1L));
+        assertThat(walFiles()).hasSize(1).doesNotContain(wal);
+
+        // проигранные хиты переживают ещё один перезапуск
+        recovered.flush();
+        recovered.close();
+        opened.remove(recovered);
+        assertThat(open().getViewStats(List.of("/events/1"), T0, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(5L);
+    }
+
+    @Test
+    void replaysWalWrittenBeforeCount() throws Exception {
+        // журнал прошлой версии: без заголовка, запись без кратности
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(dir.resolve("hits-1.wal")))) {
+            for (int i = 0; i < 2; i++) {
+                out.writeUTF("/events/1");
+                out.writeUTF("ewm");
+                out.writeUTF("10.0.0." + i);
+                out.writeLong(T0.toEpochSecond(ZoneOffset.UTC) * 1_000_000L);
+            }
+        }
+
+        FileHitStore store = open();
+        store.saveAll(List.of(hit("/events/1", "10.0.0.5", T0, 4)));
+        store.flush();
+
+        assertThat(store.getViewStats(List.of("/events/1"), T0, T0.plusMinutes(1), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(6L);
+    }
+
+    @Test
+    void truncatesTornIndexGroup() throws Exception {
+        FileHitStore store = filled(true);
+        store.close();
+        opened.remove(store);
+        Path index = dir.resolve("index.dat");
+        long size = Files.size(index);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(index, StandardOpenOption.APPEND))) {
+            out.writeInt(2);
+            out.writeUTF("/events/3");
+        }
+
+        FileHitStore reopened = open();
+
+        assertThat(Files.size(index)).isEqualTo(size);
+        assertThat(reopened.getViewStats(List.of(), T0, T0.plusMinutes(10), false)).hasSize(2);
+    }
+
+    @Test
+    void rollsDataFiles() throws Exception {
+        FileHitStore store = open();
+        ReflectionTestUtils.setField(store, "dataFileSize", DataSize.ofBytes(1));
+        for (int i = 0; i < 3; i++) {
+            store.saveAll(List.of(hit("/events/" + i, "10.0.0.1", T0, 1)));
+            store.flush();
+        }
+
+        assertThat(store.getViewStats(List.of(), T0, T0.plusMinutes(10), false)).hasSize(3);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.filter(path -> path.getFileName().toString().endsWith(".dat"))).hasSize(4);
+        }
+    }
+
+    @Test
+    void compactsSmallBlocksAndKeepsCounts() throws Exception {
+        FileHitStore store = open();
+        for (int i = 0; i < 5; i++) {
+            store.saveAll(List.of(hit("/events/1", "10.0.0." + i, T0.plusMinutes(i), 2)));
+            store.flush();
+        }
+
+        // четыре мелких блока слились на четвёртом сбросе, пятый ждёт следующих
+        assertThat(store.blockCount("/events/1")).isEqualTo(2);
+        assertThat(store.getViewStats(List.of("/events/1"), T0, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(10L);
+        assertThat(store.getViewStats(List.of("/events/1"), T0.plusMinutes(1), T0.plusMinutes(3), true))
+                .extracting(ViewStatsDto::getHits).containsExactly(2L);
+    }
+
+    @Test
+    void compactionSurvivesReopen() throws Exception {
+        FileHitStore store = open();
+        for (int i = 0; i < 4; i++) {
+            store.saveAll(List.of(hit("/events/1", "10.0.0.1", T0.plusMinutes(i), 1)));
+            store.flush();
+        }
+        store.close();
+        opened.remove(store);
+
+        FileHitStore reopened = open();
+
+        assertThat(reopened.blockCount("/events/1")).isEqualTo(1);
+        assertThat(reopened.getViewStats(List.of("/events/1"), T0, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(4L);
+    }
+
+    @Test
+    void blocksLargerThanMinimumAreNotCompacted() throws Exception {
+        FileHitStore store = open();
+        ReflectionTestUtils.setField(store, "minBlockSize", DataSize.ofBytes(1));
+        for (int i = 0; i < 4; i++) {
+            store.saveAll(List.of(hit("/events/1", "10.0.0.1", T0.plusMinutes(i), 1)));
+            store.flush();
+        }
+
+        assertThat(store.blockCount("/events/1")).isEqualTo(4);
+    }
+
+    @Test
+    void findsBlocksOverlappingPeriodOutOfTimeOrder() throws Exception {
+        FileHitStore store = open();
+        ReflectionTestUtils.setField(store, "compactionThreshold", Integer.MAX_VALUE);
+        // длинный блок начинается раньше коротких и перекрывает их все
+        store.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", T0, 1),
+                hit("/events/1", "10.0.0.1", T0.plusHours(10), 1)));
+        store.flush();
+        for (int i = 1; i <= 5; i++) {
+            store.saveAll(List.of(hit("/events/1", "10.0.0.2", T0.plusHours(i), 1)));
+            store.flush();
+        }
+
+        assertThat(store.blockCount("/events/1")).isEqualTo(6);
+        assertThat(store.getViewStats(List.of("/events/1"), T0.plusHours(6), T0.plusHours(11), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(1L);
+        assertThat(store.getViewStats(List.of("/events/1"), T0.plusHours(2), T0.plusHours(4), false))
+                .extracting(ViewStatsDto::getHits).containsExactly(2L);
+        assertThat(store.getViewStats(List.of("/events/1"), T0.plusHours(11), T0.plusHours(12), false)).isEmpty();
+    }
+
+    private FileHitStore filled(boolean flushed) throws Exception {
+        FileHitStore store = open();
+        store.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", T0, 1),
+                hit("/events/1", "10.0.0.1", T0.plusMinutes(1), 3),
+                hit("/events/1", "10.0.0.2", T0.plusMinutes(2), 1),
+                hit("/events/2", "2001:db8::1", T0.plusMinutes(3), 1),
+                // на границах полуинтервала [T0, T0 + 10 мин)
+                hit("/events/2", "10.0.0.3", T0.minusNanos(1000), 1),
+                hit("/events/2", "10.0.0.3", T0.plusMinutes(10), 1)));
+        if (flushed) {
+            store.flush();
+        }
+        return store;
+    }
+
+    private FileHitStore open() throws Exception {
+        FileHitStore store = new FileHitStore(new ResourceIds("/events/{id}"));
+        ReflectionTestUtils.setField(store, "dir", dir);
+        ReflectionTestUtils.setField(store, "memtableSize", 100_000);
+        ReflectionTestUtils.setField(store, "dataFileSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(store, "minBlockSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(store, "compactionThreshold", 4);
+        store.open();
+        opened.add(store);
+        return store;
+    }
+
+    private List<Path> walFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static EndpointHitEntity hit(String uri, String ip, LocalDateTime timestamp, int count) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitBulkLoaderTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private HitStore hitStore;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        hitStore = spy(new JdbcHitStore(new EndpointHitJdbcRepository(new NamedParameterJdbcTemplate(dataSource),
+                new ResourceIds("/events/{id}")), new CursorJdbcTemplate(dataSource, 100)));
+    }
+
+    @Test
+    void fallsBackToBatchInsertOnH2() {
+        HitBulkLoader loader = loader(new DatabaseDialect(jdbcTemplate), "jdbc", "text");
+
+        loader.load(List.of(
+                hit("/events/1", 1),
+                hit("/events/\"quoted\",1", 4)));
+
+        assertThat(loader.usesCopy()).isFalse();
+        verify(hitStore).saveAll(anyList());
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(hit_count) FROM endpoint_hits", Long.class)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT resource_id FROM endpoint_hits WHERE uri = '/events/1'", Long.class))
+                .isEqualTo(1L);
+    }
+
+    @Test
+    void usesCopyOnlyForTextSchemaOnPostgres() {
+        DatabaseDialect postgres = mock(DatabaseDialect.class);
+        when(postgres.isPostgres()).thenReturn(true);
+
+        assertThat(loader(postgres, "jdbc", "text").usesCopy()).isTrue();
+        assertThat(loader(postgres, "jdbc", "compact").usesCopy()).isFalse();
+        assertThat(loader(postgres, "file", "text").usesCopy()).isFalse();
+    }
+
+    @Test
+    void emptyBatchIsNotWritten() {
+        loader(new DatabaseDialect(jdbcTemplate), "jdbc", "text").load(List.of());
+
+        verify(hitStore, never()).saveAll(anyList());
+    }
+
+    private HitBulkLoader loader(DatabaseDialect dialect, String engine, String schema) {
+        HitBulkLoader loader = new HitBulkLoader(dataSource, dialect, hitStore, new ResourceIds("/events/{id}"));
+        ReflectionTestUtils.setField(loader, "engine", engine);
+        ReflectionTestUtils.setField(loader, "schema", schema);
+        return loader;
+    }
+
+    private static EndpointHitEntity hit(String uri, int count) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(T0)
+                .count(count)
+                .build();
+    }
+}
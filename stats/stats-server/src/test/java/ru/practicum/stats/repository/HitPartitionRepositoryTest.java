@@ -0,0 +1,140 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.stats.model.PartitionInterval;
+import ru.practicum.stats.service.HitPartitionService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Секции endpoint_hits на настоящем PostgreSQL: создание вперёд, раскладка хитов и retention.
+ * Без Docker тест пропускается.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class HitPartitionRepositoryTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16.1");
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private JdbcTemplate jdbcTemplate;
+    private HitPartitionRepository repository;
+    private HitPartitionService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-partitioned.sql"),
+                new ClassPathResource("schema.sql")).execute(dataSource);
+
+        repository = new HitPartitionRepository(jdbcTemplate);
+        service = new HitPartitionService(repository, new DatabaseDialect(jdbcTemplate));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "interval", PartitionInterval.DAY);
+        ReflectionTestUtils.setField(service, "precreate", 2);
+        ReflectionTestUtils.setField(service, "retention", Duration.ofDays(3));
+        ReflectionTestUtils.setField(service, "retentionAction", HitPartitionService.RetentionAction.DROP);
+    }
+
+    @Test
+    void createsPartitionsAheadAndRoutesHits() {
+        service.onApplicationReady();
+
+        assertThat(repository.findPartitionNames()).contains(
+                partition(TODAY), partition(TODAY.plusDays(1)), partition(TODAY.plusDays(2)));
+        insertHit(TODAY.plusDays(1).atTime(12, 0));
+        insertHit(TODAY.plusDays(30).atTime(12, 0));
+
+        assertThat(count(partition(TODAY.plusDays(1)))).isEqualTo(1);
+        // за пределами созданных секций хит попадает в default, а не теряется
+        assertThat(count("endpoint_hits_default")).isEqualTo(1);
+    }
+
+    @Test
+    void rerunningSchemaKeepsPartitionedHits() {
+        service.onApplicationReady();
+        insertHit(TODAY.atTime(12, 0));
+
+        // следующий старт с spring.sql.init.mode: always
+        new ResourceDatabasePopulator(new ClassPathResource("schema-partitioned.sql"),
+                new ClassPathResource("schema.sql")).execute(jdbcTemplate.getDataSource());
+
+        assertThat(repository.isPartitioned()).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void retentionDropsExpiredPartitions() {
+        LocalDate old = TODAY.minusDays(10);
+        repository.createPartition(partition(old), old, old.plusDays(1));
+        insertHit(old.atTime(12, 0));
+
+        service.maintain();
+
+        assertThat(repository.findPartitionNames()).doesNotContain(partition(old));
+        assertThat(tableExists(partition(old))).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class)).isZero();
+    }
+
+    @Test
+    void retentionDetachKeepsTableForArchive() {
+        ReflectionTestUtils.setField(service, "retentionAction", HitPartitionService.RetentionAction.DETACH);
+        LocalDate old = TODAY.minusDays(10);
+        repository.createPartition(partition(old), old, old.plusDays(1));
+        insertHit(old.atTime(12, 0));
+
+        service.maintain();
+
+        assertThat(repository.findPartitionNames()).doesNotContain(partition(old));
+        assertThat(count(partition(old))).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class)).isZero();
+    }
+
+    @Test
+    void startupFailsOnPlainTable() {
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .execute(jdbcTemplate.getDataSource());
+
+        assertThat(repository.isPartitioned()).isFalse();
+        assertThatThrownBy(service::onApplicationReady).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void insertHit(LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO endpoint_hits (app, uri, ip, hit_timestamp) VALUES (?, ?, ?, ?)",
+                "ewm", "/events/1", "10.0.0.1", timestamp);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private static String partition(LocalDate day) {
+        return "endpoint_hits_p" + PartitionInterval.DAY.suffix(day);
+    }
+}
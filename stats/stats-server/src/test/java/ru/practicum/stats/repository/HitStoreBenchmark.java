@@ -0,0 +1,145 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Запись и запросы /stats на движках text, compact (H2 в файле) и file на одинаковых данных.
+ * H2 - не PostgreSQL: цифры показывают соотношение движков, а не время на боевой БД.
+ * Запуск: mvn -pl stats/stats-server -am test -Dtest=HitStoreBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class HitStoreBenchmark {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 0, 0);
+    private static final int HITS = 200_000;
+    private static final int URIS = 1_000;
+    private static final int BATCH = 1_000;
+    private static final int QUERY_ROUNDS = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compareEngines() throws Exception {
+        List<EndpointHitEntity> hits = hits();
+        ResourceIds resourceIds = new ResourceIds("/events/{id}");
+
+        SingleConnectionDataSource text = h2(dir.resolve("text"));
+        run("text", hits, new JdbcHitStore(new EndpointHitJdbcRepository(new NamedParameterJdbcTemplate(text), resourceIds),
+                new CursorJdbcTemplate(text, 1_000)), () -> h2Size(text, dir.resolve("text")));
+
+        SingleConnectionDataSource compact = h2(dir.resolve("compact"));
+        JdbcTemplate compactJdbc = new JdbcTemplate(compact);
+        HitDictionary hitDictionary = new HitDictionary(new NamedParameterJdbcTemplate(compact),
+                new DatabaseDialect(compactJdbc), 1_000_000);
+        run("compact", hits, new CompactHitStore(new NamedParameterJdbcTemplate(compact), hitDictionary,
+                new CursorJdbcTemplate(compact, 1_000), resourceIds), () -> h2Size(compact, dir.resolve("compact")));
+
+        FileHitStore file = new FileHitStore(resourceIds);
+        ReflectionTestUtils.setField(file, "dir", dir.resolve("file"));
+        ReflectionTestUtils.setField(file, "memtableSize", 50_000);
+        ReflectionTestUtils.setField(file, "dataFileSize", DataSize.ofGigabytes(1));
+        file.open();
+        run("file", hits, file, () -> {
+            file.flush();
+            return directorySize(dir.resolve("file"));
+        });
+        file.close();
+    }
+
+    private static void run(String engine, List<EndpointHitEntity> hits, HitStore store, Supplier<Long> size) {
+        long start = System.nanoTime();
+        for (int from = 0; from < hits.size(); from += BATCH) {
+            store.saveAll(hits.subList(from, Math.min(from + BATCH, hits.size())));
+        }
+        double insertMillis = (System.nanoTime() - start) / 1e6;
+        long bytes = size.get();
+
+        List<String> tenUris = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tenUris.add("/events/" + (i * 37));
+        }
+        LocalDateTime to = T0.plusDays(7);
+        double all = queryMillis(() -> store.getViewStats(List.of(), T0, to, false));
+        double allUnique = queryMillis(() -> store.getViewStats(List.of(), T0, to, true));
+        double ten = queryMillis(() -> store.getViewStats(tenUris, T0, to, false));
+        double tenDay = queryMillis(() -> store.getViewStats(tenUris, T0.plusDays(3), T0.plusDays(4), false));
+        System.out.printf("%-7s insert %d hits %.0f ms (%.0f hits/s), size %.1f MB%n", engine, hits.size(),
+                insertMillis, hits.size() / insertMillis * 1_000, bytes / 1024.0 / 1024.0);
+        System.out.printf("%-7s /stats all uris %.1f ms, all uris unique %.1f ms, 10 uris %.1f ms, 10 uris 1 day %.1f ms%n",
+                engine, all, allUnique, ten, tenDay);
+    }
+
+    private static double queryMillis(Runnable query) {
+        query.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERY_ROUNDS; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / QUERY_ROUNDS;
+    }
+
+    private static List<EndpointHitEntity> hits() {
+        Random random = new Random(7);
+        List<EndpointHitEntity> hits = new ArrayList<>(HITS);
+        long step = 7L * 24 * 3600 * 1_000_000 / HITS;
+        for (int i = 0; i < HITS; i++) {
+            // перекос как у живых событий: малая доля uri собирает большую часть просмотров
+            int uri = (int) Math.min(URIS - 1, Math.abs(random.nextGaussian()) * URIS / 4);
+            hits.add(EndpointHitEntity.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + uri)
+                    .ip("10.0." + random.nextInt(64) + "." + random.nextInt(256))
+                    .timestamp(T0.plusNanos(i * step * 1_000))
+                    .build());
+        }
+        return hits;
+    }
+
+    // без OPTIMIZE_REUSE_RESULTS H2 отдаёт повторный запрос из кэша результатов
+    private static SingleConnectionDataSource h2(Path path) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:file:" + path.toAbsolutePath() + "/db;OPTIMIZE_REUSE_RESULTS=FALSE", "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        return dataSource;
+    }
+
+    private static long h2Size(SingleConnectionDataSource dataSource, Path path) {
+        new JdbcTemplate(dataSource).execute("CHECKPOINT SYNC");
+        return directorySize(path);
+    }
+
+    private static long directorySize(Path path) {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class JdbcHitStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    private DriverManagerDataSource dataSource;
+    private JdbcHitStore store;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        store = new JdbcHitStore(new EndpointHitJdbcRepository(new NamedParameterJdbcTemplate(dataSource),
+                new ResourceIds("/events/{id}")), new CursorJdbcTemplate(dataSource, 100));
+    }
+
+    @Test
+    void prefixMatchesOnlyUrisStartingWithIt() {
+        store.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", T0),
+                hit("/events/1", "10.0.0.2", T0),
+                hit("/events/2", "10.0.0.1", T0),
+                hit("/compilations/1", "10.0.0.1", T0),
+                // вне периода
+                hit("/events/3", "10.0.0.1", T0.plusHours(1))));
+
+        assertThat(viewStats("/events/", false)).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(tuple("/events/1", 2L), tuple("/events/2", 1L));
+        assertThat(viewStats(null, true)).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(tuple("/events/1", 2L), tuple("/events/2", 1L), tuple("/compilations/1", 1L));
+    }
+
+    @Test
+    void prefixWildcardsAreMatchedLiterally() {
+        store.saveAll(List.of(
+                hit("/a_b/1", "10.0.0.1", T0),
+                hit("/axb/1", "10.0.0.1", T0),
+                hit("/100%/1", "10.0.0.1", T0),
+                hit("/1000/1", "10.0.0.1", T0),
+                hit("/c\\d/1", "10.0.0.1", T0),
+                hit("/cd/1", "10.0.0.1", T0)));
+
+        assertThat(viewStats("/a_b", false)).extracting(ViewStatsDto::getUri).containsExactly("/a_b/1");
+        assertThat(viewStats("/100%", false)).extracting(ViewStatsDto::getUri).containsExactly("/100%/1");
+        assertThat(viewStats("/c\\d", false)).extracting(ViewStatsDto::getUri).containsExactly("/c\\d/1");
+    }
+
+    @Test
+    void bucketsHitsByHalfOpenIntervals() {
+        store.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", T0.minusNanos(1000)),
+                hit("/events/1", "10.0.0.1", T0),
+                hit("/events/1", "10.0.0.2", T0.plusMinutes(59).plusSeconds(59)),
+                hit("/events/1", "10.0.0.1", T0.plusHours(1)),
+                // конец периода не входит
+                hit("/events/1", "10.0.0.1", T0.plusHours(2))));
+
+        List<HitRollup> rollups = new ArrayList<>();
+        store.forEachBucketedStat(List.of("/events/1"), T0, T0.plusHours(2), TimeBucket.HOUR, false, rollups::add);
+        List<HitRollup> unique = new ArrayList<>();
+        store.forEachBucketedStat(List.of(), T0, T0.plusHours(2), TimeBucket.HOUR, true, unique::add);
+
+        assertThat(rollups).extracting(HitRollup::bucketStart, HitRollup::hits)
+                .containsExactlyInAnyOrder(tuple(T0, 2L), tuple(T0.plusHours(1), 1L));
+        assertThat(unique).extracting(HitRollup::bucketStart, HitRollup::hits)
+                .containsExactlyInAnyOrder(tuple(T0, 2L), tuple(T0.plusHours(1), 1L));
+    }
+
+    @Test
+    void countsSincePerUriStart() {
+        store.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", T0),
+                hit("/events/1", "10.0.0.2", T0.plusMinutes(5)),
+                hit("/events/2", "10.0.0.1", T0),
+                hit("/events/2", "10.0.0.1", T0.plusMinutes(1)),
+                // конец периода не входит
+                hit("/events/2", "10.0.0.3", T0.plusMinutes(10))));
+
+        List<UriStart> starts = List.of(new UriStart("/events/1", T0.plusMinutes(5)), new UriStart("/events/2", T0));
+
+        assertThat(store.getViewStatsSince(starts, T0.plusMinutes(10), false))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(tuple("/events/1", 1L), tuple("/events/2", 2L));
+        assertThat(store.getViewStatsSince(starts, T0.plusMinutes(10), true))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(tuple("/events/1", 1L), tuple("/events/2", 1L));
+    }
+
+    @Test
+    void rerunningSchemaKeepsHits() {
+        store.saveAll(List.of(hit("/events/1", "10.0.0.1", T0)));
+
+        // следующий старт с spring.sql.init.mode: always, например после импорта истории
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        assertThat(viewStats(null, false)).extracting(ViewStatsDto::getHits).containsExactly(1L);
+    }
+
+    private List<ViewStatsDto> viewStats(String prefix, boolean unique) {
+        List<ViewStatsDto> stats = new ArrayList<>();
+        store.forEachViewStat(prefix, T0, T0.plusMinutes(10), unique, stats::add);
+        return stats;
+    }
+
+    private static EndpointHitEntity hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
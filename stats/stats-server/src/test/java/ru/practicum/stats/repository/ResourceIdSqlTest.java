@@ -0,0 +1,92 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.ResourceIdFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class ResourceIdSqlTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+    private static final LocalDateTime T1 = T0.plusMinutes(10);
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        new EndpointHitJdbcRepository(jdbcTemplate, new ResourceIds("/events/{id}")).saveAll(List.of(
+                hit("ewm", "/events/1", "10.0.0.1", T0),
+                hit("ewm", "/events/1", "10.0.0.1", T0.plusMinutes(1)),
+                hit("admin", "/events/1", "10.0.0.1", T0.plusMinutes(2)),
+                hit("ewm", "/events/2", "10.0.0.2", T0.plusMinutes(3)),
+                hit("ewm", "/events/5", "10.0.0.3", T0.plusMinutes(4)),
+                // uri вне шаблона и хит вне периода
+                hit("ewm", "/events/5/comments", "10.0.0.3", T0),
+                hit("ewm", "/events/2", "10.0.0.2", T1)));
+    }
+
+    @Test
+    void countsIdSet() {
+        assertThat(count(new ResourceIdFilter(List.of(1L, 5L, 9L), null, null), false))
+                .containsOnly(entry(1L, 3L), entry(5L, 1L));
+    }
+
+    @Test
+    void countsIdRangeInclusive() {
+        assertThat(count(new ResourceIdFilter(null, 2L, 5L), false))
+                .containsOnly(entry(2L, 1L), entry(5L, 1L));
+        assertThat(count(new ResourceIdFilter(null, 1L, 1L), false))
+                .containsOnly(entry(1L, 3L));
+    }
+
+    @Test
+    void intersectsIdSetWithRange() {
+        assertThat(count(new ResourceIdFilter(List.of(1L, 2L, 5L), 2L, null), false))
+                .containsOnly(entry(2L, 1L), entry(5L, 1L));
+    }
+
+    @Test
+    void sumsUniqueVisitorsOfEachApp() {
+        // один ip в двух app считается дважды, как и в запросах по uri
+        assertThat(count(new ResourceIdFilter(List.of(1L), null, null), true))
+                .containsOnly(entry(1L, 2L));
+    }
+
+    @Test
+    void countsSincePerIdStart() {
+        Map<Long, Long> counts = ResourceIdSql.countSince(jdbcTemplate, "endpoint_hits", "app",
+                Map.of(1L, T0.plusMinutes(1), 2L, T0), T1, false);
+
+        assertThat(counts).containsOnly(entry(1L, 2L), entry(2L, 1L));
+        assertThat(ResourceIdSql.countSince(jdbcTemplate, "endpoint_hits", "app", Map.of(), T1, false)).isEmpty();
+    }
+
+    private Map<Long, Long> count(ResourceIdFilter filter, boolean unique) {
+        return ResourceIdSql.count(jdbcTemplate, "endpoint_hits", "app", filter, T0, T1, unique);
+    }
+
+    private static EndpointHitEntity hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitEntity.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResourceIdsTest {
+
+    @Test
+    void extractsCanonicalIdsMatchingTemplate() {
+        ResourceIds resourceIds = new ResourceIds("/events/{id}");
+
+        assertThat(resourceIds.extract("/events/7")).isEqualTo(7L);
+        assertThat(resourceIds.extract("/events/0")).isZero();
+        assertThat(resourceIds.extract("/events/999999999999999999")).isEqualTo(999_999_999_999_999_999L);
+        // ведущие нули, не цифры, знак, лишний хвост и чужой префикс
+        assertThat(resourceIds.extract("/events/007")).isNull();
+        assertThat(resourceIds.extract("/events/7a")).isNull();
+        assertThat(resourceIds.extract("/events/-7")).isNull();
+        assertThat(resourceIds.extract("/events/7/comments")).isNull();
+        assertThat(resourceIds.extract("/events/")).isNull();
+        assertThat(resourceIds.extract("/compilations/7")).isNull();
+        // больше 18 цифр может не поместиться в long
+        assertThat(resourceIds.extract("/events/1000000000000000000")).isNull();
+    }
+
+    @Test
+    void matchesTemplateWithSuffix() {
+        ResourceIds resourceIds = new ResourceIds("/events/{id}/views");
+
+        assertThat(resourceIds.extract("/events/42/views")).isEqualTo(42L);
+        assertThat(resourceIds.extract("/events/42")).isNull();
+        assertThat(resourceIds.extract("/events//views")).isNull();
+        assertThat(resourceIds.toUri(42)).isEqualTo("/events/42/views");
+    }
+
+    @Test
+    void supportsOnlyConfiguredTemplate() {
+        ResourceIds resourceIds = new ResourceIds("/events/{id}");
+
+        assertThat(resourceIds.supports("/events/{id}")).isTrue();
+        assertThat(resourceIds.supports("/compilations/{id}")).isFalse();
+        assertThat(resourceIds.supports(null)).isFalse();
+    }
+
+    @Test
+    void emptyTemplateDisablesExtraction() {
+        ResourceIds resourceIds = new ResourceIds("");
+
+        assertThat(resourceIds.isEnabled()).isFalse();
+        assertThat(resourceIds.supports("")).isFalse();
+        assertThat(resourceIds.extract("/events/7")).isNull();
+    }
+
+    @Test
+    void rejectsTemplateWithoutPlaceholder() {
+        assertThatThrownBy(() -> new ResourceIds("/events/id"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
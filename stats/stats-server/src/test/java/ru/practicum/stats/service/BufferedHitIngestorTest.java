@@ -0,0 +1,199 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+import ru.practicum.stats.mapper.EndpointHitMapperImpl;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class BufferedHitIngestorTest {
+
+    private final HitWriter hitWriter = mock(HitWriter.class);
+    private final Queue<EndpointHitEntity> written = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+    private BufferedHitIngestor ingestor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writerReleased.countDown();
+        if (ingestor != null) {
+            ingestor.stop();
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNoHits() throws Exception {
+        recordWrites();
+        ingestor = start(1_000, 100, HitOverflowPolicy.BLOCK, Duration.ofMillis(20));
+        int producers = 8;
+        int perProducer = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    ingestor.ingest(hit("/events/" + producer));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        ingestor.stop();
+
+        assertThat(written).hasSize(producers * perProducer);
+        assertThat(batchSizes).allSatisfy(size -> assertThat(size).isBetween(1, 100));
+        assertThat(ingestor.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void stopDrainsBufferedHits() throws Exception {
+        recordWrites();
+        ingestor = start(10_000, 5_000, HitOverflowPolicy.BLOCK, Duration.ofMinutes(1));
+        for (int i = 0; i < 1_234; i++) {
+            ingestor.ingest(hit("/events/1"));
+        }
+
+        ingestor.stop();
+
+        assertThat(written).hasSize(1_234);
+        assertThatThrownBy(() -> ingestor.ingest(hit("/events/1")))
+                .isInstanceOf(IngestionOverloadedException.class);
+    }
+
+    @Test
+    void hitOfferedAfterFinalDrainIsRejected() throws Exception {
+        recordWrites();
+        // stop() проходит между проверкой running и offer: маппинг идёт как раз между ними
+        BufferedHitIngestor[] self = new BufferedHitIngestor[1];
+        ingestor = start(new EndpointHitMapperImpl() {
+            @Override
+            public EndpointHitEntity toEntity(EndpointHitDto endpointHitDto) {
+                try {
+                    self[0].stop();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.toEntity(endpointHitDto);
+            }
+        }, 10, 1, HitOverflowPolicy.BLOCK, Duration.ofMillis(1));
+        self[0] = ingestor;
+
+        assertThatThrownBy(() -> ingestor.ingest(hit("/events/1")))
+                .isInstanceOf(IngestionOverloadedException.class);
+        assertThat(ingestor.getBufferedCount()).isZero();
+        assertThat(written).isEmpty();
+    }
+
+    @Test
+    void rejectPolicyFailsWhenBufferIsFull() {
+        blockWrites();
+        ingestor = start(10, 1, HitOverflowPolicy.REJECT, Duration.ofMillis(1));
+
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 100; i++) {
+                ingestor.ingest(hit("/events/1"));
+            }
+        }).isInstanceOf(IngestionOverloadedException.class);
+    }
+
+    @Test
+    void dropPolicyCountsDroppedHits() throws Exception {
+        blockWrites();
+        ingestor = start(10, 1, HitOverflowPolicy.DROP, Duration.ofMillis(1));
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (ingestor.ingest(hit("/events/1"))) {
+                accepted++;
+            }
+        }
+
+        assertThat(accepted).isBetween(10, 12);
+        assertThat(ingestor.getDroppedCount()).isEqualTo(100 - accepted);
+    }
+
+    @Test
+    void blockPolicyFailsAfterBlockTimeout() {
+        blockWrites();
+        ingestor = start(10, 1, HitOverflowPolicy.BLOCK, Duration.ofMillis(1));
+        ReflectionTestUtils.setField(ingestor, "blockTimeout", Duration.ofMillis(50));
+
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 100; i++) {
+                ingestor.ingest(hit("/events/1"));
+            }
+        }).isInstanceOf(IngestionOverloadedException.class);
+    }
+
+    private void recordWrites() {
+        doAnswer(invocation -> {
+            List<EndpointHitEntity> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            written.addAll(batch);
+            return null;
+        }).when(hitWriter).write(anyList());
+    }
+
+    // писатель зависает на первой пачке, буфер только наполняется
+    private void blockWrites() {
+        doAnswer(invocation -> {
+            try {
+                writerReleased.await();
+            } catch (InterruptedException e) {
+                // остановка прерывает писателя; настоящий HitWriter не бросает InterruptedException
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).when(hitWriter).write(anyList());
+    }
+
+    private BufferedHitIngestor start(int capacity, int batchSize, HitOverflowPolicy policy, Duration flushInterval) {
+        return start(new EndpointHitMapperImpl(), capacity, batchSize, policy, flushInterval);
+    }
+
+    private BufferedHitIngestor start(EndpointHitMapperImpl mapper, int capacity, int batchSize,
+                                      HitOverflowPolicy policy, Duration flushInterval) {
+        BufferedHitIngestor buffered = new BufferedHitIngestor(hitWriter, mapper);
+        ReflectionTestUtils.setField(buffered, "bufferCapacity", capacity);
+        ReflectionTestUtils.setField(buffered, "batchSize", batchSize);
+        ReflectionTestUtils.setField(buffered, "flushInterval", flushInterval);
+        ReflectionTestUtils.setField(buffered, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(buffered, "blockTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(buffered, "shutdownTimeout", Duration.ofSeconds(10));
+        buffered.start();
+        return buffered;
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HitCsvReaderTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    @Test
+    void mapsColumnsByHeader() throws Exception {
+        // порядок колонок любой, регистр заголовка не важен, лишние колонки пропускаются
+        List<EndpointHitEntity> hits = readAll("""
+                ID,Timestamp,IP,URI,APP,COUNT
+                17,2026-04-01 12:00:00,10.0.0.1,/events/1,ewm,3
+                18,2026-04-01T12:00:00.250,10.0.0.2,/events/2,ewm,
+                """);
+
+        assertThat(hits).extracting(EndpointHitEntity::getApp, EndpointHitEntity::getUri, EndpointHitEntity::getIp,
+                        EndpointHitEntity::getTimestamp, EndpointHitEntity::getCount)
+                .containsExactly(
+                        tuple("ewm", "/events/1", "10.0.0.1", T0, 3),
+                        tuple("ewm", "/events/2", "10.0.0.2", T0.plusNanos(250_000_000), 1));
+    }
+
+    @Test
+    void countColumnIsOptional() throws Exception {
+        List<EndpointHitEntity> hits = readAll("""
+                app,uri,ip,timestamp
+                ewm,/events/1,10.0.0.1,2026-04-01 12:00:00
+
+                ewm,/events/1,10.0.0.1,2026-04-01 12:00:01
+                """);
+
+        assertThat(hits).extracting(EndpointHitEntity::getCount).containsExactly(1, 1);
+    }
+
+    @Test
+    void unquotesFields() throws Exception {
+        List<EndpointHitEntity> hits = readAll("""
+                app,uri,ip,timestamp
+                "ewm","/search?q=a,b","10.0.0.1","2026-04-01 12:00:00"
+                ewm,"/say/\"\"hi\"\"",10.0.0.1,2026-04-01 12:00:00
+                """);
+
+        assertThat(hits).extracting(EndpointHitEntity::getUri).containsExactly("/search?q=a,b", "/say/\"hi\"");
+    }
+
+    @Test
+    void rejectsMissingHeaderColumns() {
+        assertThatThrownBy(() -> readAll("app,uri,timestamp\newm,/events/1,2026-04-01 12:00:00\n"))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("no column ip");
+        assertThatThrownBy(() -> readAll(""))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("header is missing");
+    }
+
+    @Test
+    void reportsLineOfBadRow() {
+        String header = "app,uri,ip,timestamp,count\newm,/events/1,10.0.0.1,2026-04-01 12:00:00,1\n";
+
+        assertThatThrownBy(() -> readAll(header + "ewm,/events/1,10.0.0.1,yesterday,1\n"))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("line 3");
+        assertThatThrownBy(() -> readAll(header + "ewm,/events/1,,2026-04-01 12:00:00,1\n"))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessage("Missing ip at line 3");
+        assertThatThrownBy(() -> readAll(header + "ewm,/events/1\n"))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessage("Missing ip at line 3");
+        assertThatThrownBy(() -> readAll(header + "ewm,/events/1,10.0.0.1,2026-04-01 12:00:00,0\n"))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessage("count must be positive at line 3");
+        assertThatThrownBy(() -> readAll(header + "ewm,/events/1,10.0.0.1,2026-04-01 12:00:00,many\n"))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("line 3");
+    }
+
+    private static List<EndpointHitEntity> readAll(String csv) throws Exception {
+        HitCsvReader reader = new HitCsvReader(new StringReader(csv));
+        List<EndpointHitEntity> hits = new ArrayList<>();
+        EndpointHitEntity hit;
+        while ((hit = reader.next()) != null) {
+            hits.add(hit);
+        }
+        return hits;
+    }
+}
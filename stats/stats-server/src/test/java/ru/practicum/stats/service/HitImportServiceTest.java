@@ -0,0 +1,81 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitImportResult;
+import ru.practicum.stats.repository.HitBulkLoader;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HitImportServiceTest {
+
+    private final List<List<String>> chunks = new ArrayList<>();
+    private HitImportService service;
+
+    @BeforeEach
+    void setUp() {
+        HitWriter hitWriter = mock(HitWriter.class);
+        HitBulkLoader hitBulkLoader = mock(HitBulkLoader.class);
+        when(hitBulkLoader.usesCopy()).thenReturn(true);
+        doAnswer(invocation -> {
+            List<EndpointHitEntity> hits = invocation.getArgument(0);
+            chunks.add(hits.stream().map(EndpointHitEntity::getUri).toList());
+            return null;
+        }).when(hitWriter).writeBulk(anyList());
+        service = new HitImportService(hitWriter, hitBulkLoader);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+    }
+
+    @Test
+    void writesFileInChunks() throws Exception {
+        HitImportResult result = service.importCsv(new StringReader(csv(5, null)));
+
+        assertThat(chunks).containsExactly(
+                List.of("/events/0", "/events/1"),
+                List.of("/events/2", "/events/3"),
+                List.of("/events/4"));
+        assertThat(result.rows()).isEqualTo(5);
+        assertThat(result.copy()).isTrue();
+    }
+
+    @Test
+    void lastFullChunkIsNotFollowedByEmptyOne() throws Exception {
+        HitImportResult result = service.importCsv(new StringReader(csv(4, null)));
+
+        assertThat(chunks).hasSize(2);
+        assertThat(result.rows()).isEqualTo(4);
+    }
+
+    @Test
+    void badRowKeepsWrittenChunksAndReportsThem() {
+        // ошибка в пятом хите: две полные части уже записаны, неполная третья отбрасывается
+        assertThatThrownBy(() -> service.importCsv(new StringReader(csv(4, "ewm,/events/bad,10.0.0.1,never\n"))))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("line 6")
+                .hasMessageContaining("4 rows were imported before the error");
+        assertThat(chunks).hasSize(2);
+    }
+
+    private static String csv(int rows, String tail) {
+        StringBuilder csv = new StringBuilder("app,uri,ip,timestamp\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("ewm,/events/").append(i).append(",10.0.0.1,2026-04-01 12:00:0").append(i).append('\n');
+        }
+        if (tail != null) {
+            csv.append(tail);
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitLogSegmentsTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 7, 1, 10, 0, 0, 123_456_000);
+
+    @TempDir
+    Path dir;
+
+    private HitLogSegments segments;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        segments = new HitLogSegments(dir);
+    }
+
+    @Test
+    void readsBackAppendedRecords() throws Exception {
+        long size = append(1, hit("/events/1", 1), hit("/events/2", 3));
+
+        HitLogSegments.ReadResult result = segments.read(1, 0, size, 100);
+
+        assertThat(result.corrupted()).isFalse();
+        assertThat(result.endOffset()).isEqualTo(size);
+        assertThat(result.hits()).extracting(EndpointHitEntity::getUri).containsExactly("/events/1", "/events/2");
+        assertThat(result.hits()).extracting(EndpointHitEntity::getCount).containsExactly(1, 3);
+        assertThat(result.hits().get(0).getTimestamp()).isEqualTo(TIMESTAMP);
+    }
+
+    @Test
+    void readStopsAtMaxRecordsAndResumesFromEndOffset() throws Exception {
+        long size = append(1, hit("/events/1", 1), hit("/events/2", 1), hit("/events/3", 1));
+
+        HitLogSegments.ReadResult first = segments.read(1, 0, size, 2);
+        HitLogSegments.ReadResult rest = segments.read(1, first.endOffset(), size, 2);
+
+        assertThat(first.hits()).hasSize(2);
+        assertThat(rest.hits()).extracting(EndpointHitEntity::getUri).containsExactly("/events/3");
+        assertThat(rest.endOffset()).isEqualTo(size);
+    }
+
+    @Test
+    void tornTailStopsReadAtLastCompleteRecord() throws Exception {
+        long complete = append(1, hit("/events/1", 1), hit("/events/2", 1));
+        byte[] torn = HitLogSegments.encode(hit("/events/3", 1));
+        // сбой посреди записи: заголовок дописан, payload только наполовину
+        try (FileChannel channel = FileChannel.open(segments.segmentPath(1), StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HitLogSegments.RECORD_HEADER_BYTES + torn.length);
+            HitLogSegments.putRecord(buffer, torn);
+            buffer.flip().limit(HitLogSegments.RECORD_HEADER_BYTES + torn.length / 2);
+            channel.write(buffer);
+        }
+
+        HitLogSegments.ReadResult result = segments.read(1, 0, segments.size(1), 100);
+
+        assertThat(result.corrupted()).isTrue();
+        assertThat(result.endOffset()).isEqualTo(complete);
+        assertThat(result.hits()).extracting(EndpointHitEntity::getUri).containsExactly("/events/1", "/events/2");
+    }
+
+    @Test
+    void checksumMismatchStopsRead() throws Exception {
+        long first = append(1, hit("/events/1", 1));
+        long size = append(2, hit("/events/1", 1), hit("/events/2", 1));
+        try (FileChannel channel = FileChannel.open(segments.segmentPath(2), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), first + HitLogSegments.RECORD_HEADER_BYTES + 3);
+        }
+
+        HitLogSegments.ReadResult result = segments.read(2, 0, size, 100);
+
+        assertThat(result.corrupted()).isTrue();
+        assertThat(result.endOffset()).isEqualTo(first);
+        assertThat(result.hits()).hasSize(1);
+    }
+
+    @Test
+    void decodesRecordsWrittenBeforeCount() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF("ewm");
+            out.writeUTF("/events/1");
+            out.writeUTF("10.0.0.1");
+            out.writeLong(TIMESTAMP.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(TIMESTAMP.getNano());
+        }
+        long size = appendRaw(1, bytes.toByteArray());
+
+        HitLogSegments.ReadResult result = segments.read(1, 0, size, 100);
+
+        assertThat(result.hits()).singleElement().satisfies(hit -> {
+            assertThat(hit.getCount()).isEqualTo(1);
+            assertThat(hit.getTimestamp()).isEqualTo(TIMESTAMP);
+        });
+    }
+
+    @Test
+    void checkpointAndSegmentListing() throws Exception {
+        assertThat(segments.readCheckpoint()).isNull();
+        append(12, hit("/events/1", 1));
+        append(3, hit("/events/1", 1));
+
+        segments.writeCheckpoint(new HitLogSegments.Position(3, 42));
+        segments.writeCheckpoint(new HitLogSegments.Position(12, 7));
+
+        assertThat(segments.readCheckpoint()).isEqualTo(new HitLogSegments.Position(12, 7));
+        assertThat(segments.listSegmentIds()).containsExactly(3L, 12L);
+        segments.delete(3);
+        assertThat(segments.listSegmentIds()).containsExactly(12L);
+    }
+
+    private long append(long segmentId, EndpointHitEntity... hits) throws Exception {
+        return appendRaw(segmentId, List.of(hits).stream().map(HitLogSegments::encode).toArray(byte[][]::new));
+    }
+
+    private long appendRaw(long segmentId, byte[]... records) throws Exception {
+        try (FileChannel channel = segments.segmentPath(segmentId).toFile().exists()
+                ? FileChannel.open(segments.segmentPath(segmentId), StandardOpenOption.APPEND)
+                : segments.openForAppend(segmentId)) {
+            for (byte[] record : records) {
+                ByteBuffer buffer = ByteBuffer.allocate(HitLogSegments.RECORD_HEADER_BYTES + record.length);
+                HitLogSegments.putRecord(buffer, record);
+                channel.write(buffer.flip());
+            }
+        }
+        return segments.size(segmentId);
+    }
+
+    private static EndpointHitEntity hit(String uri, int count) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(TIMESTAMP)
+                .count(count)
+                .build();
+    }
+}
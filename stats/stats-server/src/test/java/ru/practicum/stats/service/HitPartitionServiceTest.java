@@ -0,0 +1,117 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.model.PartitionInterval;
+import ru.practicum.stats.repository.DatabaseDialect;
+import ru.practicum.stats.repository.HitPartitionRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class HitPartitionServiceTest {
+
+    private HitPartitionRepository hitPartitionRepository;
+    private DatabaseDialect databaseDialect;
+    private HitPartitionService service;
+
+    @BeforeEach
+    void setUp() {
+        hitPartitionRepository = mock(HitPartitionRepository.class);
+        databaseDialect = mock(DatabaseDialect.class);
+        when(databaseDialect.isPostgres()).thenReturn(true);
+        service = new HitPartitionService(hitPartitionRepository, databaseDialect);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "interval", PartitionInterval.DAY);
+        ReflectionTestUtils.setField(service, "precreate", 2);
+        ReflectionTestUtils.setField(service, "retention", Duration.ofDays(30));
+        ReflectionTestUtils.setField(service, "retentionAction", HitPartitionService.RetentionAction.DROP);
+    }
+
+    @Test
+    void disabledPartitioningDoesNotTouchDatabase() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        service.onApplicationReady();
+
+        verifyNoInteractions(hitPartitionRepository, databaseDialect);
+    }
+
+    @Test
+    void startupFailsWhenTableIsNotPartitioned() {
+        when(hitPartitionRepository.isPartitioned()).thenReturn(false);
+
+        assertThatThrownBy(service::onApplicationReady)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("schema-partitioned.sql");
+        verify(hitPartitionRepository, never()).createPartition(anyString(), any(), any());
+    }
+
+    @Test
+    void startupFailsOutsidePostgres() {
+        when(databaseDialect.isPostgres()).thenReturn(false);
+
+        assertThatThrownBy(service::onApplicationReady).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void createsDailyPartitionsAhead() {
+        service.createAhead(LocalDate.of(2026, 2, 27));
+
+        verify(hitPartitionRepository).createPartition("endpoint_hits_p20260227",
+                LocalDate.of(2026, 2, 27), LocalDate.of(2026, 2, 28));
+        verify(hitPartitionRepository).createPartition("endpoint_hits_p20260228",
+                LocalDate.of(2026, 2, 28), LocalDate.of(2026, 3, 1));
+        verify(hitPartitionRepository).createPartition("endpoint_hits_p20260301",
+                LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 2));
+    }
+
+    @Test
+    void createsMonthlyPartitionsFromMonthStart() {
+        ReflectionTestUtils.setField(service, "interval", PartitionInterval.MONTH);
+        ReflectionTestUtils.setField(service, "precreate", 0);
+
+        service.createAhead(LocalDate.of(2026, 2, 17));
+
+        verify(hitPartitionRepository).createPartition("endpoint_hits_p202602",
+                LocalDate.of(2026, 2, 1), LocalDate.of(2026, 3, 1));
+    }
+
+    @Test
+    void retentionRemovesOnlyPartitionsEndedBeforeCutoff() {
+        when(hitPartitionRepository.findPartitionNames()).thenReturn(List.of(
+                "endpoint_hits_p20260130", "endpoint_hits_p20260131", "endpoint_hits_p202512",
+                "endpoint_hits_default"));
+
+        service.applyRetention(LocalDateTime.of(2026, 3, 2, 12, 0));
+
+        verify(hitPartitionRepository).detachPartition("endpoint_hits_p20260130");
+        verify(hitPartitionRepository).dropTable("endpoint_hits_p20260130");
+        verify(hitPartitionRepository).detachPartition("endpoint_hits_p202512");
+        verify(hitPartitionRepository, never()).detachPartition("endpoint_hits_p20260131");
+        verify(hitPartitionRepository, never()).detachPartition("endpoint_hits_default");
+    }
+
+    @Test
+    void detachRetentionKeepsTables() {
+        ReflectionTestUtils.setField(service, "retentionAction", HitPartitionService.RetentionAction.DETACH);
+        when(hitPartitionRepository.findPartitionNames()).thenReturn(List.of("endpoint_hits_p20260101"));
+
+        service.applyRetention(LocalDateTime.of(2026, 3, 2, 12, 0));
+
+        verify(hitPartitionRepository).detachPartition("endpoint_hits_p20260101");
+        verify(hitPartitionRepository, never()).dropTable(anyString());
+    }
+}
@@ -0,0 +1,111 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.UriSeriesDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.repository.HitRollupRepository;
+import ru.practicum.stats.repository.HitStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ряды из rollup-таблицы на модели "ровно один хит в начале каждой минуты":
+ * в любом бакете должно оказаться столько хитов, сколько начал минут он покрывает в периоде.
+ */
+class HitRollupServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 5, 1, 0, 0);
+
+    private HitRollupRepository hitRollupRepository;
+    private HitRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        hitRollupRepository = mock(HitRollupRepository.class);
+        HitStore hitStore = mock(HitStore.class);
+        service = new HitRollupService(hitRollupRepository, hitStore);
+        ReflectionTestUtils.setField(service, "enabled", true);
+
+        // полные бакеты любой гранулярности: по хиту на минуту
+        when(hitRollupRepository.sumHits(anyList(), anyList())).thenAnswer(invocation -> {
+            List<BucketSpan> spans = invocation.getArgument(1);
+            long minutes = spans.stream()
+                    .mapToLong(span -> Duration.between(span.span().from(), span.span().to()).toMinutes())
+                    .sum();
+            return hits(minutes);
+        });
+        // неполная минута содержит хит, только если начинается с начала минуты
+        when(hitStore.getViewStats(anyList(), any(), any(), anyBoolean())).thenAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(1);
+            return hits(TimeBucket.MINUTE.floor(from).equals(from) ? 1 : 0);
+        });
+        doAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(2);
+            LocalDateTime to = invocation.getArgument(3);
+            Consumer<HitRollup> consumer = invocation.getArgument(4);
+            for (LocalDateTime hour = from; hour.isBefore(to); hour = hour.plusHours(1)) {
+                consumer.accept(new HitRollup(TimeBucket.HOUR, hour, "ewm", "/events/1", 60));
+            }
+            return null;
+        }).when(hitRollupRepository).forEachRollup(anyList(), any(), any(), any(), any());
+    }
+
+    @Test
+    void partialEdgeBucketsAreAssembledFromFinerData() {
+        LocalDateTime from = DAY.plusHours(10).plusMinutes(30).plusSeconds(30);
+        LocalDateTime to = DAY.plusHours(13).plusMinutes(15);
+
+        long[] hits = collect(from, to, 4);
+
+        // 10:31..10:59, целые 11 и 12 часов, 13:00..13:14
+        assertThat(hits).containsExactly(29L, 60L, 60L, 15L);
+        verify(hitRollupRepository).forEachRollup(eq(List.of("/events/1")), eq(TimeBucket.HOUR),
+                eq(DAY.plusHours(11)), eq(DAY.plusHours(13)), any());
+    }
+
+    @Test
+    void rangeShorterThanBucketIsSplitAtBucketBoundary() {
+        long[] hits = collect(DAY.plusHours(10).plusMinutes(50), DAY.plusHours(11).plusMinutes(10), 2);
+
+        assertThat(hits).containsExactly(10L, 10L);
+        verify(hitRollupRepository, never()).forEachRollup(anyList(), any(), any(), any(), any());
+    }
+
+    @Test
+    void rangeInsideOneBucketFillsOnlyThatBucket() {
+        long[] hits = collect(DAY.plusHours(10).plusMinutes(50), DAY.plusHours(10).plusMinutes(55), 1);
+
+        assertThat(hits).containsExactly(5L);
+    }
+
+    private long[] collect(LocalDateTime from, LocalDateTime to, int buckets) {
+        ViewStatsSeries series = new ViewStatsSeries(TimeBucket.HOUR, TimeBucket.HOUR.floor(from), buckets);
+        service.collectSeries(List.of("/events/1"), from, to, TimeBucket.HOUR, series);
+        List<UriSeriesDto> list = series.toDto().getSeries();
+        assertThat(list).hasSize(1);
+        return list.get(0).getHits();
+    }
+
+    private static List<ViewStatsDto> hits(long count) {
+        return count == 0 ? List.of() : List.of(new ViewStatsDto("ewm", "/events/1", count));
+    }
+}
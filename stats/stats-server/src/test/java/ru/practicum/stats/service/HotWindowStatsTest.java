@@ -0,0 +1,179 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.repository.HitStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HotWindowStatsTest {
+
+    private static final LocalDateTime STARTED_AT = LocalDateTime.of(2026, 6, 1, 10, 0, 30);
+    // первая минута, которую покрывает окно
+    private static final LocalDateTime COVERED_FROM = LocalDateTime.of(2026, 6, 1, 10, 1);
+
+    private final List<LocalDateTime[]> persistedCalls = new ArrayList<>();
+    private HitStore hitStore;
+    private HotWindowStats hotWindowStats;
+
+    @BeforeEach
+    void setUp() {
+        hitStore = mock(HitStore.class);
+        hotWindowStats = new HotWindowStats(hitStore);
+        ReflectionTestUtils.setField(hotWindowStats, "enabled", true);
+        // 11 слотов: минуты M и M + 11 делят слот
+        ReflectionTestUtils.setField(hotWindowStats, "duration", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(hotWindowStats, "maxEntries", 1_000L);
+        hotWindowStats.init(STARTED_AT);
+    }
+
+    @Test
+    void mergesWindowWithPersistedHeadAndTail() {
+        hotWindowStats.record(List.of(
+                hit("10.0.0.1", COVERED_FROM.plusSeconds(10)),
+                hit("10.0.0.2", COVERED_FROM.plusMinutes(1).plusSeconds(5)),
+                // неполная минута в конце периода читается из БД, а не из окна
+                hit("10.0.0.3", COVERED_FROM.plusMinutes(2).plusSeconds(10))), COVERED_FROM.plusMinutes(4));
+
+        List<ViewStatsDto> stats = hotWindowStats.getViewStats(List.of("/events/1"),
+                COVERED_FROM.minusHours(1), COVERED_FROM.plusMinutes(2).plusSeconds(30), false,
+                this::persisted, COVERED_FROM.plusMinutes(4)).orElseThrow();
+
+        // по 5 хитов из БД на каждый край и 2 из окна
+        assertThat(hitsFor(stats)).isEqualTo(12L);
+        assertThat(persistedCalls).containsExactly(
+                new LocalDateTime[]{COVERED_FROM.minusHours(1), COVERED_FROM},
+                new LocalDateTime[]{COVERED_FROM.plusMinutes(2), COVERED_FROM.plusMinutes(2).plusSeconds(30)});
+    }
+
+    @Test
+    void minutesBeforeStartupAreReadFromDatabase() {
+        // хит неполной минуты старта мог частично лечь в БД ещё до старта - в окно не берём
+        hotWindowStats.record(List.of(hit("10.0.0.1", STARTED_AT.plusSeconds(5))), STARTED_AT.plusSeconds(10));
+
+        List<ViewStatsDto> stats = hotWindowStats.getViewStats(List.of("/events/1"),
+                STARTED_AT.minusSeconds(30), COVERED_FROM.plusMinutes(1), false,
+                this::persisted, COVERED_FROM.plusMinutes(1)).orElseThrow();
+
+        assertThat(hitsFor(stats)).isEqualTo(5L);
+        assertThat(persistedCalls).containsExactly(new LocalDateTime[]{STARTED_AT.minusSeconds(30), COVERED_FROM});
+    }
+
+    @Test
+    void uniqueQueryStartingBeforeWindowIsNotAnswered() {
+        assertThat(hotWindowStats.getViewStats(List.of("/events/1"), STARTED_AT.minusMinutes(5),
+                COVERED_FROM.plusMinutes(2), true, this::persisted, COVERED_FROM.plusMinutes(2))).isEmpty();
+    }
+
+    @Test
+    void uniqueQueryMergesWindowIpsWithPersistedTail() {
+        when(hitStore.findVisitors(anyList(), any(), any())).thenReturn(List.of());
+        when(hitStore.findVisitors(List.of("/events/1"), COVERED_FROM.plusMinutes(2),
+                COVERED_FROM.plusMinutes(2).plusSeconds(30)))
+                .thenReturn(List.of(new HitVisitor("ewm", "/events/1", "10.0.0.1"),
+                        new HitVisitor("ewm", "/events/1", "10.0.0.9")));
+        hotWindowStats.record(List.of(
+                hit("10.0.0.1", COVERED_FROM.plusSeconds(10)),
+                hit("10.0.0.1", COVERED_FROM.plusMinutes(1)),
+                hit("10.0.0.2", COVERED_FROM.plusMinutes(1))), COVERED_FROM.plusMinutes(3));
+
+        List<ViewStatsDto> stats = hotWindowStats.getViewStats(List.of("/events/1"), COVERED_FROM,
+                COVERED_FROM.plusMinutes(2).plusSeconds(30), true, this::persisted,
+                COVERED_FROM.plusMinutes(3)).orElseThrow();
+
+        assertThat(hitsFor(stats)).isEqualTo(3L);
+    }
+
+    @Test
+    void slotRolloverEvictsOldMinuteAndReleasesBudget() {
+        ReflectionTestUtils.setField(hotWindowStats, "maxEntries", 1L);
+        hotWindowStats.record(List.of(hit("10.0.0.1", COVERED_FROM)), COVERED_FROM);
+        LocalDateTime later = COVERED_FROM.plusMinutes(11);
+
+        // та же ячейка кольца, бюджет в одну пару освободился вместе со старой минутой
+        hotWindowStats.record(List.of(hit("10.0.0.2", later), hit("10.0.0.2", later)), later);
+
+        List<ViewStatsDto> stats = hotWindowStats.getViewStats(List.of("/events/1"), later,
+                later.plusMinutes(1), false, this::persisted, later.plusSeconds(30)).orElseThrow();
+        assertThat(hitsFor(stats)).isEqualTo(2L);
+        assertThat(persistedCalls).isEmpty();
+
+        // вытесненная минута ушла из окна и читается из БД
+        List<ViewStatsDto> old = hotWindowStats.getViewStats(List.of("/events/1"), COVERED_FROM,
+                COVERED_FROM.plusMinutes(2), false, this::persisted, later.plusSeconds(30)).orElseThrow();
+        assertThat(persistedCalls).containsExactly(
+                new LocalDateTime[]{COVERED_FROM, COVERED_FROM.plusMinutes(1)});
+        assertThat(hitsFor(old)).isEqualTo(5L);
+    }
+
+    @Test
+    void lateWritersOfEvictedMinuteDoNotLeakIntoNewMinute() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 20; round++) {
+                LocalDateTime oldMinute = COVERED_FROM.plusMinutes(round * 22L);
+                LocalDateTime newMinute = oldMinute.plusMinutes(11);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> writers = new ArrayList<>();
+                for (int writer = 0; writer < 8; writer++) {
+                    boolean old = writer % 2 == 0;
+                    writers.add(executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 200; i++) {
+                            hotWindowStats.record(List.of(hit("10.0.0." + i, old ? oldMinute : newMinute)),
+                                    old ? oldMinute.plusMinutes(10) : newMinute);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> writer : writers) {
+                    writer.get(10, TimeUnit.SECONDS);
+                }
+
+                List<ViewStatsDto> stats = hotWindowStats.getViewStats(List.of("/events/1"), newMinute,
+                        newMinute.plusMinutes(1), false, this::persisted, newMinute.plusSeconds(30)).orElseThrow();
+                assertThat(hitsFor(stats)).as("round %d", round).isEqualTo(4 * 200L);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // каждый запрос в БД возвращает 5 хитов, чтобы их вклад был виден в сумме
+    private List<ViewStatsDto> persisted(LocalDateTime from, LocalDateTime to) {
+        persistedCalls.add(new LocalDateTime[]{from, to});
+        return List.of(new ViewStatsDto("ewm", "/events/1", 5L));
+    }
+
+    private static long hitsFor(List<ViewStatsDto> stats) {
+        return stats.stream().mapToLong(ViewStatsDto::getHits).sum();
+    }
+
+    private static EndpointHitEntity hit(String ip, LocalDateTime timestamp) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
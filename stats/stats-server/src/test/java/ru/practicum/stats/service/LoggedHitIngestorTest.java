@@ -0,0 +1,235 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.EndpointHitDto;
+import ru.practicum.stats.exception.IngestionOverloadedException;
+import ru.practicum.stats.mapper.EndpointHitMapperImpl;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class LoggedHitIngestorTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 7, 1, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    private final HitWriter hitWriter = mock(HitWriter.class);
+    private final Queue<EndpointHitEntity> written = new ConcurrentLinkedQueue<>();
+    private LoggedHitIngestor ingestor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ingestor != null) {
+            ingestor.stop();
+        }
+    }
+
+    @Test
+    void acknowledgedHitsReachWriter() throws Exception {
+        recordWrites();
+        ingestor = start(DataSize.ofMegabytes(1));
+        int producers = 4;
+        int perProducer = 200;
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    ingestor.ingest(hit("/events/1"));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertThat(ingestor.ingestAll(List.of(hit("/events/2"), hit("/events/3")))).isEqualTo(2);
+
+        await(() -> written.size() == producers * perProducer + 2);
+    }
+
+    @Test
+    void rolledSegmentsAreDeletedAfterDrain() throws Exception {
+        recordWrites();
+        ingestor = start(DataSize.ofBytes(200));
+        for (int i = 0; i < 50; i++) {
+            ingestor.ingest(hit("/events/" + i));
+        }
+
+        await(() -> written.size() == 50);
+        HitLogSegments segments = new HitLogSegments(dir);
+        await(() -> segmentCount(segments) == 1);
+        assertThat(written).extracting(EndpointHitEntity::getUri).contains("/events/0", "/events/49");
+    }
+
+    @Test
+    void replaysLogFromCheckpointAndSkipsTornTail() throws Exception {
+        HitLogSegments segments = new HitLogSegments(dir);
+        List<byte[]> records = List.of(encode("/events/1"), encode("/events/2"), encode("/events/3"));
+        long firstRecordEnd;
+        try (FileChannel channel = segments.openForAppend(1)) {
+            for (byte[] record : records) {
+                channel.write(frame(record, record.length));
+            }
+            firstRecordEnd = HitLogSegments.RECORD_HEADER_BYTES + records.get(0).length;
+            // хвост оборвался посреди записи четвёртого хита
+            byte[] torn = encode("/events/4");
+            channel.write(frame(torn, torn.length - 5));
+        }
+        // первый хит уже был перенесён в БД до сбоя
+        segments.writeCheckpoint(new HitLogSegments.Position(1, firstRecordEnd));
+        recordWrites();
+
+        ingestor = start(DataSize.ofMegabytes(1));
+
+        await(() -> written.size() == 2);
+        assertThat(written).extracting(EndpointHitEntity::getUri).containsExactly("/events/2", "/events/3");
+        await(() -> !segments.segmentPath(1).toFile().exists());
+        assertThat(segments.readCheckpoint().segmentId()).isEqualTo(2);
+
+        ingestor.ingest(hit("/events/5"));
+        await(() -> written.size() == 3);
+        assertThat(written).extracting(EndpointHitEntity::getUri).doesNotContain("/events/4");
+    }
+
+    @Test
+    void failedDrainIsRetriedWithoutLosingHits() throws Exception {
+        int[] calls = {0};
+        doAnswer(invocation -> {
+            if (calls[0]++ == 0) {
+                throw new IllegalStateException("database is down");
+            }
+            written.addAll(invocation.<List<EndpointHitEntity>>getArgument(0));
+            return null;
+        }).when(hitWriter).write(anyList());
+        ingestor = start(DataSize.ofMegabytes(1));
+
+        ingestor.ingest(hit("/events/1"));
+
+        await(() -> written.size() == 1);
+    }
+
+    @Test
+    void timedOutHitsAreNeverWritten() throws Exception {
+        recordWrites();
+        ingestor = start(DataSize.ofMegabytes(1));
+        // таймаут короче любого fsync: почти все запросы получают отказ
+        ReflectionTestUtils.setField(ingestor, "commitTimeout", Duration.ofNanos(1));
+
+        List<String> acknowledged = new ArrayList<>();
+        int rejected = 0;
+        for (int i = 0; i < 200; i++) {
+            try {
+                ingestor.ingest(hit("/events/" + i));
+                acknowledged.add("/events/" + i);
+            } catch (IngestionOverloadedException e) {
+                rejected++;
+            }
+        }
+        ReflectionTestUtils.setField(ingestor, "commitTimeout", Duration.ofSeconds(5));
+        ingestor.ingest(hit("/events/last"));
+        acknowledged.add("/events/last");
+
+        // отказ - значит, хит не записан: повтор клиента не даст второй копии
+        assertThat(rejected).isPositive();
+        await(() -> written.size() >= acknowledged.size());
+        assertThat(written).extracting(EndpointHitEntity::getUri).containsExactlyElementsOf(acknowledged);
+    }
+
+    @Test
+    void rejectsHitsAfterStop() throws Exception {
+        recordWrites();
+        ingestor = start(DataSize.ofMegabytes(1));
+        ingestor.stop();
+
+        assertThatThrownBy(() -> ingestor.ingest(hit("/events/1")))
+                .isInstanceOf(IngestionOverloadedException.class);
+    }
+
+    private void recordWrites() {
+        doAnswer(invocation -> {
+            written.addAll(invocation.<List<EndpointHitEntity>>getArgument(0));
+            return null;
+        }).when(hitWriter).write(anyList());
+    }
+
+    private LoggedHitIngestor start(DataSize segmentSize) throws Exception {
+        LoggedHitIngestor logged = new LoggedHitIngestor(hitWriter, new EndpointHitMapperImpl());
+        ReflectionTestUtils.setField(logged, "logDir", dir);
+        ReflectionTestUtils.setField(logged, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(logged, "bufferCapacity", 1_000);
+        ReflectionTestUtils.setField(logged, "batchSize", 100);
+        ReflectionTestUtils.setField(logged, "flushInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(logged, "commitTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(logged, "shutdownTimeout", Duration.ofSeconds(10));
+        logged.start();
+        return logged;
+    }
+
+    private static long segmentCount(HitLogSegments segments) {
+        try {
+            return segments.listSegmentIds().size();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in 10s").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static ByteBuffer frame(byte[] record, int payloadBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(HitLogSegments.RECORD_HEADER_BYTES + record.length);
+        HitLogSegments.putRecord(buffer, record);
+        return buffer.flip().limit(HitLogSegments.RECORD_HEADER_BYTES + payloadBytes);
+    }
+
+    private static byte[] encode(String uri) {
+        return HitLogSegments.encode(EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(TIMESTAMP)
+                .build());
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(TIMESTAMP)
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionTimedOutException;
+import ru.practicum.stats.exception.QueryOverloadedException;
+import ru.practicum.stats.model.QueryClass;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryAdmissionTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 4, 1, 12, 0);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void classifiesByKeysAndRangeOfUnscopedQueries() {
+        QueryAdmission admission = admission(mock(PlatformTransactionManager.class), 2, Duration.ofSeconds(2));
+        List<Integer> fewKeys = List.of(1, 2);
+        List<Integer> manyKeys = IntStream.range(0, 101).boxed().toList();
+
+        assertThat(admission.classify(manyKeys, T0, T0.plusHours(1))).isEqualTo(QueryClass.EXPENSIVE);
+        assertThat(admission.classify(fewKeys, T0, T0.plusDays(7))).isEqualTo(QueryClass.CHEAP);
+        assertThat(admission.classify(fewKeys, T0, T0.plusYears(3))).isEqualTo(QueryClass.CHEAP);
+        assertThat(admission.classify(fewKeys, null, T0)).isEqualTo(QueryClass.CHEAP);
+        // без ключей решает ширина периода
+        assertThat(admission.classify(List.of(), T0, T0.plusDays(7))).isEqualTo(QueryClass.CHEAP);
+        assertThat(admission.classify(null, T0, T0.plusDays(8))).isEqualTo(QueryClass.EXPENSIVE);
+        assertThat(admission.classify(List.of(), null, T0)).isEqualTo(QueryClass.EXPENSIVE);
+        assertThat(admission.classify(101, T0, T0.plusHours(1))).isEqualTo(QueryClass.EXPENSIVE);
+    }
+
+    @Test
+    void singleUriLookupOverMonthIsCheap() {
+        QueryAdmission admission = admission(mock(PlatformTransactionManager.class), 2, Duration.ofSeconds(2));
+
+        // main-service смотрит просмотры события от createdOn до сейчас
+        assertThat(admission.classify(List.of("/events/1"), T0.minusDays(30), T0)).isEqualTo(QueryClass.CHEAP);
+        assertThat(admission.classify(List.of(1L), T0.minusDays(30), T0)).isEqualTo(QueryClass.CHEAP);
+    }
+
+    @Test
+    void rejectsWhenLaneIsFullAndAdmitsAfterRelease() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        QueryAdmission admission = admission(transactionManager, 1, Duration.ofSeconds(2));
+
+        QueryAdmission.Permit first = admission.begin(QueryClass.EXPORT);
+        assertThatThrownBy(() -> admission.begin(QueryClass.EXPORT))
+                .isInstanceOf(QueryOverloadedException.class);
+        // очереди независимы: занятый экспорт не мешает дешёвым запросам
+        admission.begin(QueryClass.CHEAP).close();
+
+        first.close();
+        first.close();
+        admission.begin(QueryClass.EXPORT).close();
+
+        assertThat(meterRegistry.get("stats.server.query.rejected").tag("class", "export").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("stats.server.query.active").tag("class", "export").gauge().value())
+                .isZero();
+        verify(transactionManager, times(3)).rollback(any());
+    }
+
+    @Test
+    void releasesPermitWhenTransactionCannotStart() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenThrow(new IllegalStateException("no connection"));
+        QueryAdmission admission = admission(transactionManager, 1, Duration.ofSeconds(2));
+
+        assertThatThrownBy(() -> admission.begin(QueryClass.EXPORT)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(meterRegistry.get("stats.server.query.active").tag("class", "export").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void opensReadOnlyTransactionWithTimeoutInWholeSeconds() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        QueryAdmission admission = admission(transactionManager, 1, Duration.ofMillis(1_500));
+
+        admission.begin(QueryClass.EXPORT).close();
+
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().isReadOnly()).isTrue();
+        assertThat(definition.getValue().getTimeout()).isEqualTo(2);
+    }
+
+    @Test
+    void queryAfterTimeoutFailsInsteadOfRunning() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        QueryAdmission admission = admission(new DataSourceTransactionManager(dataSource), 1, Duration.ofSeconds(1));
+
+        try (QueryAdmission.Permit permit = admission.begin(QueryClass.EXPORT)) {
+            assertThat(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).isEqualTo(1);
+            Thread.sleep(1_100);
+            assertThatThrownBy(() -> jdbcTemplate.queryForObject("SELECT 1", Integer.class))
+                    .isInstanceOf(TransactionTimedOutException.class);
+        }
+
+        assertThat(meterRegistry.get("stats.server.query.execution").tag("class", "export").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void disabledAdmissionNeitherQueuesNorOpensTransaction() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        QueryAdmission admission = admission(transactionManager, 1, Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(admission, "enabled", false);
+
+        try (QueryAdmission.Permit first = admission.begin(QueryClass.EXPORT);
+             QueryAdmission.Permit second = admission.begin(QueryClass.EXPORT)) {
+            assertThat(first).isNotNull();
+            assertThat(second).isNotNull();
+        }
+
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    private QueryAdmission admission(PlatformTransactionManager transactionManager, int exportMaxConcurrent,
+                                     Duration exportTimeout) {
+        QueryAdmission admission = new QueryAdmission(transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(admission, "enabled", true);
+        ReflectionTestUtils.setField(admission, "queueTimeout", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(admission, "cheapMaxKeys", 100);
+        ReflectionTestUtils.setField(admission, "wideRange", Duration.ofDays(7));
+        ReflectionTestUtils.setField(admission, "cheapMaxConcurrent", 4);
+        ReflectionTestUtils.setField(admission, "cheapTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(admission, "expensiveMaxConcurrent", 1);
+        ReflectionTestUtils.setField(admission, "expensiveTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(admission, "exportMaxConcurrent", exportMaxConcurrent);
+        ReflectionTestUtils.setField(admission, "exportTimeout", exportTimeout);
+        admission.init();
+        return admission;
+    }
+}
@@ -0,0 +1,127 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.TimeSpan;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollupPlannerTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    @Test
+    void splitsRangeIntoEdgesHoursAndDays() {
+        LocalDateTime from = LocalDateTime.of(2026, 3, 1, 22, 58, 30);
+        LocalDateTime to = LocalDateTime.of(2026, 3, 4, 1, 2, 15);
+
+        RollupPlanner.Plan plan = RollupPlanner.plan(from, to);
+
+        assertThat(plan.rawSpans()).containsExactlyInAnyOrder(
+                new TimeSpan(from, LocalDateTime.of(2026, 3, 1, 22, 59)),
+                new TimeSpan(LocalDateTime.of(2026, 3, 4, 1, 2), to));
+        assertThat(plan.bucketSpans()).containsExactlyInAnyOrder(
+                new BucketSpan(TimeBucket.MINUTE, new TimeSpan(LocalDateTime.of(2026, 3, 1, 22, 59),
+                        LocalDateTime.of(2026, 3, 1, 23, 0))),
+                new BucketSpan(TimeBucket.MINUTE, new TimeSpan(LocalDateTime.of(2026, 3, 4, 1, 0),
+                        LocalDateTime.of(2026, 3, 4, 1, 2))),
+                new BucketSpan(TimeBucket.HOUR, new TimeSpan(LocalDateTime.of(2026, 3, 1, 23, 0),
+                        LocalDateTime.of(2026, 3, 2, 0, 0))),
+                new BucketSpan(TimeBucket.HOUR, new TimeSpan(LocalDateTime.of(2026, 3, 4, 0, 0),
+                        LocalDateTime.of(2026, 3, 4, 1, 0))),
+                new BucketSpan(TimeBucket.DAY, new TimeSpan(LocalDateTime.of(2026, 3, 2, 0, 0),
+                        LocalDateTime.of(2026, 3, 4, 0, 0))));
+    }
+
+    @Test
+    void plansOnlyRequestedBuckets() {
+        LocalDateTime from = LocalDateTime.of(2026, 3, 1, 22, 58, 30);
+        LocalDateTime to = LocalDateTime.of(2026, 3, 4, 1, 2, 15);
+
+        RollupPlanner.Plan plan = RollupPlanner.plan(from, to, TimeBucket.HOUR, TimeBucket.DAY);
+
+        assertThat(plan.rawSpans()).containsExactlyInAnyOrder(
+                new TimeSpan(from, LocalDateTime.of(2026, 3, 1, 23, 0)),
+                new TimeSpan(LocalDateTime.of(2026, 3, 4, 1, 0), to));
+        assertThat(plan.bucketSpans()).containsExactlyInAnyOrder(
+                new BucketSpan(TimeBucket.HOUR, new TimeSpan(LocalDateTime.of(2026, 3, 1, 23, 0),
+                        LocalDateTime.of(2026, 3, 2, 0, 0))),
+                new BucketSpan(TimeBucket.HOUR, new TimeSpan(LocalDateTime.of(2026, 3, 4, 0, 0),
+                        LocalDateTime.of(2026, 3, 4, 1, 0))),
+                new BucketSpan(TimeBucket.DAY, new TimeSpan(LocalDateTime.of(2026, 3, 2, 0, 0),
+                        LocalDateTime.of(2026, 3, 4, 0, 0))));
+    }
+
+    @Test
+    void rangeInsideOneMinuteIsReadRaw() {
+        LocalDateTime from = BASE.plusSeconds(5);
+        LocalDateTime to = BASE.plusSeconds(50);
+
+        RollupPlanner.Plan plan = RollupPlanner.plan(from, to);
+
+        assertThat(plan.rawSpans()).containsExactly(new TimeSpan(from, to));
+        assertThat(plan.bucketSpans()).isEmpty();
+    }
+
+    @Test
+    void alignedRangeHasNoRawSpans() {
+        RollupPlanner.Plan plan = RollupPlanner.plan(BASE, BASE.plusDays(3));
+
+        assertThat(plan.rawSpans()).isEmpty();
+        assertThat(plan.bucketSpans()).containsExactly(
+                new BucketSpan(TimeBucket.DAY, new TimeSpan(BASE, BASE.plusDays(3))));
+    }
+
+    @Test
+    void emptyRangeHasEmptyPlan() {
+        RollupPlanner.Plan plan = RollupPlanner.plan(BASE, BASE);
+
+        assertThat(plan.rawSpans()).isEmpty();
+        assertThat(plan.bucketSpans()).isEmpty();
+    }
+
+    @Test
+    void randomRangesAreTiledExactlyByAlignedSegments() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            LocalDateTime from = BASE.plusSeconds(random.nextInt(90 * 24 * 3600));
+            LocalDateTime to = from.plusSeconds(random.nextInt(60 * 24 * 3600));
+
+            RollupPlanner.Plan plan = RollupPlanner.plan(from, to);
+
+            assertThat(plan.rawSpans()).hasSizeLessThanOrEqualTo(2);
+            assertThat(plan.bucketSpans()).hasSizeLessThanOrEqualTo(5);
+            for (TimeSpan raw : plan.rawSpans()) {
+                assertThat(Duration.between(raw.from(), raw.to())).isLessThan(Duration.ofMinutes(1));
+            }
+            for (BucketSpan bucketSpan : plan.bucketSpans()) {
+                TimeBucket bucket = bucketSpan.bucket();
+                assertThat(bucket.floor(bucketSpan.span().from())).isEqualTo(bucketSpan.span().from());
+                assertThat(bucket.floor(bucketSpan.span().to())).isEqualTo(bucketSpan.span().to());
+            }
+            assertTiles(plan, from, to);
+        }
+    }
+
+    private static void assertTiles(RollupPlanner.Plan plan, LocalDateTime from, LocalDateTime to) {
+        List<TimeSpan> spans = new ArrayList<>(plan.rawSpans());
+        plan.bucketSpans().forEach(bucketSpan -> spans.add(bucketSpan.span()));
+        spans.sort(Comparator.comparing(TimeSpan::from));
+
+        LocalDateTime cursor = from;
+        for (TimeSpan span : spans) {
+            assertThat(span.isEmpty()).isFalse();
+            assertThat(span.from()).isEqualTo(cursor);
+            cursor = span.to();
+        }
+        assertThat(cursor).isEqualTo(to);
+    }
+}
@@ -0,0 +1,295 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.UriStartDto;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.ViewStatsQueryDto;
+import ru.practicum.stats.ViewStatsSeriesDto;
+import ru.practicum.stats.ViewsSinceQueryDto;
+import ru.practicum.stats.exception.IncorrectRequestParameterException;
+import ru.practicum.stats.exception.StartDateIsAfterEndDateException;
+import ru.practicum.stats.model.HitRollup;
+import ru.practicum.stats.model.ResourceIdFilter;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.UriStart;
+import ru.practicum.stats.repository.HitStore;
+import ru.practicum.stats.repository.ResourceIds;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class StatsServiceImplTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 4, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2026, 4, 2, 0, 0);
+
+    private HitStore hitStore;
+    private HitRollupService hitRollupService;
+    private StatsServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        hitStore = mock(HitStore.class);
+        hitRollupService = mock(HitRollupService.class);
+        service = new StatsServiceImpl(hitStore, mock(HitIngestor.class), hitRollupService,
+                mock(UniqueVisitorSketchService.class), mock(UniqueVisitorBitmapService.class),
+                mock(HotWindowStats.class), new ViewStatsCache(), new ResourceIds("/events/{id}"));
+        ReflectionTestUtils.setField(service, "queryMaxKeys", 3);
+        ReflectionTestUtils.setField(service, "topMaxLimit", 5);
+        ReflectionTestUtils.setField(service, "timeSeriesMaxBuckets", 24);
+    }
+
+    @Test
+    void topKeepsHighestRowsOfStore() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<ViewStatsDto> consumer = invocation.getArgument(4);
+            for (int i = 1; i <= 10; i++) {
+                consumer.accept(new ViewStatsDto("ewm", "/events/" + i, (long) i));
+            }
+            return null;
+        }).when(hitStore).forEachViewStat(eq("/events/"), eq(START), any(), eq(false), any());
+
+        List<ViewStatsDto> top = service.getTop(START, END, 2, false, "/events/");
+
+        assertThat(top).extracting(ViewStatsDto::getUri).containsExactly("/events/10", "/events/9");
+        // конец периода включительно: в хранилище уходит полуинтервал до end + 1 мкс
+        verify(hitStore).forEachViewStat(eq("/events/"), eq(START), eq(TimeRanges.exclusiveEnd(END)), eq(false), any());
+    }
+
+    @Test
+    void topUsesRollupsForNonUniqueCountsWhenEnabled() throws Exception {
+        when(hitRollupService.isEnabled()).thenReturn(true);
+
+        service.getTop(START, END, 2, false, null);
+        service.getTop(START, END, 2, true, null);
+
+        verify(hitRollupService).forEachViewStat(eq(null), eq(START), any(), any());
+        verify(hitStore).forEachViewStat(eq(null), eq(START), any(), eq(true), any());
+    }
+
+    @Test
+    void topRejectsLimitOutsideBounds() {
+        assertThatThrownBy(() -> service.getTop(START, END, 0, false, null))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        assertThatThrownBy(() -> service.getTop(START, END, 6, false, null))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void timeSeriesBucketsStartAtFloorOfStartAndIncludeEnd() throws Exception {
+        LocalDateTime start = START.plusHours(10).plusMinutes(30);
+        LocalDateTime end = START.plusHours(12);
+        doAnswer(invocation -> {
+            Consumer<HitRollup> consumer = invocation.getArgument(5);
+            consumer.accept(new HitRollup(TimeBucket.HOUR, START.plusHours(10), "ewm", "/events/1", 2));
+            // хит ровно в end попадает в последний бакет
+            consumer.accept(new HitRollup(TimeBucket.HOUR, START.plusHours(12), "ewm", "/events/1", 5));
+            return null;
+        }).when(hitStore).forEachBucketedStat(eq(List.of("/events/1")), eq(start), eq(TimeRanges.exclusiveEnd(end)),
+                eq(TimeBucket.HOUR), eq(false), any());
+
+        ViewStatsSeriesDto series = service.getTimeSeries(start, end, List.of("/events/1"), TimeBucket.HOUR, false);
+
+        assertThat(series.getStart()).isEqualTo(START.plusHours(10));
+        assertThat(series.getBuckets()).isEqualTo(3);
+        assertThat(series.getSeries()).singleElement()
+                .satisfies(uri -> assertThat(uri.getHits()).containsExactly(2L, 0L, 5L));
+    }
+
+    @Test
+    void timeSeriesRejectsTooManyBuckets() throws Exception {
+        // ровно 24 часовых бакета разрешены
+        service.getTimeSeries(START, START.plusHours(23).plusMinutes(59), List.of(), TimeBucket.HOUR, false);
+
+        // end включительно: полночь следующего дня открывает 25-й бакет
+        assertThatThrownBy(() -> service.getTimeSeries(START, END, List.of(), TimeBucket.HOUR, false))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("25 HOUR buckets");
+        verify(hitStore).forEachBucketedStat(any(), any(), any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void topRejectsReversedRange() {
+        assertThatThrownBy(() -> service.getTop(END, START, 1, false, null))
+                .isInstanceOf(StartDateIsAfterEndDateException.class);
+        verify(hitStore, never()).forEachViewStat(any(), any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void queryMapsIdsThroughUriTemplateAndFillsMissingWithZero() throws Exception {
+        // шаблон не совпадает с resource id сервера: ids превращаются в uri
+        when(hitStore.getViewStats(anyList(), eq(START), eq(TimeRanges.exclusiveEnd(END)), eq(false)))
+                .thenReturn(List.of(
+                        new ViewStatsDto("ewm", "/compilations/7", 3L),
+                        new ViewStatsDto("admin", "/compilations/7", 2L)));
+
+        Map<String, Long> counts = service.getViewCounts(query().uriTemplate("/compilations/{id}")
+                .ids(List.of(7L, 8L)).build());
+
+        assertThat(counts).containsExactly(entry("7", 5L), entry("8", 0L));
+        verify(hitStore).getViewStats(eq(List.of("/compilations/7", "/compilations/8")), eq(START), any(), eq(false));
+    }
+
+    @Test
+    void queryByUrisKeysAnswerByUri() throws Exception {
+        when(hitStore.getViewStats(anyList(), any(), any(), anyBoolean()))
+                .thenReturn(List.of(new ViewStatsDto("ewm", "/events/2", 4L)));
+
+        Map<String, Long> counts = service.getViewCounts(query().uris(List.of("/events/1", "/events/2")).build());
+
+        assertThat(counts).containsExactly(entry("/events/1", 0L), entry("/events/2", 4L));
+    }
+
+    @Test
+    void queryWithServerTemplateCountsByResourceId() throws Exception {
+        when(hitStore.countByResourceIds(any(), any(), any(), anyBoolean())).thenReturn(Map.of(2L, 6L, 1L, 1L));
+
+        Map<String, Long> byIds = service.getViewCounts(query().uriTemplate("/events/{id}")
+                .ids(List.of(2L, 3L, 1L)).unique(true).build());
+        Map<String, Long> byRange = service.getViewCounts(query().uriTemplate("/events/{id}")
+                .idFrom(1L).idTo(3L).build());
+
+        // ответ по ids - в порядке запроса, по диапазону - только найденные id по возрастанию
+        assertThat(byIds).containsExactly(entry("2", 6L), entry("3", 0L), entry("1", 1L));
+        assertThat(byRange).containsExactly(entry("1", 1L), entry("2", 6L));
+        verify(hitStore).countByResourceIds(eq(new ResourceIdFilter(List.of(2L, 3L, 1L), null, null)),
+                eq(START), eq(TimeRanges.exclusiveEnd(END)), eq(true));
+        verify(hitStore).countByResourceIds(eq(new ResourceIdFilter(null, 1L, 3L)), eq(START), any(), eq(false));
+        verify(hitStore, never()).getViewStats(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void queryIdRangeIsBoundedByMaxKeys() throws Exception {
+        // ровно queryMaxKeys id в диапазоне разрешены
+        service.getViewCounts(query().uriTemplate("/events/{id}").idFrom(10L).idTo(12L).build());
+
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}").idFrom(10L).idTo(13L).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class)
+                .hasMessageContaining("10..13");
+        // открытая граница
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}").idFrom(10L).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}").idTo(10L).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        // перевёрнутый диапазон и переполнение разности
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}").idFrom(12L).idTo(10L).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}")
+                .idFrom(Long.MIN_VALUE).idTo(Long.MAX_VALUE).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}")
+                .idFrom(Long.MAX_VALUE).idTo(Long.MIN_VALUE).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        verify(hitStore).countByResourceIds(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void queryRejectsInconsistentKeys() {
+        // ids без шаблона
+        assertThatThrownBy(() -> service.getViewCounts(query().ids(List.of(1L)).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        // диапазон id только для шаблона resource id сервера
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/compilations/{id}").idFrom(1L).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        // ни uris, ни ids
+        assertThatThrownBy(() -> service.getViewCounts(query().build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        // больше queryMaxKeys
+        assertThatThrownBy(() -> service.getViewCounts(query().uriTemplate("/events/{id}")
+                .ids(List.of(1L, 2L, 3L, 4L)).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        assertThatThrownBy(() -> service.getViewCounts(query()
+                .uris(List.of("/a", "/b", "/c", "/d")).build()))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        verifyNoInteractions(hitStore);
+    }
+
+    @Test
+    void sinceKeepsOwnStartForEachUri() throws Exception {
+        when(hitStore.getViewStatsSince(anyList(), any(), anyBoolean())).thenReturn(List.of(
+                new ViewStatsDto("ewm", "/compilations/7", 2L),
+                new ViewStatsDto("ewm", "/users/1", 1L)));
+
+        Map<String, Long> counts = service.getViewCountsSince(ViewsSinceQueryDto.builder()
+                .end(END)
+                .uriTemplate("/compilations/{id}")
+                .items(List.of(
+                        UriStartDto.builder().id(7L).start(START.plusHours(5)).build(),
+                        UriStartDto.builder().uri("/users/1").start(START).build(),
+                        UriStartDto.builder().id(8L).start(START.plusHours(1)).build()))
+                .build());
+
+        assertThat(counts).containsExactly(entry("7", 2L), entry("/users/1", 1L), entry("8", 0L));
+        verify(hitStore).getViewStatsSince(eq(List.of(
+                new UriStart("/compilations/7", START.plusHours(5)),
+                new UriStart("/users/1", START),
+                new UriStart("/compilations/8", START.plusHours(1)))), eq(TimeRanges.exclusiveEnd(END)), eq(false));
+    }
+
+    @Test
+    void sinceWithServerTemplateCountsByResourceId() throws Exception {
+        when(hitStore.countByResourceIdsSince(any(), any(), anyBoolean())).thenReturn(Map.of(2L, 3L));
+
+        Map<String, Long> counts = service.getViewCountsSince(ViewsSinceQueryDto.builder()
+                .end(END)
+                .uriTemplate("/events/{id}")
+                .unique(true)
+                .items(List.of(
+                        UriStartDto.builder().id(2L).start(START.plusHours(2)).build(),
+                        UriStartDto.builder().id(1L).start(START).build()))
+                .build());
+
+        assertThat(counts).containsExactly(entry("2", 3L), entry("1", 0L));
+        verify(hitStore).countByResourceIdsSince(eq(Map.of(2L, START.plusHours(2), 1L, START)),
+                eq(TimeRanges.exclusiveEnd(END)), eq(true));
+        verify(hitStore, never()).getViewStatsSince(any(), any(), anyBoolean());
+    }
+
+    @Test
+    void sinceRejectsBadItems() {
+        // начало одного из uri позже общего конца
+        assertThatThrownBy(() -> service.getViewCountsSince(since(
+                UriStartDto.builder().uri("/events/1").start(START).build(),
+                UriStartDto.builder().uri("/events/2").start(END.plusSeconds(1)).build())))
+                .isInstanceOf(StartDateIsAfterEndDateException.class);
+        assertThatThrownBy(() -> service.getViewCountsSince(since(
+                UriStartDto.builder().uri("/events/1").start(START).build(),
+                UriStartDto.builder().uri("/events/1").start(START.plusHours(1)).build())))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        assertThatThrownBy(() -> service.getViewCountsSince(since(
+                UriStartDto.builder().start(START).build())))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        // id без uriTemplate
+        assertThatThrownBy(() -> service.getViewCountsSince(since(
+                UriStartDto.builder().id(1L).start(START).build())))
+                .isInstanceOf(IncorrectRequestParameterException.class);
+        verifyNoInteractions(hitStore);
+    }
+
+    private static ViewsSinceQueryDto since(UriStartDto... items) {
+        return ViewsSinceQueryDto.builder().end(END).items(List.of(items)).build();
+    }
+
+    private static ViewStatsQueryDto.ViewStatsQueryDtoBuilder query() {
+        return ViewStatsQueryDto.builder().start(START).end(END);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.ViewStatsDto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class TopViewStatsTest {
+
+    @Test
+    void keepsOnlyLimitRowsWhileConsuming() {
+        TopViewStats top = new TopViewStats(3);
+        List<ViewStatsDto> rows = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            rows.add(new ViewStatsDto("ewm", "/events/" + i, (long) i));
+        }
+        Collections.shuffle(rows, new Random(42));
+
+        for (ViewStatsDto row : rows) {
+            top.accept(row);
+            assertThat(top.size()).isLessThanOrEqualTo(3);
+        }
+
+        assertThat(top.toList()).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits).containsExactly(
+                tuple("/events/9999", 9999L), tuple("/events/9998", 9998L), tuple("/events/9997", 9997L));
+    }
+
+    @Test
+    void tiesAtTheBoundaryDoNotDependOnRowOrder() {
+        List<ViewStatsDto> rows = List.of(
+                new ViewStatsDto("ewm", "/events/9", 5L),
+                new ViewStatsDto("ewm", "/events/3", 5L),
+                new ViewStatsDto("ewm", "/events/7", 10L),
+                new ViewStatsDto("admin", "/events/3", 5L),
+                new ViewStatsDto("ewm", "/events/1", 5L));
+
+        for (int seed = 0; seed < 20; seed++) {
+            List<ViewStatsDto> shuffled = new ArrayList<>(rows);
+            Collections.shuffle(shuffled, new Random(seed));
+            TopViewStats top = new TopViewStats(3);
+            shuffled.forEach(top);
+
+            assertThat(top.toList()).extracting(ViewStatsDto::getApp, ViewStatsDto::getUri).containsExactly(
+                    tuple("ewm", "/events/7"), tuple("ewm", "/events/1"), tuple("admin", "/events/3"));
+        }
+    }
+
+    @Test
+    void returnsAllRowsWhenFewerThanLimit() {
+        TopViewStats top = new TopViewStats(10);
+        top.accept(new ViewStatsDto("ewm", "/events/1", 1L));
+        top.accept(new ViewStatsDto("ewm", "/events/2", 2L));
+
+        assertThat(top.toList()).extracting(ViewStatsDto::getUri).containsExactly("/events/2", "/events/1");
+    }
+}
@@ -0,0 +1,224 @@
+package ru.practicum.stats.service;
+
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.SketchKey;
+import ru.practicum.stats.repository.CursorJdbcTemplate;
+import ru.practicum.stats.repository.DatabaseDialect;
+import ru.practicum.stats.repository.EndpointHitJdbcRepository;
+import ru.practicum.stats.repository.HitBitmapRepository;
+import ru.practicum.stats.repository.HitStore;
+import ru.practicum.stats.repository.JdbcHitStore;
+import ru.practicum.stats.repository.ResourceIds;
+import ru.practicum.stats.repository.VisitorIpDictionary;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+class UniqueVisitorBitmapServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 5, 1, 0, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private HitStore hitStore;
+    private HitBitmapRepository hitBitmapRepository;
+    private VisitorIpDictionary visitorIpDictionary;
+    private TransactionTemplate transactionTemplate;
+    private UniqueVisitorBitmapService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        hitStore = new JdbcHitStore(new EndpointHitJdbcRepository(namedJdbcTemplate, new ResourceIds("/events/{id}")),
+                new CursorJdbcTemplate(dataSource, 100));
+        hitBitmapRepository = spy(new HitBitmapRepository(namedJdbcTemplate));
+        visitorIpDictionary = new VisitorIpDictionary(namedJdbcTemplate, new DatabaseDialect(jdbcTemplate), 1_000);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        service = new UniqueVisitorBitmapService(hitBitmapRepository, visitorIpDictionary, hitStore, transactionTemplate);
+        ReflectionTestUtils.setField(service, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void matchesExactCountBeforeAndAfterFlush() {
+        Random random = new Random(5);
+        List<EndpointHitEntity> hits = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            hits.add(hit("/events/" + random.nextInt(3), "10.0." + random.nextInt(4) + "." + random.nextInt(100),
+                    DAY.plusMinutes(random.nextInt(4 * 24 * 60))));
+        }
+        write(hits);
+        // неполные сутки с обоих краёв добираются из сырых хитов
+        LocalDateTime from = DAY.plusHours(7);
+        LocalDateTime to = DAY.plusDays(3).plusHours(5);
+        List<ViewStatsDto> exact = hitStore.getViewStats(List.of(), from, to, true);
+
+        assertThat(stats(service.getViewStats(List.of(), from, to))).containsExactlyInAnyOrderElementsOf(stats(exact));
+        service.flush();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hit_bitmaps", Integer.class)).isPositive();
+        assertThat(stats(service.getViewStats(List.of(), from, to))).containsExactlyInAnyOrderElementsOf(stats(exact));
+        assertThat(stats(service.getViewStats(List.of("/events/1"), from, to)))
+                .containsExactlyElementsOf(stats(hitStore.getViewStats(List.of("/events/1"), from, to, true)));
+    }
+
+    @Test
+    void flushMergesWithStoredBitmap() {
+        write(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1)), hit("/events/1", "10.0.0.2", DAY.plusHours(2))));
+        service.flush();
+        write(List.of(hit("/events/1", "10.0.0.2", DAY.plusHours(3)), hit("/events/1", "10.0.0.3", DAY.plusHours(4))));
+        service.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hit_bitmaps", Integer.class)).isEqualTo(1);
+        assertThat(stats(service.getViewStats(List.of("/events/1"), DAY, DAY.plusDays(1))))
+                .containsExactly(tuple("/events/1", 3L));
+    }
+
+    @Test
+    void rolledBackHitsAreNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.record(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1))));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        service.flush();
+
+        assertThat(service.getViewStats(List.of("/events/1"), DAY, DAY.plusDays(1))).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hit_bitmaps", Integer.class)).isZero();
+    }
+
+    @Test
+    void committedHitsAreCountedAfterCommitOnly() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.record(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1))));
+
+        assertThat(service.getViewStats(List.of("/events/1"), DAY, DAY.plusDays(1))).isEmpty();
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(stats(service.getViewStats(List.of("/events/1"), DAY, DAY.plusDays(1))))
+                .containsExactly(tuple("/events/1", 1L));
+    }
+
+    @Test
+    void failedFlushKeepsBitmapForRetry() {
+        doThrow(new IllegalStateException("database is down")).doCallRealMethod()
+                .when(hitBitmapRepository).insert(any(SketchKey.class), any(RoaringBitmap.class));
+        write(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1))));
+
+        service.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hit_bitmaps", Integer.class)).isZero();
+        assertThat(stats(service.getViewStats(List.of("/events/1"), DAY, DAY.plusDays(1))))
+                .containsExactly(tuple("/events/1", 1L));
+
+        service.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hit_bitmaps", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void shortRangeReadsRawHits() {
+        write(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1)), hit("/events/1", "10.0.0.1", DAY.plusHours(2))));
+        jdbcTemplate.update("DELETE FROM hit_visitor_ips");
+
+        assertThat(stats(service.getViewStats(List.of("/events/1"), DAY, DAY.plusHours(12))))
+                .containsExactly(tuple("/events/1", 1L));
+    }
+
+    @Test
+    void rolledBackWriteLeavesNoVisitorIds() {
+        // словарь пишется в транзакции хитов: откат убирает и строку словаря, и номер из кеша
+        transactionTemplate.executeWithoutResult(status -> {
+            write(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1))));
+            status.setRollbackOnly();
+        });
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hit_visitor_ips", Integer.class)).isZero();
+        assertThat(visitorIpDictionary.findAll(List.of("10.0.0.1"))).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status -> write(List.of(hit("/events/1", "10.0.0.1", DAY.plusHours(1)))));
+
+        assertThat(visitorIpDictionary.findAll(List.of("10.0.0.1"))).containsOnlyKeys("10.0.0.1");
+        assertThat(stats(service.getViewStats(List.of("/events/1"), DAY, DAY.plusDays(1))))
+                .containsExactly(tuple("/events/1", 1L));
+    }
+
+    @Test
+    void edgeVisitorsMissingFromDictionaryAreCountedOnce() {
+        // хиты записаны до включения карт: ни карт, ни номеров ip
+        hitStore.saveAll(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(20)),
+                hit("/events/1", "10.0.0.2", DAY.plusHours(21)),
+                hit("/events/1", "10.0.0.1", DAY.plusDays(2).plusHours(1))));
+        write(List.of(hit("/events/1", "10.0.0.3", DAY.plusDays(1).plusHours(1))));
+
+        assertThat(stats(service.getViewStats(List.of("/events/1"), DAY.plusHours(12), DAY.plusDays(2).plusHours(12))))
+                .containsExactly(tuple("/events/1", 3L));
+        // запрос на чтение ничего не добавил в словарь
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hit_visitor_ips", Integer.class)).isEqualTo(1);
+    }
+
+    // как HitWriter, но без транзакции: карты обновляются сразу
+    private void write(List<EndpointHitEntity> hits) {
+        hitStore.saveAll(hits);
+        service.record(hits);
+    }
+
+    private static List<Tuple> stats(List<ViewStatsDto> stats) {
+        return stats.stream().map(stat -> tuple(stat.getUri(), stat.getHits())).toList();
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static EndpointHitEntity hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
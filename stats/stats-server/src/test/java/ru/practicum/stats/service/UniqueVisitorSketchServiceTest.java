@@ -0,0 +1,151 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.BucketSpan;
+import ru.practicum.stats.model.EndpointHitEntity;
+import ru.practicum.stats.model.HitVisitor;
+import ru.practicum.stats.model.SketchKey;
+import ru.practicum.stats.model.TimeBucket;
+import ru.practicum.stats.model.TimeSpan;
+import ru.practicum.stats.repository.HitSketchRepository;
+import ru.practicum.stats.repository.HitStore;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UniqueVisitorSketchServiceTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 5, 1, 10, 0);
+
+    private HitSketchRepository hitSketchRepository;
+    private HitStore hitStore;
+    private UniqueVisitorSketchService service;
+
+    @BeforeEach
+    void setUp() {
+        hitSketchRepository = mock(HitSketchRepository.class);
+        hitStore = mock(HitStore.class);
+        service = new UniqueVisitorSketchService(hitSketchRepository, hitStore,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rolledBackHitsAreNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.record(hits("10.0.0.1", "10.0.0.2"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(service.getViewStats(List.of("/events/1"), HOUR, HOUR.plusHours(2))).isEmpty();
+    }
+
+    @Test
+    void committedHitsAreCountedAfterCommitOnly() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.record(hits("10.0.0.1", "10.0.0.2"));
+
+        assertThat(service.getViewStats(List.of("/events/1"), HOUR, HOUR.plusHours(2))).isEmpty();
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        List<ViewStatsDto> stats = service.getViewStats(List.of("/events/1"), HOUR, HOUR.plusHours(2));
+        assertThat(stats).singleElement().satisfies(stat -> assertThat(stat.getHits()).isEqualTo(2L));
+    }
+
+    @Test
+    void flushPersistsPendingSketches() {
+        service.record(hits("10.0.0.1"));
+
+        service.flush();
+
+        verify(hitSketchRepository).insert(eq(TimeBucket.HOUR), eq(new SketchKey("ewm", "/events/1", HOUR)),
+                any(byte[].class));
+        verify(hitSketchRepository).insert(eq(TimeBucket.DAY),
+                eq(new SketchKey("ewm", "/events/1", HOUR.truncatedTo(ChronoUnit.DAYS))), any(byte[].class));
+        service.flush();
+        verify(hitSketchRepository, never()).update(any(), any(), any());
+    }
+
+    @Test
+    void longRangeReadsDaySketchesInTheMiddleAndHoursAtTheEdges() {
+        LocalDateTime day = HOUR.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime from = day.plusHours(22).plusMinutes(30);
+        LocalDateTime to = day.plusDays(30).plusHours(1).plusMinutes(30);
+        service.record(List.of(
+                hit("10.0.0.1", day.plusHours(23)),
+                hit("10.0.0.1", day.plusDays(5)),
+                hit("10.0.0.2", day.plusDays(10).plusHours(3)),
+                hit("10.0.0.3", day.plusDays(30).plusMinutes(5)),
+                // вне периода
+                hit("10.0.0.4", day.plusDays(31))));
+        when(hitStore.findVisitors(List.of("/events/1"), from, day.plusHours(23)))
+                .thenReturn(List.of(new HitVisitor("ewm", "/events/1", "10.0.0.5")));
+
+        List<ViewStatsDto> stats = service.getViewStats(List.of("/events/1"), from, to);
+
+        assertThat(stats).singleElement().satisfies(stat -> assertThat(stat.getHits()).isEqualTo(4L));
+        ArgumentCaptor<List<BucketSpan>> spans = ArgumentCaptor.captor();
+        verify(hitSketchRepository).forEachSketch(eq(List.of("/events/1")), spans.capture(), any());
+        assertThat(spans.getValue()).containsExactlyInAnyOrder(
+                new BucketSpan(TimeBucket.HOUR, new TimeSpan(day.plusHours(23), day.plusDays(1))),
+                new BucketSpan(TimeBucket.DAY, new TimeSpan(day.plusDays(1), day.plusDays(30))),
+                new BucketSpan(TimeBucket.HOUR, new TimeSpan(day.plusDays(30), day.plusDays(30).plusHours(1))));
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static EndpointHitEntity hit(String ip, LocalDateTime timestamp) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static List<EndpointHitEntity> hits(String... ips) {
+        return Arrays.stream(ips)
+                .map(ip -> EndpointHitEntity.builder()
+                        .app("ewm")
+                        .uri("/events/1")
+                        .ip(ip)
+                        .timestamp(HOUR.plusMinutes(15))
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,181 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.stats.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHitEntity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ViewStatsCacheTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2026, 6, 1, 12, 0);
+    private static final LocalDateTime START = MINUTE.plusSeconds(30);
+    private static final LocalDateTime END = MINUTE.plusMinutes(5).plusSeconds(30);
+
+    private final List<EndpointHitEntity> hits = new CopyOnWriteArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private ViewStatsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ViewStatsCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "alignment", Duration.ofMinutes(1));
+        cache.init();
+
+        // по два хита сразу за каждой границей и сразу перед ней
+        hits.add(hit("10.0.0.1", START.minusSeconds(20)));
+        hits.add(hit("10.0.0.2", START.plusSeconds(10)));
+        hits.add(hit("10.0.0.3", MINUTE.plusMinutes(3)));
+        hits.add(hit("10.0.0.4", END.minusSeconds(10)));
+        hits.add(hit("10.0.0.5", END.plusSeconds(20)));
+    }
+
+    @Test
+    void hitsOutsideRequestedRangeAreNotCounted() {
+        assertThat(hitsFor(get(false))).isEqualTo(3L);
+        assertThat(hitsFor(get(false))).isEqualTo(3L);
+    }
+
+    @Test
+    void nearlyEqualRangesShareInnerEntryButKeepExactEdges() {
+        get(false);
+        int loadsAfterFirst = loads.get();
+
+        List<ViewStatsDto> shifted = cache.get(List.of("/events/1"), START.plusSeconds(15), END.plusSeconds(25),
+                false, false, (uris, from, to) -> load(uris, from, to, false));
+
+        assertThat(hitsFor(shifted)).isEqualTo(3L);
+        // внутренняя запись переиспользована, загружены только два края
+        assertThat(loads.get() - loadsAfterFirst).isEqualTo(2);
+    }
+
+    @Test
+    void uniqueCountsUseExactRange() {
+        hits.add(hit("10.0.0.2", MINUTE.plusMinutes(2)));
+
+        assertThat(hitsFor(get(true))).isEqualTo(3L);
+        assertThat(hitsFor(get(true))).isEqualTo(3L);
+    }
+
+    @Test
+    void newHitsUpdateCachedInnerPartOnce() {
+        get(false);
+
+        EndpointHitEntity inner = hit("10.0.0.6", MINUTE.plusMinutes(2));
+        EndpointHitEntity edge = hit("10.0.0.7", START.plusSeconds(5));
+        EndpointHitEntity outside = hit("10.0.0.8", END.plusSeconds(5));
+        long commitStarted = cache.beforeCommit();
+        hits.addAll(List.of(inner, edge, outside));
+        cache.record(List.of(inner, edge, outside), commitStarted);
+
+        assertThat(hitsFor(get(false))).isEqualTo(5L);
+    }
+
+    @Test
+    void hitCommittedDuringLoadIsNotCountedTwice() {
+        EndpointHitEntity inner = hit("10.0.0.6", MINUTE.plusMinutes(2));
+        // коммит начался до загрузки, а afterCommit пришёл после неё: загрузка уже видит хит
+        long commitStarted = cache.beforeCommit();
+        hits.add(inner);
+        get(false);
+        int loadsBeforeRecord = loads.get();
+
+        cache.record(List.of(inner), commitStarted);
+
+        assertThat(hitsFor(get(false))).isEqualTo(4L);
+        // запись с неизвестным состоянием перечитана, а не дополнена
+        assertThat(loads.get() - loadsBeforeRecord).isEqualTo(3);
+    }
+
+    @Test
+    void hitRecordedWhileLoadIsRunningIsNotLost() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        EndpointHitEntity inner = hit("10.0.0.6", MINUTE.plusMinutes(2));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // загрузка читает снимок до коммита хита и зависает до его afterCommit
+            Future<List<ViewStatsDto>> loaded = executor.submit(() -> cache.get(List.of("/events/1"),
+                    START, END, false, false, (uris, from, to) -> {
+                        List<ViewStatsDto> stats = load(uris, from, to, false);
+                        if (from.equals(MINUTE.plusMinutes(1))) {
+                            loadStarted.countDown();
+                            try {
+                                loadReleased.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return stats;
+                    }));
+            assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<?> recorded = executor.submit(() -> {
+                long commitStarted = cache.beforeCommit();
+                hits.add(inner);
+                cache.record(List.of(inner), commitStarted);
+            });
+            Thread.sleep(100);
+            loadReleased.countDown();
+            loaded.get(5, TimeUnit.SECONDS);
+            recorded.get(5, TimeUnit.SECONDS);
+
+            assertThat(hitsFor(get(false))).isEqualTo(4L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rangeInsideOneAlignmentStepIsLoadedDirectly() {
+        List<ViewStatsDto> stats = cache.get(List.of("/events/1"), START, START.plusSeconds(20), false, false,
+                (uris, from, to) -> load(uris, from, to, false));
+
+        assertThat(hitsFor(stats)).isEqualTo(1L);
+    }
+
+    private List<ViewStatsDto> get(boolean unique) {
+        return cache.get(List.of("/events/1"), START, END, unique, false,
+                (uris, from, to) -> load(uris, from, to, unique));
+    }
+
+    private List<ViewStatsDto> load(List<String> uris, LocalDateTime from, LocalDateTime to, boolean unique) {
+        loads.incrementAndGet();
+        List<EndpointHitEntity> matching = hits.stream()
+                .filter(hit -> uris.isEmpty() || uris.contains(hit.getUri()))
+                .filter(hit -> !hit.getTimestamp().isBefore(from) && hit.getTimestamp().isBefore(to))
+                .toList();
+        long count = unique
+                ? matching.stream().map(EndpointHitEntity::getIp).distinct().count()
+                : matching.stream().mapToLong(EndpointHitEntity::getCount).sum();
+        return count == 0 ? List.of() : List.of(new ViewStatsDto("ewm", "/events/1", count));
+    }
+
+    private static long hitsFor(List<ViewStatsDto> stats) {
+        return stats.stream().mapToLong(ViewStatsDto::getHits).sum();
+    }
+
+    private static EndpointHitEntity hit(String ip, LocalDateTime timestamp) {
+        return EndpointHitEntity.builder()
+                .app("ewm")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}